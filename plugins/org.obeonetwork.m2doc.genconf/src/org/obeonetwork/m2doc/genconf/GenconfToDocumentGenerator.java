@@ -11,12 +11,11 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.genconf;
 
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -24,14 +23,21 @@ import java.util.Map;
 import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
 import org.eclipse.acceleo.query.runtime.IReadOnlyQueryEnvironment;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.Monitor;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.URIConverter;
 import org.obeonetwork.m2doc.api.POIServices;
+import org.obeonetwork.m2doc.api.ZipCompression;
 import org.obeonetwork.m2doc.genconf.provider.ConfigurationProviderService;
 import org.obeonetwork.m2doc.genconf.provider.IConfigurationProvider;
 import org.obeonetwork.m2doc.genconf.util.ConfigurationServices;
+import org.obeonetwork.m2doc.genconf.util.GenerationManifest;
+import org.obeonetwork.m2doc.genconf.util.ValidationCache;
 import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
+import org.obeonetwork.m2doc.generator.GenerationResult;
 import org.obeonetwork.m2doc.parser.DocumentParserException;
 import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
 import org.obeonetwork.m2doc.properties.TemplateCustomProperties;
@@ -51,6 +57,37 @@ public class GenconfToDocumentGenerator {
      */
     private final ConfigurationServices configurationServices = new ConfigurationServices();
 
+    /**
+     * The {@link GenerationBudget}.
+     */
+    private GenerationBudget budget = new GenerationBudget();
+
+    /**
+     * The {@link ZipCompression}.
+     */
+    private ZipCompression compression = new ZipCompression();
+
+    /**
+     * Sets the {@link GenerationBudget} of following generations. A generation exceeding its {@link GenerationBudget} produces a partial
+     * document and logs a warning.
+     * 
+     * @param budget
+     *            the {@link GenerationBudget}
+     */
+    public void setBudget(GenerationBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the {@link ZipCompression} of documents generated by following generations.
+     * 
+     * @param compression
+     *            the {@link ZipCompression}
+     */
+    public void setCompression(ZipCompression compression) {
+        this.compression = compression;
+    }
+
     /**
      * Generate a document from the specified generation configuration.
      * 
@@ -66,6 +103,51 @@ public class GenconfToDocumentGenerator {
      */
     public List<URI> generate(Generation generation)
             throws DocumentGenerationException, IOException, DocumentParserException {
+        return generate(generation, false);
+    }
+
+    /**
+     * Generate a document from the specified generation configuration.
+     * 
+     * @param generation
+     *            the generation configuration
+     * @param skipIfUnchanged
+     *            if <code>true</code> the generation is skipped when its {@link GenerationManifest} shows that no input changed
+     *            since the last successful generation
+     * @return generated file, or an empty {@link List} if the generation has been skipped
+     * @throws DocumentGenerationException
+     *             DocumentGenerationException
+     * @throws DocumentParserException
+     *             DocumentParserException
+     * @throws IOException
+     *             IOException
+     */
+    public List<URI> generate(Generation generation, boolean skipIfUnchanged)
+            throws DocumentGenerationException, IOException, DocumentParserException {
+        return generate(generation, skipIfUnchanged, new BasicMonitor());
+    }
+
+    /**
+     * Generate a document from the specified generation configuration.
+     * 
+     * @param generation
+     *            the generation configuration
+     * @param skipIfUnchanged
+     *            if <code>true</code> the generation is skipped when its {@link GenerationManifest} shows that no input changed
+     *            since the last successful generation
+     * @param monitor
+     *            the {@link Monitor} notified of the generation progress, see
+     *            {@link M2DocUtils#generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, URI, Monitor)}
+     * @return generated file, or an empty {@link List} if the generation has been skipped
+     * @throws DocumentGenerationException
+     *             DocumentGenerationException
+     * @throws DocumentParserException
+     *             DocumentParserException
+     * @throws IOException
+     *             IOException
+     */
+    public List<URI> generate(Generation generation, boolean skipIfUnchanged, Monitor monitor)
+            throws DocumentGenerationException, IOException, DocumentParserException {
         if (generation == null) {
             throw new IllegalArgumentException("Null configuration object passed.");
         }
@@ -82,32 +164,59 @@ public class GenconfToDocumentGenerator {
         }
 
         // get template and result file
-        URI templateFile = createURIStartingFromCurrentModel(generation, generation.getTemplateFileName());
-        URI generatedFile = createURIStartingFromCurrentModel(generation, generation.getResultFileName());
+        URI templateFile = configurationServices.createURIStartingFromCurrentModel(generation, generation.getTemplateFileName());
+        URI generatedFile = configurationServices.createURIStartingFromCurrentModel(generation, generation.getResultFileName());
 
         if (!URIConverter.INSTANCE.exists(templateFile, Collections.EMPTY_MAP)) {
             throw new DocumentGenerationException("The template file doest not exist " + templateFilePath);
         }
 
-        // generate result file.
-        return generate(generation, templateFile, generatedFile);
+        final List<URI> res;
+        if (skipIfUnchanged) {
+            final URI manifestFile = GenerationManifest.getManifestURI(generatedFile);
+            final GenerationManifest previousManifest = GenerationManifest.load(manifestFile);
+            final ClassLoader classLoader = this.getClass().getClassLoader();
+            if (previousManifest != null && previousManifest
+                    .equals(GenerationManifest.compute(generation, templateFile, generatedFile, classLoader))) {
+                res = Collections.emptyList();
+            } else {
+                // generate result file.
+                res = new ArrayList<URI>();
+                final GenerationResult result = generate(generation, templateFile, generatedFile, monitor, res);
+                if (!result.isAborted()) {
+                    // the manifest is computed after the generation since providers can touch the inputs
+                    GenerationManifest.compute(generation, templateFile, generatedFile, classLoader).save(manifestFile);
+                } else if (URIConverter.INSTANCE.exists(manifestFile, Collections.EMPTY_MAP)) {
+                    // a partial document must be generated again
+                    URIConverter.INSTANCE.delete(manifestFile, Collections.EMPTY_MAP);
+                }
+            }
+        } else {
+            // generate result file.
+            res = generate(generation, templateFile, generatedFile, monitor);
+        }
+
+        return res;
     }
 
     /**
-     * Creates {@link URI} starting from the current model.
+     * Gets the generated document {@link URI} of the given {@link Generation}.
      * 
      * @param generation
      *            the {@link Generation}
-     * @param relativePath
-     *            the relative path
-     * @return the created {@link URI} starting from the current model
+     * @return the generated document {@link URI} of the given {@link Generation} if its result file name is set, <code>null</code>
+     *         otherwise
      */
-    private URI createURIStartingFromCurrentModel(Generation generation, String relativePath) {
-        URI generationURI = generation.eResource().getURI().trimSegments(1);
-        for (String s : Splitter.on(CharMatcher.anyOf("/\\")).split(relativePath)) {
-            generationURI = generationURI.appendSegment(s);
+    public URI getGeneratedURI(Generation generation) {
+        final URI res;
+
+        if (generation.getResultFileName() != null) {
+            res = configurationServices.createURIStartingFromCurrentModel(generation, generation.getResultFileName());
+        } else {
+            res = null;
         }
-        return generationURI;
+
+        return res;
     }
 
     /**
@@ -129,27 +238,87 @@ public class GenconfToDocumentGenerator {
      */
     public List<URI> generate(Generation generation, URI templateFile, URI generatedFile)
             throws IOException, DocumentParserException, DocumentGenerationException {
+        return generate(generation, templateFile, generatedFile, new BasicMonitor());
+    }
+
+    /**
+     * Launch the documentation generation.
+     * 
+     * @param generation
+     *            the generation configuration object
+     * @param templateFile
+     *            template file
+     * @param generatedFile
+     *            generated file
+     * @param monitor
+     *            the {@link Monitor} notified of the generation progress, see
+     *            {@link M2DocUtils#generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, URI, Monitor)}
+     * @return generated file and validation file if exists
+     * @throws IOException
+     *             if an I/O problem occurs
+     * @throws DocumentParserException
+     *             if the document coulnd'nt be parsed.
+     * @throws DocumentGenerationException
+     *             if the document couldn't be generated or the generation has been canceled
+     */
+    public List<URI> generate(Generation generation, URI templateFile, URI generatedFile, Monitor monitor)
+            throws IOException, DocumentParserException, DocumentGenerationException {
+        final List<URI> res = new ArrayList<URI>();
+
+        generate(generation, templateFile, generatedFile, monitor, res);
+
+        return res;
+    }
+
+    /**
+     * Launch the documentation generation and adds generated files to the given {@link List}.
+     * 
+     * @param generation
+     *            the generation configuration object
+     * @param templateFile
+     *            template file
+     * @param generatedFile
+     *            generated file
+     * @param monitor
+     *            the {@link Monitor}
+     * @param generatedFiles
+     *            the {@link List} of generated files to fill: generated file and validation file if exists
+     * @return the {@link GenerationResult}
+     * @throws IOException
+     *             if an I/O problem occurs
+     * @throws DocumentParserException
+     *             if the document coulnd'nt be parsed.
+     * @throws DocumentGenerationException
+     *             if the document couldn't be generated or the generation has been canceled
+     */
+    private GenerationResult generate(Generation generation, URI templateFile, URI generatedFile, Monitor monitor,
+            List<URI> generatedFiles) throws IOException, DocumentParserException, DocumentGenerationException {
         // pre generation
         preGenerate(generation, templateFile, generatedFile);
 
-        IQueryEnvironment queryEnvironment = configurationServices.initAcceleoEnvironment(generation);
-
         // create definitions
         Map<String, Object> definitions = configurationServices.createDefinitions(generation);
 
+        IQueryEnvironment queryEnvironment = configurationServices.initAcceleoEnvironment(generation);
+
         // create generated file
         try (DocumentTemplate template = M2DocUtils.parse(templateFile, queryEnvironment,
                 this.getClass().getClassLoader())) {
 
             // validate template
-            boolean inError = validate(generatedFile, template, generation);
+            boolean inError = validate(generatedFile, template, generation, queryEnvironment);
 
             // add providers variables
             definitions.putAll(configurationServices.getProviderVariables(generation));
             // launch generation
-            M2DocUtils.generate(template, queryEnvironment, definitions, generatedFile);
+            final GenerationResult result = M2DocUtils.generate(template, queryEnvironment, definitions,
+                    generatedFile, monitor, budget, compression);
+            if (result.isAborted()) {
+                GenconfPlugin.INSTANCE.log(new Status(Status.WARNING, GenconfPlugin.PLUGIN_ID, Status.WARNING,
+                        generatedFile + ": " + result.getAbortMessage(), null));
+            }
 
-            List<URI> generatedFiles = Lists.newArrayList(generatedFile);
+            generatedFiles.add(generatedFile);
             if (inError) {
                 URI validationFile = getValidationLogFile(generatedFile);
                 generatedFiles.add(validationFile);
@@ -158,7 +327,9 @@ public class GenconfToDocumentGenerator {
             // post generation
             generatedFiles.addAll(postGenerate(generation, templateFile, generatedFile, template));
 
-            return generatedFiles;
+            return result;
+        } finally {
+            configurationServices.releaseAcceleoEnvironment(queryEnvironment);
         }
     }
 
@@ -326,10 +497,8 @@ public class GenconfToDocumentGenerator {
             throw new DocumentGenerationException("The template file path isn't set in the provided configuration");
         }
 
-        URI generationURI = generation.eResource().getURI();
-
         // get template and result file
-        URI templateFile = generationURI.trimSegments(1).appendSegment(generation.getTemplateFileName());
+        URI templateFile = configurationServices.createURIStartingFromCurrentModel(generation, templateFilePath);
         if (!URIConverter.INSTANCE.exists(templateFile, Collections.EMPTY_MAP)) {
             throw new DocumentGenerationException("The template file doest not exist " + templateFilePath);
         }
@@ -342,10 +511,12 @@ public class GenconfToDocumentGenerator {
 
             // validate template
             if (template != null) {
-                res = validate(templateFile, template, generation);
+                res = validate(templateFile, template, generation, queryEnvironment);
             } else {
                 res = true;
             }
+        } finally {
+            configurationServices.releaseAcceleoEnvironment(queryEnvironment);
         }
 
         return res;
@@ -369,8 +540,11 @@ public class GenconfToDocumentGenerator {
     public boolean validate(URI templateFile, DocumentTemplate documentTemplate, Generation generation)
             throws DocumentGenerationException, IOException {
         final IQueryEnvironment queryEnvironment = configurationServices.initAcceleoEnvironment(generation);
-
-        return validate(templateFile, documentTemplate, generation, queryEnvironment);
+        try {
+            return validate(templateFile, documentTemplate, generation, queryEnvironment);
+        } finally {
+            configurationServices.releaseAcceleoEnvironment(queryEnvironment);
+        }
     }
 
     /**
@@ -429,8 +603,14 @@ public class GenconfToDocumentGenerator {
             IReadOnlyQueryEnvironment queryEnvironment) throws DocumentGenerationException, IOException {
         URI validationFile = getValidationLogFile(templateFile);
 
-        final ValidationMessageLevel validationResult = M2DocUtils.validate(documentTemplate, queryEnvironment);
-        M2DocUtils.serializeValidatedDocumentTemplate(documentTemplate, validationFile);
+        final ValidationMessageLevel validationResult = ValidationCache.getInstance().validate(documentTemplate,
+                queryEnvironment);
+        if (validationResult != ValidationMessageLevel.OK) {
+            M2DocUtils.serializeValidatedDocumentTemplate(documentTemplate, validationFile);
+        } else if (URIConverter.INSTANCE.exists(validationFile, Collections.EMPTY_MAP)) {
+            // remove the validation log of a previous run
+            URIConverter.INSTANCE.delete(validationFile, Collections.EMPTY_MAP);
+        }
 
         return validationResult == ValidationMessageLevel.ERROR
             && postValidateTemplate(templateFile, documentTemplate, generation);
@@ -82,6 +82,17 @@ public final class ConfigurationProviderService {
         providers.add(provider);
     }
 
+    /**
+     * Unregister a provider.
+     * 
+     * @param provider
+     *            IConfigurationProvider
+     * @return <code>true</code> if the provider was registered, <code>false</code> otherwise
+     */
+    public boolean unregister(IConfigurationProvider provider) {
+        return providers.remove(provider);
+    }
+
     /**
      * Load all the providers registered by extension point.
      */
@@ -105,4 +105,15 @@ public interface IConfigurationProvider {
      */
     List<URI> postGenerate(Generation generation, URI templateURI, URI generatedURI, DocumentTemplate template);
 
+    /**
+     * Gets inputs of the generation that can't be reached through cross references of the {@link Generation}, for instance
+     * resources referencing its models. Their content is hashed in the
+     * {@link org.obeonetwork.m2doc.genconf.util.GenerationManifest GenerationManifest}.
+     * 
+     * @param generation
+     *            the {@link Generation}
+     * @return the {@link URI} list of additional inputs, empty by default
+     */
+    List<URI> getInputURIs(Generation generation);
+
 }
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.genconf.util;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -46,7 +49,9 @@ public class ConfigurationServices {
     public static final String GENCONF_EXTENSION_FILE = "genconf";
 
     /**
-     * Init acceleo environment.
+     * Init acceleo environment. The environment is reused between calls for the same template, see
+     * {@link QueryServices#getSharedEnvironment(URI, URI)}, and must be given back with
+     * {@link #releaseAcceleoEnvironment(IQueryEnvironment)}.
      * 
      * @param generation
      *            Generation
@@ -54,11 +59,44 @@ public class ConfigurationServices {
      */
     public IQueryEnvironment initAcceleoEnvironment(Generation generation) {
         final URI templateURI = URI.createFileURI(generation.getTemplateFileName());
-        final IQueryEnvironment queryEnvironment = QueryServices.getInstance().getEnvironment(templateURI);
+        final IQueryEnvironment queryEnvironment;
+        if (generation.eResource() != null && generation.eResource().getURI() != null) {
+            final URI templateLocation = createURIStartingFromCurrentModel(generation, generation.getTemplateFileName());
+            queryEnvironment = QueryServices.getInstance().getSharedEnvironment(templateURI, templateLocation);
+        } else {
+            queryEnvironment = QueryServices.getInstance().getEnvironment(templateURI);
+        }
 
         return queryEnvironment;
     }
 
+    /**
+     * Gives back an environment returned by {@link #initAcceleoEnvironment(Generation)}.
+     * 
+     * @param queryEnvironment
+     *            the {@link IQueryEnvironment} to release
+     */
+    public void releaseAcceleoEnvironment(IQueryEnvironment queryEnvironment) {
+        QueryServices.getInstance().releaseSharedEnvironment(queryEnvironment);
+    }
+
+    /**
+     * Creates {@link URI} starting from the current model.
+     * 
+     * @param generation
+     *            the {@link Generation}
+     * @param relativePath
+     *            the relative path
+     * @return the created {@link URI} starting from the current model
+     */
+    public URI createURIStartingFromCurrentModel(Generation generation, String relativePath) {
+        URI generationURI = generation.eResource().getURI().trimSegments(1);
+        for (String s : Splitter.on(CharMatcher.anyOf("/\\")).split(relativePath)) {
+            generationURI = generationURI.appendSegment(s);
+        }
+        return generationURI;
+    }
+
     /**
      * Gets the provider variables for the given {@link Generation}.
      * 
@@ -83,8 +121,12 @@ public class ConfigurationServices {
      * @return the {@link IType} from variables
      */
     public Map<String, Set<IType>> getTypes(Generation generation) {
-        final URI teamplateURI = URI.createFileURI(generation.getTemplateFileName());
-        return getTypes(QueryServices.getInstance().getEnvironment(teamplateURI), generation);
+        final IQueryEnvironment queryEnvironment = initAcceleoEnvironment(generation);
+        try {
+            return getTypes(queryEnvironment, generation);
+        } finally {
+            releaseAcceleoEnvironment(queryEnvironment);
+        }
     }
 
     /**
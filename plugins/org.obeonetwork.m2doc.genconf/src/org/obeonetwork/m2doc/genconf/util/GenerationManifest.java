@@ -0,0 +1,301 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.genconf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.obeonetwork.m2doc.api.POIServices;
+import org.obeonetwork.m2doc.genconf.Definition;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.genconf.ModelDefinition;
+import org.obeonetwork.m2doc.genconf.StringDefinition;
+import org.obeonetwork.m2doc.genconf.provider.ConfigurationProviderService;
+import org.obeonetwork.m2doc.genconf.provider.IConfigurationProvider;
+import org.obeonetwork.m2doc.properties.TemplateCustomProperties;
+import org.obeonetwork.m2doc.services.ServiceRegistry;
+import org.obeonetwork.m2doc.util.HashUtils;
+
+/**
+ * Fingerprint of the inputs of a {@link Generation}: template bytes, definitions, model resources content, resources contributed by
+ * {@link IConfigurationProvider#getInputURIs(Generation)} (Sirius sessions for instance) and service classes.
+ * It is stored next to the generated document and used to skip generations when nothing changed since the last successful run.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public final class GenerationManifest {
+
+    /**
+     * The manifest extension file.
+     */
+    public static final String MANIFEST_EXTENSION_FILE = "m2docmanifest";
+
+    /**
+     * The template entry key.
+     */
+    private static final String TEMPLATE_KEY = "template";
+
+    /**
+     * The generated document entry key.
+     */
+    private static final String RESULT_KEY = "result";
+
+    /**
+     * The definition entry key prefix.
+     */
+    private static final String DEFINITION_PREFIX = "definition:";
+
+    /**
+     * The resource entry key prefix.
+     */
+    private static final String RESOURCE_PREFIX = "resource:";
+
+    /**
+     * The service entry key prefix.
+     */
+    private static final String SERVICE_PREFIX = "service:";
+
+    /**
+     * Value used for missing inputs.
+     */
+    private static final String MISSING = "missing";
+
+    /**
+     * The manifest entries.
+     */
+    private final Properties entries;
+
+    /**
+     * Constructor.
+     *
+     * @param entries
+     *            the manifest entries
+     */
+    private GenerationManifest(Properties entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Computes the {@link GenerationManifest} of the given {@link Generation}.
+     *
+     * @param generation
+     *            the {@link Generation}
+     * @param templateURI
+     *            the template {@link URI}
+     * @param generatedURI
+     *            the generated document {@link URI}
+     * @param classLoader
+     *            the {@link ClassLoader} used to load service classes
+     * @return the computed {@link GenerationManifest}
+     * @throws IOException
+     *             if an input can't be read
+     */
+    public static GenerationManifest compute(Generation generation, URI templateURI, URI generatedURI,
+            ClassLoader classLoader) throws IOException {
+        final Properties entries = new Properties();
+
+        entries.put(TEMPLATE_KEY, hash(templateURI));
+        entries.put(RESULT_KEY, String.valueOf(URIConverter.INSTANCE.exists(generatedURI, Collections.EMPTY_MAP)));
+        for (Definition definition : generation.getDefinitions()) {
+            if (definition instanceof ModelDefinition) {
+                final EObject value = ((ModelDefinition) definition).getValue();
+                final String key = DEFINITION_PREFIX + ((ModelDefinition) definition).getKey();
+                if (value != null && value.eResource() != null) {
+                    entries.put(key, value.eResource().getURIFragment(value) + "@" + value.eResource().getURI());
+                } else {
+                    entries.put(key, MISSING);
+                }
+            } else if (definition instanceof StringDefinition) {
+                final String value = ((StringDefinition) definition).getValue();
+                entries.put(DEFINITION_PREFIX + ((StringDefinition) definition).getKey(),
+                        value != null ? value : MISSING);
+            }
+        }
+        for (Resource resource : getInputResources(generation)) {
+            entries.put(RESOURCE_PREFIX + resource.getURI(), hash(resource.getURI()));
+        }
+        for (IConfigurationProvider provider : ConfigurationProviderService.getInstance().getProviders()) {
+            for (URI uri : provider.getInputURIs(generation)) {
+                entries.put(RESOURCE_PREFIX + uri, hash(uri));
+            }
+        }
+        final TemplateCustomProperties properties = POIServices.getInstance().getTemplateInformations(templateURI);
+        for (String token : properties.getServiceTokens()) {
+            for (Class<?> cls : ServiceRegistry.INSTANCE.getServicePackages(token)) {
+                entries.put(SERVICE_PREFIX + cls.getName(), hash(cls));
+            }
+        }
+        for (String serviceClass : properties.getServiceClasses()) {
+            try {
+                entries.put(SERVICE_PREFIX + serviceClass, hash(classLoader.loadClass(serviceClass)));
+            } catch (ClassNotFoundException e) {
+                entries.put(SERVICE_PREFIX + serviceClass, MISSING);
+            }
+        }
+
+        return new GenerationManifest(entries);
+    }
+
+    /**
+     * Loads the {@link GenerationManifest} stored at the given {@link URI}.
+     *
+     * @param manifestURI
+     *            the manifest {@link URI}
+     * @return the loaded {@link GenerationManifest} if any, <code>null</code> otherwise
+     * @throws IOException
+     *             if the manifest can't be read
+     */
+    public static GenerationManifest load(URI manifestURI) throws IOException {
+        final GenerationManifest res;
+
+        if (URIConverter.INSTANCE.exists(manifestURI, Collections.EMPTY_MAP)) {
+            final Properties entries = new Properties();
+            try (InputStream is = URIConverter.INSTANCE.createInputStream(manifestURI)) {
+                entries.load(is);
+            }
+            res = new GenerationManifest(entries);
+        } else {
+            res = null;
+        }
+
+        return res;
+    }
+
+    /**
+     * Saves this {@link GenerationManifest} to the given {@link URI}.
+     *
+     * @param manifestURI
+     *            the manifest {@link URI}
+     * @throws IOException
+     *             if the manifest can't be written
+     */
+    public void save(URI manifestURI) throws IOException {
+        try (OutputStream os = URIConverter.INSTANCE.createOutputStream(manifestURI)) {
+            entries.store(os, "M2Doc generation manifest");
+        }
+    }
+
+    /**
+     * Gets the manifest {@link URI} for the given generated document {@link URI}.
+     *
+     * @param generatedURI
+     *            the generated document {@link URI}
+     * @return the manifest {@link URI} for the given generated document {@link URI}
+     */
+    public static URI getManifestURI(URI generatedURI) {
+        return generatedURI.appendFileExtension(MANIFEST_EXTENSION_FILE);
+    }
+
+    /**
+     * Gets the input {@link Resource} of the given {@link Generation}: the {@link Generation} resource and all resources reachable
+     * through its cross references. Resources of registered {@link EPackage} are ignored. The set only depends on the inputs, not on
+     * resources loaded as a side effect of a previous generation, so manifests computed before and after a generation can be compared.
+     *
+     * @param generation
+     *            the {@link Generation}
+     * @return the input {@link Resource} of the given {@link Generation}
+     */
+    private static Set<Resource> getInputResources(Generation generation) {
+        final Set<Resource> res = new LinkedHashSet<Resource>();
+
+        final List<Resource> toVisit = new ArrayList<Resource>();
+        res.add(generation.eResource());
+        toVisit.add(generation.eResource());
+        int index = 0;
+        while (index < toVisit.size()) {
+            for (EObject target : EcoreUtil.ExternalCrossReferencer.find(toVisit.get(index++)).keySet()) {
+                final Resource resource = target.eResource();
+                if (resource != null && resource.getURI() != null
+                    && !EPackage.Registry.INSTANCE.containsKey(resource.getURI().toString()) && res.add(resource)) {
+                    toVisit.add(resource);
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Hashes the content at the given {@link URI}.
+     *
+     * @param uri
+     *            the {@link URI}
+     * @return the hash of the content at the given {@link URI}
+     * @throws IOException
+     *             if the content can't be read
+     */
+    private static String hash(URI uri) throws IOException {
+        final String res;
+
+        final String hash = HashUtils.hash(uri);
+        if (hash != null) {
+            res = hash;
+        } else {
+            res = MISSING;
+        }
+
+        return res;
+    }
+
+    /**
+     * Hashes the byte code of the given {@link Class}.
+     *
+     * @param cls
+     *            the {@link Class}
+     * @return the hash of the byte code of the given {@link Class}
+     * @throws IOException
+     *             if the byte code can't be read
+     */
+    private static String hash(Class<?> cls) throws IOException {
+        final String res;
+
+        final ClassLoader classLoader;
+        if (cls.getClassLoader() != null) {
+            classLoader = cls.getClassLoader();
+        } else {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        try (InputStream is = classLoader.getResourceAsStream(cls.getName().replace('.', '/') + ".class")) {
+            if (is != null) {
+                res = HashUtils.hash(is);
+            } else {
+                res = MISSING;
+            }
+        }
+
+        return res;
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof GenerationManifest && entries.equals(((GenerationManifest) obj).entries);
+    }
+
+}
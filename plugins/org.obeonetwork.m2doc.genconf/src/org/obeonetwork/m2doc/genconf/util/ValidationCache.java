@@ -0,0 +1,134 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.genconf.util;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.eclipse.acceleo.query.runtime.IReadOnlyQueryEnvironment;
+import org.eclipse.emf.common.util.URI;
+import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.HashUtils;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+/**
+ * Remembers templates that validated without any message. A template is identified by its location and the hash of its content, like in
+ * {@link GenerationManifest}, its content
+ * includes its declared variables types, and the {@link IReadOnlyQueryEnvironment} it was validated against. Environments are reserved
+ * by a single caller, see {@link org.obeonetwork.m2doc.api.QueryServices#getSharedEnvironment(URI, URI)
+ * QueryServices.getSharedEnvironment()}. Only templates without messages are remembered since skipping the validation of a template with
+ * messages would leave its constructs without their messages.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public final class ValidationCache {
+
+    /**
+     * The instance.
+     */
+    private static final ValidationCache INSTANCE = new ValidationCache();
+
+    /**
+     * The key of templates validated without message per {@link IReadOnlyQueryEnvironment}.
+     */
+    private final Map<IReadOnlyQueryEnvironment, Set<String>> validTemplates = new WeakHashMap<IReadOnlyQueryEnvironment, Set<String>>();
+
+    /**
+     * Constructor.
+     */
+    private ValidationCache() {
+        // nothing to do here
+    }
+
+    /**
+     * Gets the instance.
+     *
+     * @return the instance
+     */
+    public static ValidationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Validates the given {@link DocumentTemplate} unless the same template content has already been validated without message against
+     * the given {@link IReadOnlyQueryEnvironment}.
+     *
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}, its resource {@link URI} is used to identify the template content
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @return the {@link ValidationMessageLevel}
+     */
+    public ValidationMessageLevel validate(DocumentTemplate documentTemplate, IReadOnlyQueryEnvironment queryEnvironment) {
+        final ValidationMessageLevel res;
+
+        final String templateKey;
+        if (documentTemplate.eResource() != null && documentTemplate.eResource().getURI() != null) {
+            templateKey = getKey(documentTemplate.eResource().getURI());
+        } else {
+            templateKey = null;
+        }
+        final boolean known;
+        synchronized (validTemplates) {
+            final Set<String> keys = validTemplates.get(queryEnvironment);
+            known = templateKey != null && keys != null && keys.contains(templateKey);
+        }
+        if (known) {
+            res = ValidationMessageLevel.OK;
+        } else {
+            res = M2DocUtils.validate(documentTemplate, queryEnvironment);
+            if (templateKey != null && res == ValidationMessageLevel.OK) {
+                synchronized (validTemplates) {
+                    Set<String> keys = validTemplates.get(queryEnvironment);
+                    if (keys == null) {
+                        keys = new HashSet<String>();
+                        validTemplates.put(queryEnvironment, keys);
+                    }
+                    keys.add(templateKey);
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the key identifying the content at the given {@link URI}: its location and the {@link HashUtils#hash(URI) hash} of its
+     * content.
+     *
+     * @param uri
+     *            the {@link URI}
+     * @return the key identifying the content at the given {@link URI} if it can be read, <code>null</code> otherwise
+     */
+    private String getKey(URI uri) {
+        String res;
+
+        try {
+            final String hash = HashUtils.hash(uri);
+            if (hash != null) {
+                res = uri + "@" + hash;
+            } else {
+                res = null;
+            }
+        } catch (IOException e) {
+            // the template will be validated
+            res = null;
+        }
+
+        return res;
+    }
+
+}
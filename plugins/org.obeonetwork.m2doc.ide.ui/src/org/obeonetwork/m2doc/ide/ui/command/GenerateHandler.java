@@ -11,31 +11,31 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.ide.ui.command;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.handlers.HandlerUtil;
-import org.obeonetwork.m2doc.genconf.GenconfToDocumentGenerator;
 import org.obeonetwork.m2doc.genconf.Generation;
-import org.obeonetwork.m2doc.generator.DocumentGenerationException;
-import org.obeonetwork.m2doc.ide.ui.Activator;
-import org.obeonetwork.m2doc.parser.DocumentParserException;
 
 /**
- * Generate docx from docx template.
+ * Generate docx from docx template. Each selected {@link Generation} is generated in a {@link GenerationJob}.
  * 
  * @author <a href="mailto:romain.guider@obeo.fr">Romain Guider</a>
  */
 public class GenerateHandler extends AbstractHandler {
+
+    /**
+     * The command parameter telling if the generation should be skipped when its inputs didn't change.
+     */
+    public static final String SKIP_UNCHANGED_PARAMETER = "org.obeonetwork.m2doc.ide.ui.generateDocumentation.skipUnchanged";
+
     /**
      * The constructor.
      */
@@ -49,51 +49,22 @@ public class GenerateHandler extends AbstractHandler {
     public Object execute(ExecutionEvent event) throws ExecutionException {
         ISelection selection = HandlerUtil.getCurrentSelection(event);
         Shell shell = HandlerUtil.getActiveShell(event);
-        if (selection instanceof IStructuredSelection) {
-            Object selected = ((IStructuredSelection) selection).getFirstElement();
-            Generation generation = null;
-            if (selected instanceof Generation) {
-                generation = (Generation) selected;
+        if (selection instanceof IStructuredSelection && !selection.isEmpty()) {
+            final List<Generation> generations = new ArrayList<Generation>();
+            for (Object selected : ((IStructuredSelection) selection).toList()) {
+                if (selected instanceof Generation) {
+                    generations.add((Generation) selected);
+                }
+            }
+            if (generations.size() == ((IStructuredSelection) selection).size()) {
+                final boolean skipUnchanged = Boolean.valueOf(event.getParameter(SKIP_UNCHANGED_PARAMETER));
+                // each generation runs in its own job, generations of distinct documents run concurrently
+                for (Generation generation : generations) {
+                    new GenerationJob(generation, skipUnchanged).schedule();
+                }
             } else {
                 MessageDialog.openError(shell, "Bad selection",
                         "Document generation action can only be triggered on Generation object.");
-                return null;
-            }
-
-            if (generation != null) {
-                try {
-                    GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
-                    List<URI> generatedfiles = generator.generate(generation);
-                    if (generatedfiles.size() == 1) {
-                        MessageDialog.openInformation(shell, "M2Doc generation",
-                                "The document '" + generatedfiles.get(0) + "' is generated.");
-                    } else if (generatedfiles.size() == 2) {
-                        MessageDialog.openInformation(shell, "M2Doc generation",
-                                "The document '" + generatedfiles.get(0).toString()
-                                    + "' is generated. \n\n The template file contains validation errors, please read '"
-                                    + generatedfiles.get(1) + "'.");
-                    }
-
-                } catch (IOException e) {
-                    Activator.getDefault().getLog()
-                            .log(new Status(Status.ERROR, Activator.PLUGIN_ID, Status.ERROR, e.getMessage(), e));
-                    MessageDialog.openError(shell, "I/O problem, see the error log for details", e.getMessage());
-                } catch (DocumentParserException e) {
-                    Activator.getDefault().getLog()
-                            .log(new Status(Status.ERROR, Activator.PLUGIN_ID, Status.ERROR, e.getMessage(), e));
-                    MessageDialog.openError(shell, "Template parsing problem. See the error log for details",
-                            e.getMessage());
-                } catch (DocumentGenerationException e) {
-                    Activator.getDefault().getLog()
-                            .log(new Status(Status.ERROR, Activator.PLUGIN_ID, Status.ERROR, e.getMessage(), e));
-                    MessageDialog.openError(shell, "Generation problem. See the error log for details", e.getMessage());
-                } catch (RuntimeException e) {// do not let exception leak out.
-                    String msg = e.getMessage();
-                    Activator.getDefault().getLog().log(new Status(Status.ERROR, Activator.PLUGIN_ID, Status.ERROR,
-                            "M2Doc : technical error" + (msg == null ? "." : " : " + msg), e));
-                    MessageDialog.openError(shell, "Generation problem. See the error log for details",
-                            "A technical error occured. Please log a bug (see the error log for details)");
-                }
             }
         } else {
             MessageDialog.openError(shell, "Bad selection",
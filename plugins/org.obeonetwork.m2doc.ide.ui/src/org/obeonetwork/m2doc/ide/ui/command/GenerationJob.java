@@ -0,0 +1,317 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.ide.ui.command;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.common.util.Monitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.transaction.RunnableWithResult;
+import org.eclipse.emf.transaction.TransactionalEditingDomain;
+import org.eclipse.emf.transaction.util.TransactionUtil;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.swt.widgets.Display;
+import org.obeonetwork.m2doc.genconf.GenconfToDocumentGenerator;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.ide.ui.Activator;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+
+/**
+ * Generates a {@link Generation} in the background. The job holds a rule on the generated document so generations of distinct
+ * documents run concurrently. The number of units of work of the last generation of each {@link Generation} is kept to estimate the
+ * progress of the next one. The job generates a copy of the {@link Generation} taken when the job is created, so the edited
+ * {@link Generation} is never read from the job thread.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationJob extends Job {
+
+    /**
+     * The M2Doc generation dialog title.
+     */
+    private static final String DIALOG_TITLE = "M2Doc generation";
+
+    /**
+     * Units of work of the last generation per {@link Generation} resource {@link URI}.
+     */
+    private static final Map<URI, Integer> ESTIMATES = new HashMap<URI, Integer>();
+
+    /**
+     * The copy of the {@link Generation}.
+     */
+    private final Generation generation;
+
+    /**
+     * Tells if the generation should be skipped when its inputs didn't change.
+     */
+    private final boolean skipUnchanged;
+
+    /**
+     * The {@link GenconfToDocumentGenerator}.
+     */
+    private final GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
+
+    /**
+     * A {@link Monitor} delegating to an {@link IProgressMonitor} and counting units of work.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class CountingMonitor implements Monitor {
+
+        /**
+         * The {@link IProgressMonitor} to delegate to.
+         */
+        private final IProgressMonitor progressMonitor;
+
+        /**
+         * The number of units of work done.
+         */
+        private int workDone;
+
+        /**
+         * Constructor.
+         *
+         * @param progressMonitor
+         *            the {@link IProgressMonitor} to delegate to
+         */
+        CountingMonitor(IProgressMonitor progressMonitor) {
+            this.progressMonitor = progressMonitor;
+        }
+
+        @Override
+        public void beginTask(String name, int totalWork) {
+            progressMonitor.beginTask(name, totalWork);
+        }
+
+        @Override
+        public void clearBlocked() {
+            // nothing to do here
+        }
+
+        @Override
+        public void done() {
+            progressMonitor.done();
+        }
+
+        @Override
+        public void internalWorked(double work) {
+            progressMonitor.internalWorked(work);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return progressMonitor.isCanceled();
+        }
+
+        @Override
+        public void setBlocked(Diagnostic reason) {
+            // nothing to do here
+        }
+
+        @Override
+        public void setCanceled(boolean value) {
+            progressMonitor.setCanceled(value);
+        }
+
+        @Override
+        public void setTaskName(String name) {
+            progressMonitor.setTaskName(name);
+        }
+
+        @Override
+        public void subTask(String name) {
+            progressMonitor.subTask(name);
+        }
+
+        @Override
+        public void worked(int work) {
+            workDone += work;
+            progressMonitor.worked(work);
+        }
+
+        /**
+         * Gets the number of units of work done.
+         *
+         * @return the number of units of work done
+         */
+        int getWorkDone() {
+            return workDone;
+        }
+
+    }
+
+    /**
+     * Constructor. It must be called by the thread allowed to read the given {@link Generation}, usually the UI thread.
+     *
+     * @param generation
+     *            the {@link Generation}
+     * @param skipUnchanged
+     *            tells if the generation should be skipped when its inputs didn't change
+     */
+    public GenerationJob(Generation generation, boolean skipUnchanged) {
+        super("M2Doc generation of " + generation.getResultFileName());
+        this.generation = copy(generation);
+        this.skipUnchanged = skipUnchanged;
+        setUser(true);
+        final URI generatedURI = generator.getGeneratedURI(generation);
+        if (generatedURI != null && generatedURI.isPlatformResource()) {
+            final IFile generatedFile = ResourcesPlugin.getWorkspace().getRoot()
+                    .getFile(new Path(generatedURI.toPlatformString(true)));
+            final IResourceRuleFactory ruleFactory = ResourcesPlugin.getWorkspace().getRuleFactory();
+            setRule(MultiRule.combine(ruleFactory.createRule(generatedFile), ruleFactory.modifyRule(generatedFile)));
+        }
+    }
+
+    /**
+     * Copies the given {@link Generation} in a read only transaction if it belongs to a {@link TransactionalEditingDomain}. The copy is
+     * contained in a {@link Resource} with the same {@link URI} so relative paths are resolved the same way, its definitions still
+     * reference the original models.
+     *
+     * @param generation
+     *            the {@link Generation} to copy
+     * @return the copy of the given {@link Generation}
+     */
+    private static Generation copy(final Generation generation) {
+        final Generation res;
+
+        final TransactionalEditingDomain domain = TransactionUtil.getEditingDomain(generation);
+        if (domain != null) {
+            try {
+                res = TransactionUtil.runExclusive(domain, new RunnableWithResult.Impl<Generation>() {
+
+                    @Override
+                    public void run() {
+                        setResult(doCopy(generation));
+                    }
+
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading " + generation.getResultFileName(), e);
+            }
+        } else {
+            res = doCopy(generation);
+        }
+
+        return res;
+    }
+
+    /**
+     * Copies the given {@link Generation}.
+     *
+     * @param generation
+     *            the {@link Generation} to copy
+     * @return the copy of the given {@link Generation}
+     */
+    private static Generation doCopy(Generation generation) {
+        final Generation res = EcoreUtil.copy(generation);
+
+        if (generation.eResource() != null) {
+            final Resource resource = new ResourceImpl(generation.eResource().getURI());
+            resource.getContents().add(res);
+        }
+
+        return res;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        final IStatus res;
+
+        final URI generationURI = generation.eResource().getURI();
+        final Integer estimate;
+        synchronized (ESTIMATES) {
+            estimate = ESTIMATES.get(generationURI);
+        }
+        final CountingMonitor generationMonitor = new CountingMonitor(monitor);
+        generationMonitor.beginTask(getName(), estimate != null ? estimate : IProgressMonitor.UNKNOWN);
+        try {
+            final List<URI> generatedfiles = generator.generate(generation, skipUnchanged, generationMonitor);
+            if (!generatedfiles.isEmpty()) {
+                synchronized (ESTIMATES) {
+                    ESTIMATES.put(generationURI, generationMonitor.getWorkDone());
+                }
+            }
+            openInformation(generatedfiles);
+            res = Status.OK_STATUS;
+        } catch (IOException e) {
+            res = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "I/O problem, see the error log for details", e);
+        } catch (DocumentParserException e) {
+            res = new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+                    "Template parsing problem. See the error log for details", e);
+        } catch (DocumentGenerationException e) {
+            if (monitor.isCanceled()) {
+                res = Status.CANCEL_STATUS;
+            } else {
+                res = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Generation problem. See the error log for details",
+                        e);
+            }
+        } catch (RuntimeException e) {// do not let exception leak out.
+            String msg = e.getMessage();
+            res = new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+                    "M2Doc : technical error" + (msg == null ? "." : " : " + msg), e);
+        } finally {
+            generationMonitor.done();
+        }
+
+        return res;
+    }
+
+    /**
+     * Opens an information dialog for the given generated files.
+     *
+     * @param generatedfiles
+     *            the {@link List} of generated files {@link URI}
+     */
+    private void openInformation(List<URI> generatedfiles) {
+        final String message;
+        if (generatedfiles.isEmpty()) {
+            message = "The document '" + generation.getResultFileName() + "' is up to date.";
+        } else if (generatedfiles.size() == 1) {
+            message = "The document '" + generatedfiles.get(0) + "' is generated.";
+        } else if (generatedfiles.size() == 2) {
+            message = "The document '" + generatedfiles.get(0).toString()
+                + "' is generated. \n\n The template file contains validation errors, please read '"
+                + generatedfiles.get(1) + "'.";
+        } else {
+            message = null;
+        }
+        if (message != null) {
+            Display.getDefault().asyncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    MessageDialog.openInformation(Display.getDefault().getActiveShell(), DIALOG_TITLE, message);
+                }
+
+            });
+        }
+    }
+
+}
@@ -12,12 +12,15 @@
 
 package org.obeonetwork.m2doc.ide;
 
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.emf.common.EMFPlugin;
 import org.eclipse.emf.common.util.ResourceLocator;
 import org.obeonetwork.m2doc.ide.provider.DeclaredProviderListener;
+import org.obeonetwork.m2doc.ide.validation.TemplateValidationListener;
 import org.obeonetwork.m2doc.provider.IProvider;
 import org.osgi.framework.BundleContext;
 
@@ -52,6 +55,11 @@ public class M2DocPlugin extends EMFPlugin {
      */
     private DeclaredProviderListener providerListener;
 
+    /**
+     * Validates templates when they are saved.
+     */
+    private TemplateValidationListener validationListener;
+
     /**
      * The constructor.
      */
@@ -95,6 +103,9 @@ public class M2DocPlugin extends EMFPlugin {
             super.start(context);
             INSTANCE.providerListener = new DeclaredProviderListener();
             Platform.getExtensionRegistry().addListener(INSTANCE.providerListener);
+            INSTANCE.validationListener = new TemplateValidationListener();
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(INSTANCE.validationListener,
+                    IResourceChangeEvent.POST_CHANGE);
         }
 
         /*
@@ -106,6 +117,8 @@ public class M2DocPlugin extends EMFPlugin {
         public void stop(BundleContext context) throws Exception {
             super.stop(context);
             Platform.getExtensionRegistry().removeListener(INSTANCE.providerListener);
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(INSTANCE.validationListener);
+            INSTANCE.validationListener.dispose();
         }
     }
 
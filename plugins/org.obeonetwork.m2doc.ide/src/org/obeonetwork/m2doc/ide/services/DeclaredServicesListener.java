@@ -19,6 +19,7 @@ import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.IRegistryEventListener;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
+import org.obeonetwork.m2doc.api.QueryServices;
 import org.obeonetwork.m2doc.ide.M2DocPlugin;
 import org.obeonetwork.m2doc.services.IServiceHolder;
 import org.obeonetwork.m2doc.services.ServiceRegistry;
@@ -86,6 +87,8 @@ public class DeclaredServicesListener implements IRegistryEventListener {
                 add(extension);
             }
         }
+        // shared environments don't know about the new services
+        QueryServices.getInstance().clearSharedEnvironments();
     }
 
     @Override
@@ -108,6 +111,8 @@ public class DeclaredServicesListener implements IRegistryEventListener {
                 }
             }
         }
+        // shared environments still reference the removed services
+        QueryServices.getInstance().clearSharedEnvironments();
     }
 
     @Override
@@ -0,0 +1,650 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.ide.validation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.obeonetwork.m2doc.genconf.GenconfToDocumentGenerator;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.genconf.util.ConfigurationServices;
+import org.obeonetwork.m2doc.ide.M2DocPlugin;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.parser.TemplateValidationMessage;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.template.IConstruct;
+import org.obeonetwork.m2doc.util.HashUtils;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+/**
+ * Validates templates when they are saved in the workspace and publishes their {@link TemplateValidationMessage} as
+ * {@link #MARKER_TYPE problem markers}. The hash of the last validated content and of the last validated M2Doc constructs of each template
+ * are kept, so a template saved without modification, or with only static text and style modifications, is not parsed and validated
+ * again and keeps its markers. Only templates referenced by a {@link Generation} of the workspace are validated, with the
+ * {@link IQueryEnvironment} and {@link ClassLoader} the {@link GenconfToDocumentGenerator} uses for this {@link Generation}. Templates
+ * are validated in parallel, query validations against the environment are serialized.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class TemplateValidationListener implements IResourceChangeListener {
+
+    /**
+     * The template problem marker type.
+     */
+    public static final String MARKER_TYPE = "org.obeonetwork.m2doc.ide.templateProblem"; //$NON-NLS-1$
+
+    /**
+     * The marker attribute holding the text of the run the message is attached to.
+     */
+    public static final String RUN_TEXT_ATTRIBUTE = "runText"; //$NON-NLS-1$
+
+    /**
+     * The {@link org.eclipse.core.runtime.jobs.Job Job} family of the template validation.
+     */
+    public static final Object VALIDATION_JOB_FAMILY = TemplateValidationListener.class;
+
+    /**
+     * The last {@link ValidationState} per template {@link IFile}.
+     */
+    private final Map<IFile, ValidationState> validationStates = new HashMap<IFile, ValidationState>();
+
+    /**
+     * The referenced templates per {@link Generation} {@link IFile}.
+     */
+    private final Map<IFile, Set<IFile>> referencedTemplates = new HashMap<IFile, Set<IFile>>();
+
+    /**
+     * The {@link ConfigurationServices}.
+     */
+    private final ConfigurationServices configurationServices = new ConfigurationServices();
+
+    /**
+     * The {@link Generation} files to read before the next validation.
+     */
+    private final Set<IFile> pendingGenerations = new LinkedHashSet<IFile>();
+
+    /**
+     * Tells if {@link Generation} files of the workspace have been searched.
+     */
+    private boolean generationsSearched;
+
+    /**
+     * The {@link ForkJoinPool} validating sections of templates in parallel.
+     */
+    private final ForkJoinPool validationPool = new ForkJoinPool();
+
+    /**
+     * The templates waiting for validation.
+     */
+    private final Set<IFile> pendingTemplates = new LinkedHashSet<IFile>();
+
+    /**
+     * The {@link WorkspaceJob} validating {@link #pendingTemplates}.
+     */
+    private final WorkspaceJob validationJob = new WorkspaceJob("M2Doc template validation") {
+
+        @Override
+        public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+            updateReferencedTemplates();
+            IFile template = nextPendingTemplate();
+            while (template != null && !monitor.isCanceled()) {
+                monitor.subTask(template.getFullPath().toString());
+                final IFile generationFile = getGenerationFile(template);
+                if (generationFile != null) {
+                    validate(template, generationFile);
+                } else if (template.exists()) {
+                    template.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO);
+                    forget(template);
+                }
+                template = nextPendingTemplate();
+            }
+
+            return Status.OK_STATUS;
+        }
+
+        @Override
+        public boolean belongsTo(Object family) {
+            return family == VALIDATION_JOB_FAMILY;
+        }
+
+    };
+
+    /**
+     * The last validated content and M2Doc constructs of a template.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class ValidationState {
+
+        /**
+         * The content hash.
+         */
+        private final String contentHash;
+
+        /**
+         * The {@link HashUtils#hashTemplateConstructs(URI) constructs hash}.
+         */
+        private final String constructsHash;
+
+        /**
+         * Constructor.
+         *
+         * @param contentHash
+         *            the content hash
+         * @param constructsHash
+         *            the {@link HashUtils#hashTemplateConstructs(URI) constructs hash}
+         */
+        private ValidationState(String contentHash, String constructsHash) {
+            this.contentHash = contentHash;
+            this.constructsHash = constructsHash;
+        }
+
+    }
+
+    /**
+     * Constructor.
+     */
+    public TemplateValidationListener() {
+        validationJob.setSystem(true);
+        validationJob.setRule(ResourcesPlugin.getWorkspace().getRuleFactory().markerRule(ResourcesPlugin.getWorkspace()
+                .getRoot()));
+    }
+
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        if (event.getDelta() != null) {
+            final List<IFile> changedTemplates = new ArrayList<IFile>();
+            final List<IFile> changedGenerations = new ArrayList<IFile>();
+            try {
+                event.getDelta().accept(new IResourceDeltaVisitor() {
+
+                    @Override
+                    public boolean visit(IResourceDelta delta) throws CoreException {
+                        final IResource resource = delta.getResource();
+                        if (resource instanceof IFile
+                            && M2DocPlugin.DOCX_EXTENSION_FILE.equals(resource.getFileExtension())) {
+                            if (delta.getKind() == IResourceDelta.REMOVED) {
+                                forget((IFile) resource);
+                            } else if (delta.getKind() == IResourceDelta.ADDED
+                                || (delta.getFlags() & IResourceDelta.CONTENT) != 0) {
+                                changedTemplates.add((IFile) resource);
+                            }
+                        } else if (resource instanceof IFile && ConfigurationServices.GENCONF_EXTENSION_FILE.equals(
+                                resource.getFileExtension())) {
+                            changedGenerations.add((IFile) resource);
+                        }
+                        return true;
+                    }
+
+                });
+            } catch (CoreException e) {
+                M2DocPlugin.log(e, false);
+            }
+            if (!changedTemplates.isEmpty() || !changedGenerations.isEmpty()) {
+                synchronized (pendingTemplates) {
+                    pendingTemplates.addAll(changedTemplates);
+                    pendingGenerations.addAll(changedGenerations);
+                }
+                validationJob.schedule();
+            }
+        }
+    }
+
+    /**
+     * Cancels pending validations.
+     */
+    public void dispose() {
+        synchronized (pendingTemplates) {
+            pendingTemplates.clear();
+            pendingGenerations.clear();
+        }
+        validationJob.cancel();
+        validationPool.shutdown();
+    }
+
+    /**
+     * Gets and removes the next pending template.
+     *
+     * @return the next pending template if any, <code>null</code> otherwise
+     */
+    private IFile nextPendingTemplate() {
+        final IFile res;
+
+        synchronized (pendingTemplates) {
+            if (!pendingTemplates.isEmpty()) {
+                res = pendingTemplates.iterator().next();
+                pendingTemplates.remove(res);
+            } else {
+                res = null;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Forgets the validation state of the given template.
+     *
+     * @param template
+     *            the template {@link IFile}
+     */
+    private void forget(IFile template) {
+        synchronized (validationStates) {
+            validationStates.remove(template);
+        }
+    }
+
+    /**
+     * Updates {@link #referencedTemplates} from pending {@link Generation} files. All {@link Generation} files of the workspace are read
+     * the first time. Templates referenced by a changed {@link Generation} file are validated.
+     *
+     * @throws CoreException
+     *             if the workspace can't be visited
+     */
+    private void updateReferencedTemplates() throws CoreException {
+        if (!generationsSearched) {
+            ResourcesPlugin.getWorkspace().getRoot().accept(new IResourceVisitor() {
+
+                @Override
+                public boolean visit(IResource resource) throws CoreException {
+                    if (resource instanceof IFile
+                        && ConfigurationServices.GENCONF_EXTENSION_FILE.equals(resource.getFileExtension())) {
+                        referencedTemplates.put((IFile) resource, readReferencedTemplates((IFile) resource));
+                    }
+                    return true;
+                }
+
+            });
+            generationsSearched = true;
+        }
+        final List<IFile> generationFiles;
+        synchronized (pendingTemplates) {
+            generationFiles = new ArrayList<IFile>(pendingGenerations);
+            pendingGenerations.clear();
+        }
+        final Set<IFile> templates = new LinkedHashSet<IFile>();
+        for (IFile generationFile : generationFiles) {
+            if (generationFile.exists()) {
+                final Set<IFile> generationTemplates = readReferencedTemplates(generationFile);
+                referencedTemplates.put(generationFile, generationTemplates);
+                templates.addAll(generationTemplates);
+            } else {
+                final Set<IFile> generationTemplates = referencedTemplates.remove(generationFile);
+                if (generationTemplates != null) {
+                    templates.addAll(generationTemplates);
+                }
+            }
+        }
+        if (!templates.isEmpty()) {
+            synchronized (pendingTemplates) {
+                pendingTemplates.addAll(templates);
+            }
+        }
+    }
+
+    /**
+     * Reads the templates referenced by the {@link Generation} of the given file.
+     *
+     * @param generationFile
+     *            the {@link Generation} {@link IFile}
+     * @return the templates referenced by the {@link Generation} of the given file
+     */
+    private Set<IFile> readReferencedTemplates(IFile generationFile) {
+        final Set<IFile> res = new HashSet<IFile>();
+
+        final ResourceSet resourceSet = new ResourceSetImpl();
+        try {
+            for (Generation generation : getGenerations(resourceSet, generationFile)) {
+                if (generation.getTemplateFileName() != null) {
+                    final IFile template = getFile(configurationServices.createURIStartingFromCurrentModel(generation,
+                            generation.getTemplateFileName()));
+                    if (template != null) {
+                        res.add(template);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // the generation can't be read, its templates are not validated
+            M2DocPlugin.log(e, false);
+        } finally {
+            unload(resourceSet);
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the {@link Generation} of the given file.
+     *
+     * @param resourceSet
+     *            the {@link ResourceSet} used to load the file
+     * @param generationFile
+     *            the {@link Generation} {@link IFile}
+     * @return the {@link Generation} of the given file
+     */
+    private List<Generation> getGenerations(ResourceSet resourceSet, IFile generationFile) {
+        final List<Generation> res = new ArrayList<Generation>();
+
+        final Resource resource = resourceSet
+                .getResource(URI.createPlatformResourceURI(generationFile.getFullPath().toString(), true), true);
+        for (EObject eObject : resource.getContents()) {
+            if (eObject instanceof Generation) {
+                res.add((Generation) eObject);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Unloads all {@link Resource} of the given {@link ResourceSet}.
+     *
+     * @param resourceSet
+     *            the {@link ResourceSet}
+     */
+    private void unload(ResourceSet resourceSet) {
+        for (Resource resource : resourceSet.getResources()) {
+            resource.unload();
+        }
+    }
+
+    /**
+     * Gets the workspace {@link IFile} of the given platform resource {@link URI}.
+     *
+     * @param uri
+     *            the {@link URI}
+     * @return the workspace {@link IFile} of the given platform resource {@link URI} if any, <code>null</code> otherwise
+     */
+    private IFile getFile(URI uri) {
+        final IFile res;
+
+        if (uri.isPlatformResource()) {
+            res = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(uri.toPlatformString(true)));
+        } else {
+            res = null;
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets a {@link Generation} {@link IFile} of the workspace referencing the given template.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @return a {@link Generation} {@link IFile} of the workspace referencing the given template if any, <code>null</code> otherwise
+     */
+    private IFile getGenerationFile(IFile template) {
+        IFile res = null;
+
+        for (Entry<IFile, Set<IFile>> entry : referencedTemplates.entrySet()) {
+            if (entry.getValue().contains(template)) {
+                res = entry.getKey();
+                break;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Validates the given template if its M2Doc constructs changed since its last validation and replaces its markers.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @param generationFile
+     *            the {@link Generation} {@link IFile} referencing the template
+     * @throws CoreException
+     *             if markers can't be updated
+     */
+    private void validate(IFile template, IFile generationFile) throws CoreException {
+        if (template.exists()) {
+            final String contentHash = hash(template);
+            final ValidationState state;
+            synchronized (validationStates) {
+                state = validationStates.get(template);
+            }
+            if (contentHash == null || state == null || !contentHash.equals(state.contentHash)) {
+                final URI templateURI = URI.createPlatformResourceURI(template.getFullPath().toString(), true);
+                String constructsHash;
+                try {
+                    constructsHash = HashUtils.hashTemplateConstructs(templateURI);
+                } catch (IOException | RuntimeException e) {
+                    // not readable as a document, the parser reports it
+                    constructsHash = null;
+                }
+                if (constructsHash == null || state == null || !constructsHash.equals(state.constructsHash)) {
+                    validate(template, templateURI, generationFile);
+                }
+                if (contentHash != null && constructsHash != null) {
+                    synchronized (validationStates) {
+                        validationStates.put(template, new ValidationState(contentHash, constructsHash));
+                    }
+                } else {
+                    forget(template);
+                }
+            }
+        } else {
+            forget(template);
+        }
+    }
+
+    /**
+     * Parses and validates the given template and replaces its markers.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @param templateURI
+     *            the template {@link URI}
+     * @param generationFile
+     *            the {@link Generation} {@link IFile} referencing the template
+     * @throws CoreException
+     *             if markers can't be updated
+     */
+    private void validate(IFile template, URI templateURI, IFile generationFile) throws CoreException {
+        template.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO);
+        final ResourceSet resourceSet = new ResourceSetImpl();
+        try {
+            final Generation generation = getGeneration(resourceSet, generationFile, templateURI);
+            if (generation != null) {
+                validate(template, templateURI, generation);
+            }
+        } catch (RuntimeException e) {
+            // the generation can't be read
+            M2DocPlugin.log(e, false);
+        } finally {
+            unload(resourceSet);
+        }
+    }
+
+    /**
+     * Gets the {@link Generation} of the given file referencing the given template.
+     *
+     * @param resourceSet
+     *            the {@link ResourceSet} used to load the file
+     * @param generationFile
+     *            the {@link Generation} {@link IFile}
+     * @param templateURI
+     *            the template {@link URI}
+     * @return the {@link Generation} of the given file referencing the given template if any, <code>null</code> otherwise
+     */
+    private Generation getGeneration(ResourceSet resourceSet, IFile generationFile, URI templateURI) {
+        Generation res = null;
+
+        for (Generation generation : getGenerations(resourceSet, generationFile)) {
+            if (generation.getTemplateFileName() != null && templateURI.equals(configurationServices
+                    .createURIStartingFromCurrentModel(generation, generation.getTemplateFileName()))) {
+                res = generation;
+                break;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Parses and validates the given template with the environment of the given {@link Generation} and creates its markers.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @param templateURI
+     *            the template {@link URI}
+     * @param generation
+     *            the {@link Generation} referencing the template
+     * @throws CoreException
+     *             if markers can't be updated
+     */
+    private void validate(IFile template, URI templateURI, Generation generation) throws CoreException {
+        final IQueryEnvironment queryEnvironment = configurationServices.initAcceleoEnvironment(generation);
+        // the class loader used by the generation to load template service classes
+        try (DocumentTemplate documentTemplate = M2DocUtils.parse(templateURI, queryEnvironment,
+                GenconfToDocumentGenerator.class.getClassLoader())) {
+            M2DocUtils.validate(documentTemplate, queryEnvironment, validationPool);
+            createMarkers(template, documentTemplate);
+        } catch (DocumentParserException e) {
+            createMarker(template, IMarker.SEVERITY_ERROR, e.getMessage(), null);
+        } catch (IOException e) {
+            M2DocPlugin.log(e, false);
+        } finally {
+            configurationServices.releaseAcceleoEnvironment(queryEnvironment);
+        }
+    }
+
+    /**
+     * Creates markers for all {@link TemplateValidationMessage} of the given {@link DocumentTemplate}.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @param documentTemplate
+     *            the validated {@link DocumentTemplate}
+     * @throws CoreException
+     *             if a marker can't be created
+     */
+    private void createMarkers(IFile template, DocumentTemplate documentTemplate) throws CoreException {
+        final TreeIterator<EObject> it = documentTemplate.eAllContents();
+        while (it.hasNext()) {
+            final EObject eObject = it.next();
+            if (eObject instanceof IConstruct) {
+                for (TemplateValidationMessage message : ((IConstruct) eObject).getValidationMessages()) {
+                    final String runText;
+                    if (message.getLocation() != null) {
+                        runText = message.getLocation().text();
+                    } else {
+                        runText = null;
+                    }
+                    createMarker(template, getSeverity(message), message.getMessage(), runText);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a marker on the given template.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @param severity
+     *            the {@link IMarker#SEVERITY severity}
+     * @param message
+     *            the message
+     * @param runText
+     *            the text of the run the message is attached to if any, <code>null</code> otherwise
+     * @throws CoreException
+     *             if the marker can't be created
+     */
+    private void createMarker(IFile template, int severity, String message, String runText) throws CoreException {
+        final IMarker marker = template.createMarker(MARKER_TYPE);
+        marker.setAttribute(IMarker.SEVERITY, severity);
+        marker.setAttribute(IMarker.MESSAGE, message);
+        if (runText != null) {
+            marker.setAttribute(IMarker.LOCATION, runText);
+            marker.setAttribute(RUN_TEXT_ATTRIBUTE, runText);
+        }
+    }
+
+    /**
+     * Gets the {@link IMarker#SEVERITY severity} of the given {@link TemplateValidationMessage}.
+     *
+     * @param message
+     *            the {@link TemplateValidationMessage}
+     * @return the {@link IMarker#SEVERITY severity} of the given {@link TemplateValidationMessage}
+     */
+    private int getSeverity(TemplateValidationMessage message) {
+        final int res;
+
+        switch (message.getLevel()) {
+            case ERROR:
+                res = IMarker.SEVERITY_ERROR;
+                break;
+            case WARNING:
+                res = IMarker.SEVERITY_WARNING;
+                break;
+            default:
+                res = IMarker.SEVERITY_INFO;
+                break;
+        }
+
+        return res;
+    }
+
+    /**
+     * Hashes the content of the given template.
+     *
+     * @param template
+     *            the template {@link IFile}
+     * @return the hash of the content of the given template if it can be read, <code>null</code> otherwise
+     */
+    private String hash(IFile template) {
+        String res;
+
+        try (InputStream is = template.getContents(true)) {
+            res = HashUtils.hash(is);
+        } catch (CoreException | IOException e) {
+            M2DocPlugin.log(e, false);
+            res = null;
+        }
+
+        return res;
+    }
+
+}
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -31,9 +32,11 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.spi.StringArrayOptionHandler;
+import org.obeonetwork.m2doc.api.ZipCompression;
 import org.obeonetwork.m2doc.genconf.GenconfToDocumentGenerator;
 import org.obeonetwork.m2doc.genconf.Generation;
 import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
 import org.obeonetwork.m2doc.parser.DocumentParserException;
 
 import com.google.common.collect.Iterables;
@@ -57,6 +60,37 @@ public class M2DocLauncher implements IApplication {
 	@Option(name = "-genconfs", usage = "Specify the genconf model to use as inputs of the generation. Relative paths might be used or absolute uris (file://,http:/ or platform:/plugins/  for instance.)", metaVar = "INPUT", handler = StringArrayOptionHandler.class)
 	private String[] genconfs = new String[0];
 
+	/**
+	 * Skips generations which inputs didn't change since the last successful
+	 * run.
+	 */
+	@Option(name = "-skipUnchanged", usage = "Skip the generation of documents whose template, definitions, models and services didn't change since the last successful generation.")
+	private boolean skipUnchanged;
+
+	/**
+	 * The maximum number of iterations of a single repetition.
+	 */
+	@Option(name = "-maxIterations", usage = "Abort generations when a single repetition exceeds the given number of iterations.", metaVar = "COUNT")
+	private int maxIterations = Integer.MAX_VALUE;
+
+	/**
+	 * The maximum duration of a generation in seconds.
+	 */
+	@Option(name = "-maxDuration", usage = "Abort generations lasting more than the given number of seconds.", metaVar = "SECONDS")
+	private long maxDuration = Long.MAX_VALUE / 1000;
+
+	/**
+	 * The maximum number of generated runs.
+	 */
+	@Option(name = "-maxGeneratedRuns", usage = "Abort generations producing more than the given number of text runs, tables, table rows and images.", metaVar = "COUNT")
+	private int maxGeneratedRuns = Integer.MAX_VALUE;
+
+	/**
+	 * The deflate level of saved documents parts.
+	 */
+	@Option(name = "-compressionLevel", usage = "Deflate level from 0 (fastest) to 9 (smallest) of generated documents parts. Images are never compressed again.", metaVar = "LEVEL")
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
 	/**
 	 * Workspace location. This argument is here only to mimic the OSGi
 	 * applications common arguments so that they are displayed in usage.
@@ -128,13 +162,24 @@ public class M2DocLauncher implements IApplication {
 
 			final Monitor monitor = new BasicMonitor.Printing(System.out);
 			GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
+			final GenerationBudget budget = new GenerationBudget();
+			budget.setMaxIterations(maxIterations);
+			budget.setMaxDuration(maxDuration * 1000);
+			budget.setMaxGeneratedRuns(maxGeneratedRuns);
+			generator.setBudget(budget);
+			final ZipCompression compression = new ZipCompression();
+			compression.setDefaultLevel(compressionLevel);
+			generator.setCompression(compression);
 
 			monitor.beginTask("Generating .docx documents", loadedGenConfs.size());
 			for (Generation generation : loadedGenConfs) {
 				try {
 
 					System.out.println("Input: " + generation.eResource().getURI());
-					List<URI> generated = generator.generate(generation);
+					List<URI> generated = generator.generate(generation, skipUnchanged, monitor);
+					if (generated.isEmpty()) {
+						System.out.println("Up to date: " + generation.eResource().getURI());
+					}
 					for (URI uri : generated) {
 						System.out.println("Output: " + uri.toString());
 					}
@@ -202,6 +247,9 @@ public class M2DocLauncher implements IApplication {
 		if (genconfs == null || genconfs.length == 0) {
 			throw new CmdLineException(parser, "You must specify genconfs models.");
 		}
+		if (!ZipCompression.isValidLevel(compressionLevel)) {
+			throw new CmdLineException(parser, "The compression level must be from 0 to 9, or -1 for the default level.");
+		}
 		for (String modelPath : genconfs) {
 
 			URI rawURI = null;
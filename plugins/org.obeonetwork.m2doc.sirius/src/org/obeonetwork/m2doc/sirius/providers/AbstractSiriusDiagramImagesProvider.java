@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
@@ -41,7 +42,6 @@ import org.eclipse.gmf.runtime.diagram.ui.editparts.DiagramEditPart;
 import org.eclipse.gmf.runtime.diagram.ui.image.ImageFileFormat;
 import org.eclipse.gmf.runtime.diagram.ui.parts.DiagramEditor;
 import org.eclipse.gmf.runtime.diagram.ui.render.clipboard.DiagramGenerator;
-import org.eclipse.gmf.runtime.diagram.ui.render.util.CopyToImageUtil;
 import org.eclipse.gmf.runtime.diagram.ui.render.util.DiagramImageUtils;
 import org.eclipse.gmf.runtime.diagram.ui.util.DiagramEditorUtil;
 import org.eclipse.gmf.runtime.notation.Diagram;
@@ -62,7 +62,9 @@ import org.eclipse.sirius.ui.business.api.session.SessionUIManager;
 import org.eclipse.sirius.viewpoint.DRepresentation;
 import org.eclipse.sirius.viewpoint.description.AnnotationEntry;
 import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
+import org.obeonetwork.m2doc.generator.GenerationContext;
 import org.obeonetwork.m2doc.provider.AbstractDiagramProvider;
 import org.obeonetwork.m2doc.provider.ProviderException;
 import org.obeonetwork.m2doc.sirius.commands.ExportRepresentationCommand;
@@ -79,10 +81,28 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
      * Use the DiagramEditPartService to use the figure validation
      * infinite loop safe ViewpointDiagramGraphicalViewer.
      * redefine sirius DiagramEditPartService to get image size.
+     * A single offscreen {@link Shell} is used for all unopened diagrams of a generation, it is released by {@link #dispose()} in the
+     * UI thread. The size of the last exported image is kept by the service instead of the shared provider.
      * 
      * @author pguilet<pierre.guilet@obeo.fr>
      */
     private final class InfinitLoopSafeService extends DiagramEditPartService {
+
+        /**
+         * The {@link Display} of the UI thread creating this service.
+         */
+        private final Display display = Display.getDefault();
+
+        /**
+         * The offscreen {@link Shell} hosting viewers of unopened diagrams, created on first use.
+         */
+        private Shell shell;
+
+        /**
+         * The size of the last exported image.
+         */
+        private Dimension size;
+
         @SuppressWarnings("unchecked")
         @Override
         public List<Object> copyToImage(Diagram diagram, IPath destination, ImageFileFormat format,
@@ -99,45 +119,83 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
                 // begin added code
                 Rectangle rectangle = generator
                         .calculateImageRectangle(openedDiagramEditor.getDiagramEditPart().getPrimaryEditParts());
-                setHeight(rectangle.height);
-                setWidth(rectangle.width);
+                size = new Dimension(rectangle.width, rectangle.height);
                 // end added code
             } else {
 
-                Shell shell = new Shell();
+                if (shell == null || shell.isDisposed()) {
+                    shell = new Shell();
+                }
+                DiagramEditPart diagramEditPart = createDiagramEditPart(diagram, shell, preferencesHint);
                 try {
-                    DiagramEditPart diagramEditPart = createDiagramEditPart(diagram, shell, preferencesHint);
-                    SiriusCanonicalLayoutHandler.launchSynchroneArrangeCommand(diagramEditPart);
-                    diagramEditPart.getViewer().flush();
+                    if (SiriusCanonicalLayoutHandler.hasViewsToLayout(diagram)) {
+                        SiriusCanonicalLayoutHandler.launchSynchroneArrangeCommand(diagramEditPart);
+                        diagramEditPart.getViewer().flush();
+                    }
                     Assert.isNotNull(diagramEditPart);
                     DiagramGenerator generator = copyToImage(diagramEditPart, destination, format, monitor);
                     partInfo = generator.getDiagramPartInfo(diagramEditPart);
 
-                    Dimension size = DiagramImageUtils.calculateImageRectangle(diagramEditPart.getPrimaryEditParts(),
-                            0.0, new Dimension(100, 100)).getSize();
                     // begin added code
-                    setHeight(size.height);
-                    setWidth(size.width);
+                    size = DiagramImageUtils.calculateImageRectangle(diagramEditPart.getPrimaryEditParts(), 0.0,
+                            new Dimension(100, 100)).getSize();
                     // end added code
                 } finally {
-                    shell.dispose();
+                    // release the viewer but keep the shell for the next diagram
+                    diagramEditPart.deactivate();
+                    if (diagramEditPart.getViewer().getControl() != null) {
+                        diagramEditPart.getViewer().getControl().dispose();
+                    }
                 }
             }
 
             return partInfo;
         }
-    }
 
-    /**
-     * Boolean to know if diagram should be refresh before M2Doc generation.
-     * True mean refresh, and default value is false.
-     */
-    protected boolean refreshRepresentations;
+        /**
+         * Gets the size of the last exported image.
+         * 
+         * @return the size of the last exported image
+         */
+        public Dimension getSize() {
+            return size;
+        }
+
+        /**
+         * Disposes the offscreen {@link Shell} in the UI thread, the calling thread waits for it.
+         */
+        public void dispose() {
+            if (!display.isDisposed()) {
+                if (display.getThread() == Thread.currentThread()) {
+                    disposeShell();
+                } else {
+                    display.syncExec(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            disposeShell();
+                        }
+
+                    });
+                }
+            }
+        }
+
+        /**
+         * Disposes the offscreen {@link Shell} if any.
+         */
+        private void disposeShell() {
+            if (shell != null) {
+                shell.dispose();
+                shell = null;
+            }
+        }
+    }
 
     /**
-     * The {@link Set} of directory to cleanup.
+     * The {@link Set} of directory to cleanup created without {@link GenerationContext}.
      */
-    private Set<File> directoryToCleanup = Sets.newLinkedHashSet();
+    private final Set<File> directoryToCleanup = Collections.synchronizedSet(Sets.<File> newLinkedHashSet());
 
     /**
      * Replace forbidden characters with "_" in a filename.
@@ -200,10 +258,12 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
      *            Session
      * @param isDiagramOpened
      *            boolean
+     * @param refreshRepresentations
+     *            tells if the diagram should be refreshed before export
      * @return DDiagram
      */
     protected DDiagram getDDiagramToExport(final DDiagram diagram, final List<Layer> layers, final Session session,
-            boolean isDiagramOpened) {
+            boolean isDiagramOpened, boolean refreshRepresentations) {
         // No refresh if no layers case and no boolean refresh at true
         if (layers.isEmpty() && !refreshRepresentations) {
             return diagram;
@@ -232,7 +292,8 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
     }
 
     /**
-     * Generates images corresponding to the given representation and returns their paths into a list.
+     * Generates images corresponding to the given representation and returns their paths into a list. Viewers and editors are UI
+     * objects, so the export runs in the UI thread, generations from a background thread wait for it.
      * 
      * @param rootPath
      *            the path of the project were to generate images.
@@ -242,43 +303,114 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
      *            all the representations from which to generate the corresponding images.
      * @param layers
      *            layers activated on teh representations.
+     * @param refreshRepresentations
+     *            tells if representations should be refreshed before export
+     * @param parameters
+     *            the parameters passed to the provider, the size of each image is set in their {@link GenerationContext} if any
      * @return all images paths corresponding to the given representations.
      * @throws ProviderException
      *             if the image generation fails.
      */
-    protected List<String> generateAndReturnDiagramImages(String rootPath, final Session session,
-            List<DRepresentation> representations, List<Layer> layers) throws ProviderException {
+    protected List<String> generateAndReturnDiagramImages(final String rootPath, final Session session,
+            final List<DRepresentation> representations, final List<Layer> layers,
+            final boolean refreshRepresentations, final Map<String, Object> parameters) throws ProviderException {
+        final List<String> res;
+
+        final Display display = Display.getDefault();
+        if (display.getThread() == Thread.currentThread()) {
+            res = exportDiagramImages(rootPath, session, representations, layers, refreshRepresentations, parameters);
+        } else {
+            final List<String> images = new ArrayList<String>();
+            final ProviderException[] failure = new ProviderException[1];
+            display.syncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        images.addAll(exportDiagramImages(rootPath, session, representations, layers,
+                                refreshRepresentations, parameters));
+                    } catch (ProviderException e) {
+                        failure[0] = e;
+                    }
+                }
+
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            res = images;
+        }
+
+        return res;
+    }
+
+    /**
+     * Exports images corresponding to the given representation in the UI thread and returns their paths into a list.
+     * 
+     * @param rootPath
+     *            the path of the project were to generate images.
+     * @param session
+     *            the Sirius session containing the representations from which we generate images.
+     * @param representations
+     *            all the representations from which to generate the corresponding images.
+     * @param layers
+     *            layers activated on teh representations.
+     * @param refreshRepresentations
+     *            tells if representations should be refreshed before export
+     * @param parameters
+     *            the parameters passed to the provider
+     * @return all images paths corresponding to the given representations.
+     * @throws ProviderException
+     *             if the image generation fails.
+     */
+    private List<String> exportDiagramImages(String rootPath, final Session session,
+            List<DRepresentation> representations, List<Layer> layers, boolean refreshRepresentations,
+            Map<String, Object> parameters) throws ProviderException {
         List<String> resultList = new ArrayList<>();
         boolean isSessionDirtyBeforeExport = SessionStatus.DIRTY.equals(session.getStatus());
-        for (DRepresentation dRepresentation : representations) {
-            if (dRepresentation instanceof DDiagram) {
-                final DDiagram dsd = (DDiagram) dRepresentation;
-                DDiagram diagramtoExport = getDDiagramToExport(dsd, layers, session, getEditor(session, dsd) != null);
-                String filePath = getDiagramImageFilename(diagramtoExport, rootPath);
-                File file = new File(filePath);
-                file.getParentFile().mkdirs();
-                final IPath path = new Path(filePath);
-                final Diagram gmfDiagram = getGmfDiagram(diagramtoExport);
-
-                final CopyToImageUtil imageUtility = new InfinitLoopSafeService();
-
-                final EditingDomain editingDomain = session.getTransactionalEditingDomain();
-                final Diagram realOne = (Diagram) editingDomain.getResourceSet()
-                        .getEObject(EcoreUtil.getURI(gmfDiagram), true);
-                try {
-                    imageUtility.copyToImage(realOne, path, ImageFileFormat.JPEG, new NullProgressMonitor(),
-                            PreferencesHint.USE_DEFAULTS);
-                    resultList.add(filePath);
-
-                    // remove representation copy if needed
-                    if (!diagramtoExport.equals(dsd)) {
-                        session.getTransactionalEditingDomain().getCommandStack().undo();
+        final GenerationContext context = getGenerationContext(parameters);
+        final InfinitLoopSafeService imageUtility;
+        if (context != null) {
+            imageUtility = getService(context);
+        } else {
+            imageUtility = new InfinitLoopSafeService();
+        }
+        try {
+            for (DRepresentation dRepresentation : representations) {
+                if (dRepresentation instanceof DDiagram) {
+                    final DDiagram dsd = (DDiagram) dRepresentation;
+                    DDiagram diagramtoExport = getDDiagramToExport(dsd, layers, session, getEditor(session, dsd) != null,
+                            refreshRepresentations);
+                    String filePath = getDiagramImageFilename(diagramtoExport, rootPath);
+                    File file = new File(filePath);
+                    file.getParentFile().mkdirs();
+                    final IPath path = new Path(filePath);
+                    final Diagram gmfDiagram = getGmfDiagram(diagramtoExport);
+
+                    final EditingDomain editingDomain = session.getTransactionalEditingDomain();
+                    final Diagram realOne = (Diagram) editingDomain.getResourceSet()
+                            .getEObject(EcoreUtil.getURI(gmfDiagram), true);
+                    try {
+                        imageUtility.copyToImage(realOne, path, ImageFileFormat.JPEG, new NullProgressMonitor(),
+                                PreferencesHint.USE_DEFAULTS);
+                        setImageSize(parameters, filePath, imageUtility.getSize().width,
+                                imageUtility.getSize().height);
+                        resultList.add(filePath);
+
+                        // remove representation copy if needed
+                        if (!diagramtoExport.equals(dsd)) {
+                            session.getTransactionalEditingDomain().getCommandStack().undo();
+                        }
+                    } catch (CoreException e) {
+                        throw new ProviderException("Image creation from diagram '" + dRepresentation.getName()
+                            + "' to the file '" + filePath + "' failed.", e);
                     }
-                } catch (CoreException e) {
-                    throw new ProviderException("Image creation from diagram '" + dRepresentation.getName()
-                        + "' to the file '" + filePath + "' failed.", e);
                 }
             }
+        } finally {
+            if (context == null) {
+                imageUtility.dispose();
+            }
         }
         // save session if not dirty before diagram export
         if (!isSessionDirtyBeforeExport) {
@@ -287,6 +419,37 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
         return resultList;
     }
 
+    /**
+     * Gets the {@link InfinitLoopSafeService} of the given {@link GenerationContext}. It is created on first use, cached in the
+     * {@link GenerationContext} and disposed with it, so all diagrams of a generation share its offscreen {@link Shell}.
+     * 
+     * @param context
+     *            the {@link GenerationContext}
+     * @return the {@link InfinitLoopSafeService} of the given {@link GenerationContext}
+     */
+    private InfinitLoopSafeService getService(GenerationContext context) {
+        InfinitLoopSafeService res;
+
+        synchronized (context) {
+            res = (InfinitLoopSafeService) context.getCachedValue(this);
+            if (res == null) {
+                res = new InfinitLoopSafeService();
+                context.putCachedValue(this, res);
+                final InfinitLoopSafeService service = res;
+                context.addCleanupHook(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        service.dispose();
+                    }
+
+                });
+            }
+        }
+
+        return res;
+    }
+
     /**
      * Return opened representation.
      * 
@@ -362,7 +525,7 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
     }
 
     /**
-     * Creates a temporary directory.
+     * Creates a temporary directory. It will be deleted when {@link #clear()} is called.
      * 
      * @return the {@link File} corresponding to the created directory
      */
@@ -372,10 +535,36 @@ public abstract class AbstractSiriusDiagramImagesProvider extends AbstractDiagra
         return tempFolder.getAbsolutePath();
     }
 
+    /**
+     * Creates a temporary directory owned by the {@link GenerationContext} of the given parameters if any, or by this provider
+     * otherwise.
+     * 
+     * @param parameters
+     *            the parameters passed to the provider
+     * @return the absolute path of the created directory
+     */
+    protected String createTempDirectoryPath(Map<String, Object> parameters) {
+        final String res;
+
+        final GenerationContext context = getGenerationContext(parameters);
+        if (context != null) {
+            res = context.createTemporaryDirectory().getAbsolutePath();
+        } else {
+            res = createTempDirectoryPath();
+        }
+
+        return res;
+    }
+
     @Override
     public void clear() {
         super.clear();
-        for (File file : directoryToCleanup) {
+        final List<File> directories;
+        synchronized (directoryToCleanup) {
+            directories = new ArrayList<File>(directoryToCleanup);
+            directoryToCleanup.clear();
+        }
+        for (File file : directories) {
             deleteDirectory(file);
         }
     }
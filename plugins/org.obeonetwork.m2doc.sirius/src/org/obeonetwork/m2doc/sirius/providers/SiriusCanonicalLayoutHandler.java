@@ -50,24 +50,56 @@ public final class SiriusCanonicalLayoutHandler {
 
     /**
      * Execute ArrangeRequest's {@link Command} for created views (in the
-     * DDiagramCanonicalSynchronizer) to arrange.
+     * DDiagramCanonicalSynchronizer) to arrange. Nothing is computed if the diagram has no {@link #hasViewsToLayout(Diagram) view to
+     * layout}.
      * 
      * @param diagramEditPart
      *            The {@link DiagramEditPart} used to get parent
      *            {@link IGraphicalEditPart} of created {@link View}s to layout.
      */
     public static void launchSynchroneArrangeCommand(DiagramEditPart diagramEditPart) {
-        TransactionalEditingDomain editingDomain = diagramEditPart.getEditingDomain();
-        Map<IGraphicalEditPart, List<IAdaptable>> createdViewsToLayoutMap = getCreatedViewsToLayoutMap(diagramEditPart);
-        Map<IGraphicalEditPart, List<IAdaptable>> createdViewsWithSpecialLayoutMap = getCreatedViewsWithSpecialLayoutMap(
-                diagramEditPart);
-        Command layoutCommand = getSynchronousLayoutCommand(createdViewsToLayoutMap, createdViewsWithSpecialLayoutMap,
-                editingDomain);
-        if (layoutCommand.canExecute()) {
-            editingDomain.getCommandStack().execute(layoutCommand);
+        if (hasViewsToLayout(diagramEditPart.getDiagramView())) {
+            TransactionalEditingDomain editingDomain = diagramEditPart.getEditingDomain();
+            Map<IGraphicalEditPart, List<IAdaptable>> createdViewsToLayoutMap = getCreatedViewsToLayoutMap(
+                    diagramEditPart);
+            Map<IGraphicalEditPart, List<IAdaptable>> createdViewsWithSpecialLayoutMap = getCreatedViewsWithSpecialLayoutMap(
+                    diagramEditPart);
+            Command layoutCommand = getSynchronousLayoutCommand(createdViewsToLayoutMap,
+                    createdViewsWithSpecialLayoutMap, editingDomain);
+            if (layoutCommand.canExecute()) {
+                editingDomain.getCommandStack().execute(layoutCommand);
+            }
         }
     }
 
+    /**
+     * Tells if the given {@link Diagram} has created views waiting for a layout. Views are removed from the
+     * {@link SiriusLayoutDataManager} once laid out, so a diagram already arranged and not changed since has no view to layout.
+     * 
+     * @param diagram
+     *            the {@link Diagram}
+     * @return <code>true</code> if the given {@link Diagram} has created views waiting for a layout, <code>false</code> otherwise
+     */
+    public static boolean hasViewsToLayout(Diagram diagram) {
+        return diagram != null && (hasViews(SiriusLayoutDataManager.INSTANCE.getCreatedViewsToLayout(), diagram)
+            || hasViews(SiriusLayoutDataManager.INSTANCE.getCreatedViewWithCenterLayout(), diagram));
+    }
+
+    /**
+     * Tells if the given {@link Map} has {@link View} for the given {@link Diagram}.
+     * 
+     * @param createdViews
+     *            the {@link Map} from {@link Diagram} to created {@link View}
+     * @param diagram
+     *            the {@link Diagram}
+     * @return <code>true</code> if the given {@link Map} has {@link View} for the given {@link Diagram}, <code>false</code> otherwise
+     */
+    private static boolean hasViews(Map<Diagram, Set<View>> createdViews, Diagram diagram) {
+        final Set<View> views = createdViews.get(diagram);
+
+        return views != null && !views.isEmpty();
+    }
+
     /**
      * Gets created views to layout {@link Map}.
      * 
@@ -68,13 +68,13 @@ public class SiriusDiagramByDiagramDescriptionNameProvider extends AbstractSiriu
     public List<String> getRepresentationImagePath(Map<String, Object> parameters) throws ProviderException {
         Generation generation = (Generation) parameters.get(ProviderConstants.CONF_ROOT_OBJECT_KEY);
 
-        String rootPath = createTempDirectoryPath();
+        String rootPath = createTempDirectoryPath(parameters);
         Object diagramDescriptionName = parameters.get(DIAGRAM_DESCRIPTION_ID_KEY);
         Object targetRootObject = parameters.get(TARGET_ROOT_OBJECT_KEY);
         boolean createIfAbsent = CREATE_VALUE.equals(parameters.get(CREATE_ID_KEY));
         List<String> diagramActivatedLayers = (List<String>) parameters
                 .get(ProviderConstants.DIAGRAM_ACTIVATED_LAYERS_KEY);
-        refreshRepresentations = OptionUtil.mustRefreshRepresentation(parameters);
+        final boolean refreshRepresentations = OptionUtil.mustRefreshRepresentation(parameters);
         if (!(diagramDescriptionName instanceof String)) {
             throw new ProviderException(
                     "Image cannot be computed because no diagram description name has been provided to the provider \""
@@ -95,9 +95,11 @@ public class SiriusDiagramByDiagramDescriptionNameProvider extends AbstractSiriu
                             (String) diagramDescriptionName, session, createIfAbsent);
             if (!representations.isEmpty() && representations.get(0) instanceof DDiagram) {
                 return generateAndReturnDiagramImages(rootPath, session, representations,
-                        getLayers((DDiagram) representations.get(0), diagramActivatedLayers));
+                        getLayers((DDiagram) representations.get(0), diagramActivatedLayers), refreshRepresentations,
+                        parameters);
             }
-            return generateAndReturnDiagramImages(rootPath, session, representations, Lists.<Layer> newArrayList());
+            return generateAndReturnDiagramImages(rootPath, session, representations, Lists.<Layer> newArrayList(),
+                    refreshRepresentations, parameters);
         }
     }
 
@@ -63,7 +63,7 @@ public class SiriusDiagramByTitleProvider extends AbstractSiriusDiagramImagesPro
     @Override
     public List<String> getRepresentationImagePath(Map<String, Object> parameters) throws ProviderException {
         EObject rootObject = (EObject) parameters.get(ProviderConstants.CONF_ROOT_OBJECT_KEY);
-        String rootPath = createTempDirectoryPath();
+        String rootPath = createTempDirectoryPath(parameters);
         List<String> diagramActivatedLayers = (List<String>) parameters
                 .get(ProviderConstants.DIAGRAM_ACTIVATED_LAYERS_KEY);
         Session session = SessionManager.INSTANCE.getSession(rootObject);
@@ -71,7 +71,7 @@ public class SiriusDiagramByTitleProvider extends AbstractSiriusDiagramImagesPro
             throw new ProviderException("Cannot find session associated to the conf model root element.");
         }
         Object representationTitle = parameters.get(REPRESENTATION_TITLE_KEY);
-        refreshRepresentations = OptionUtil.mustRefreshRepresentation(parameters);
+        final boolean refreshRepresentations = OptionUtil.mustRefreshRepresentation(parameters);
         if (!(representationTitle instanceof String)) {
             throw new ProviderException(
                     "Image cannot be computed because no representation title has been provided to the provider \""
@@ -84,7 +84,7 @@ public class SiriusDiagramByTitleProvider extends AbstractSiriusDiagramImagesPro
                 List<DRepresentation> representations = new ArrayList<>(1);
                 representations.add(dsd);
                 List<String> resultList = generateAndReturnDiagramImages(rootPath, session, representations,
-                        getLayers(dsd, diagramActivatedLayers));
+                        getLayers(dsd, diagramActivatedLayers), refreshRepresentations, parameters);
                 return resultList;
             } else {
                 throw new ProviderException("Representation with title '" + representationTitle + "' not found");
@@ -25,9 +25,12 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.sirius.business.api.modelingproject.ModelingProject;
 import org.eclipse.sirius.business.api.session.Session;
+import org.eclipse.sirius.business.api.session.SessionManager;
 import org.eclipse.sirius.ext.base.Option;
 import org.eclipse.sirius.tools.api.command.semantic.AddSemanticResourceCommand;
+import org.obeonetwork.m2doc.genconf.Definition;
 import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.genconf.ModelDefinition;
 import org.obeonetwork.m2doc.genconf.provider.IConfigurationProvider;
 import org.obeonetwork.m2doc.properties.TemplateCustomProperties;
 import org.obeonetwork.m2doc.template.DocumentTemplate;
@@ -35,6 +38,7 @@ import org.obeonetwork.m2doc.template.DocumentTemplate;
 /**
  * Configuration provider for Sirius.
  * Automatically add session registered EPackage URIs in configuration model.
+ * Session resources of models are inputs of the generation since representations are exported from them.
  * 
  * @author <a href="mailto:nathalie.lepine@obeo.fr">Nathalie Lepine</a>
  */
@@ -179,4 +183,29 @@ public class SiriusConfigurationProvider implements IConfigurationProvider {
         return Lists.newArrayList();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.obeonetwork.m2doc.genconf.provider.IConfigurationProvider#getInputURIs(org.obeonetwork.m2doc.genconf.Generation)
+     */
+    @Override
+    public List<URI> getInputURIs(Generation generation) {
+        final List<URI> res = Lists.newArrayList();
+
+        for (Definition definition : generation.getDefinitions()) {
+            if (definition instanceof ModelDefinition && ((ModelDefinition) definition).getValue() != null) {
+                final Session session = SessionManager.INSTANCE.getSession(((ModelDefinition) definition).getValue());
+                if (session != null) {
+                    for (Resource resource : session.getAllSessionResources()) {
+                        if (resource.getURI() != null && !res.contains(resource.getURI())) {
+                            res.add(resource.getURI());
+                        }
+                    }
+                }
+            }
+        }
+
+        return res;
+    }
+
 }
@@ -10,9 +10,11 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.sirius.providers.tables;
 
-import java.util.ArrayList;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.eclipse.sirius.table.metamodel.table.DColumn;
@@ -25,7 +27,8 @@ import org.obeonetwork.m2doc.provider.AbstractTableProvider.MTable;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Implementation of {@link MTable} based on a {@link DTable}.
+ * Implementation of {@link MTable} based on a {@link DTable}. Rows are wrapped lazily while they are iterated, so each iteration of
+ * {@link #getRows()} returns new {@link MRow} instances: row identity is not stable between iterations.
  * 
  * @author ldelaigue
  */
@@ -64,13 +67,18 @@ public class DMTable implements MTable {
 
     @Override
     public Iterable<? extends MRow> getRows() {
-        List<MRow> result = new ArrayList<MRow>();
-        for (DLine line : table.getLines()) {
-            if (line.isVisible()) {
-                result.add(new DMRow(line, this));
+        final Iterable<DLine> visibleLines = Iterables.filter(table.getLines(), new Predicate<DLine>() {
+            @Override
+            public boolean apply(DLine line) {
+                return line.isVisible();
             }
-        }
-        return result;
+        });
+        return Iterables.transform(visibleLines, new Function<DLine, MRow>() {
+            @Override
+            public MRow apply(DLine line) {
+                return new DMRow(line, DMTable.this);
+            }
+        });
     }
 
     /**
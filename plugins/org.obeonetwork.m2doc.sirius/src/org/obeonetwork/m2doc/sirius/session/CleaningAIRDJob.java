@@ -2,6 +2,8 @@ package org.obeonetwork.m2doc.sirius.session;
 
 import com.google.common.collect.Sets;
 
+import java.util.Set;
+
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.sirius.business.api.dialect.command.DeleteRepresentationCommand;
 import org.eclipse.sirius.business.api.session.Session;
@@ -46,8 +48,38 @@ public class CleaningAIRDJob implements Runnable {
      */
     @Override
     public void run() {
+        deleteRepresentations(session, Sets.newHashSet(representation));
+    }
+
+    /**
+     * Gets the session where the representation has been created and must be deleted.
+     * 
+     * @return the session where the representation has been created and must be deleted
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Gets the representation that must be cleaned.
+     * 
+     * @return the representation that must be cleaned
+     */
+    public DRepresentation getRepresentation() {
+        return representation;
+    }
+
+    /**
+     * Deletes the given representations with a single command, so a single transaction is committed and listeners are notified once.
+     * 
+     * @param session
+     *            the session where the representations have been created
+     * @param representations
+     *            the representations to delete
+     */
+    public static void deleteRepresentations(Session session, Set<DRepresentation> representations) {
         session.getTransactionalEditingDomain().getCommandStack()
-                .execute(new DeleteRepresentationCommand(session, Sets.newHashSet(representation)));
+                .execute(new DeleteRepresentationCommand(session, representations));
     }
 
 }
@@ -1,14 +1,22 @@
 package org.obeonetwork.m2doc.sirius.session;
 
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 
-import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
+import org.eclipse.sirius.business.api.session.Session;
+import org.eclipse.sirius.viewpoint.DRepresentation;
 import org.obeonetwork.m2doc.genconf.Generation;
 
 /**
- * Registry of cleaning jobs.
+ * Registry of cleaning jobs. Jobs of distinct generations can be registered and cleaned concurrently.
  * 
  * @author Romain Guider
  */
@@ -21,7 +29,8 @@ public class CleaningJobRegistry {
      * The multi map that contains the cleaning jobs executed post generation.
      */
 
-    private Multimap<Generation, Runnable> jobs = ArrayListMultimap.create();
+    private final ListMultimap<Generation, Runnable> jobs = Multimaps
+            .synchronizedListMultimap(ArrayListMultimap.<Generation, Runnable> create());
 
     /**
      * hidden constructor.
@@ -42,21 +51,31 @@ public class CleaningJobRegistry {
     }
 
     /**
-     * Clears all the jobs associated to a generation.
+     * Clears all the jobs associated to a generation. Representations of {@link CleaningAIRDJob} are deleted with a single command per
+     * session.
      * 
      * @param generation
      *            the generation.
      */
     public void clean(Generation generation) {
-        try {
-            Collection<Runnable> genJobs = jobs.get(generation);
-            if (genJobs != null) {
-                for (Runnable job : genJobs) {
-                    job.run();
+        // jobs are removed first so a job registered while cleaning is kept for the next clean
+        final List<Runnable> genJobs = jobs.removeAll(generation);
+        final Map<Session, Set<DRepresentation>> representationsToDelete = new LinkedHashMap<Session, Set<DRepresentation>>();
+        for (Runnable job : genJobs) {
+            if (job instanceof CleaningAIRDJob) {
+                final CleaningAIRDJob airdJob = (CleaningAIRDJob) job;
+                Set<DRepresentation> representations = representationsToDelete.get(airdJob.getSession());
+                if (representations == null) {
+                    representations = Sets.newLinkedHashSet();
+                    representationsToDelete.put(airdJob.getSession(), representations);
                 }
+                representations.add(airdJob.getRepresentation());
+            } else {
+                job.run();
             }
-        } finally {
-            jobs.removeAll(generation);
+        }
+        for (Entry<Session, Set<DRepresentation>> entry : representationsToDelete.entrySet()) {
+            CleaningAIRDJob.deleteRepresentations(entry.getKey(), entry.getValue());
         }
     }
 
@@ -51,4 +51,10 @@ public class SessionCleaner implements IConfigurationProvider {
         return Collections.emptyList();
     }
 
+    @Override
+    public List<URI> getInputURIs(Generation generation) {
+        // unused.
+        return Collections.emptyList();
+    }
+
 }
@@ -15,6 +15,7 @@ import java.io.InputStream;
 import java.util.Collection;
 
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 
 import org.eclipse.emf.common.notify.Notification;
@@ -456,8 +457,15 @@ public class DocumentTemplateImpl extends MinimalEObjectImpl.Container implement
     @Override
     public void close() throws IOException {
         getDocument().close();
-        getOpcPackage().close();
-        getInputStream().close();
+        if (getOpcPackage().getPackageAccess() == PackageAccess.READ) {
+            // a read only package can't be saved
+            getOpcPackage().revert();
+        } else {
+            getOpcPackage().close();
+        }
+        if (getInputStream() != null) {
+            getInputStream().close();
+        }
     }
     
 } //DocumentTemplateImpl
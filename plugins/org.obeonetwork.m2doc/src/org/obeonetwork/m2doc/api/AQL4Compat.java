@@ -15,9 +15,13 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.eclipse.acceleo.query.parser.AstValidator;
 import org.eclipse.acceleo.query.runtime.IQueryBuilderEngine.AstResult;
@@ -73,6 +77,11 @@ public final class AQL4Compat {
      */
     private static final Method REGISTER_METHOD;
 
+    /**
+     * The method to register a {@link Set} of {@link IService} at once if available (AQL 6), <code>null</code> otherwise.
+     */
+    private static final Method BULK_REGISTER_METHOD;
+
     /**
      * The Java service {@link Constructor}.
      */
@@ -93,6 +102,23 @@ public final class AQL4Compat {
      */
     private static final Method VALIDATION_METHOD;
 
+    /**
+     * The {@link Class} already registered in each {@link IQueryEnvironment}.
+     */
+    private static final Map<IQueryEnvironment, Set<Class<?>>> REGISTERED_CLASSES = new WeakHashMap<IQueryEnvironment, Set<Class<?>>>();
+
+    /**
+     * The Java {@link IService} of each service {@link Class} that is not an {@link IServiceProvider}. They are built once with a single
+     * service instance and registered as is in every {@link IQueryEnvironment}. A {@link ClassValue} is used so cached services don't
+     * prevent service classes from being unloaded.
+     */
+    private static final ClassValue<Set<IService>> JAVA_SERVICES = new ClassValue<Set<IService>>() {
+        @Override
+        protected Set<IService> computeValue(Class<?> type) {
+            return Collections.unmodifiableSet(getJavaServices(type, newInstance(type)));
+        }
+    };
+
     static {
         Method methodAQL4 = null;
         Method methodAQL5 = null;
@@ -117,6 +143,18 @@ public final class AQL4Compat {
             REGISTER_METHOD = methodAQL4;
         }
 
+        Method bulkMethod = null;
+        if (IS_AQL_5) {
+            try {
+                bulkMethod = IQueryEnvironment.class.getMethod("registerServices", Set.class);
+                // CHECKSTYLE:OFF
+            } catch (Exception e) {
+                // CHECKSTYLE:ON
+                // registered one by one
+            }
+        }
+        BULK_REGISTER_METHOD = bulkMethod;
+
         Class<? extends IService> javaServiceClass;
         try {
             javaServiceClass = (Class<? extends IService>) AQL4Compat.class.getClassLoader()
@@ -198,15 +236,27 @@ public final class AQL4Compat {
             Set<IService> services) {
         final ServiceRegistrationResult result = new ServiceRegistrationResult();
 
-        for (IService service : services) {
+        if (BULK_REGISTER_METHOD != null) {
             try {
-                result.merge((ServiceRegistrationResult) REGISTER_METHOD.invoke(queryEnvironment, service));
+                result.merge((ServiceRegistrationResult) BULK_REGISTER_METHOD.invoke(queryEnvironment, services));
             } catch (IllegalAccessException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES, e);
             } catch (IllegalArgumentException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES, e);
             } catch (InvocationTargetException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES, e);
+            }
+        } else {
+            for (IService service : services) {
+                try {
+                    result.merge((ServiceRegistrationResult) REGISTER_METHOD.invoke(queryEnvironment, service));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                } catch (InvocationTargetException e) {
+                    throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + getServiceName(service), e);
+                }
             }
         }
 
@@ -246,7 +296,8 @@ public final class AQL4Compat {
 
     /**
      * Gets the {@link Set} of {@link IService} for the given {@link Class}. If the class can't be
-     * instantiated only static {@link Method} will be used to produce {@link IService}.
+     * instantiated only static {@link Method} will be used to produce {@link IService}. Java services are cached per {@link Class},
+     * only {@link IServiceProvider} are asked for their services for each {@link IQueryEnvironment}.
      * 
      * @param queryEnvironment
      *            the {@link IReadOnlyQueryEnvironment}
@@ -255,8 +306,25 @@ public final class AQL4Compat {
      * @return the {@link Set} of {@link IService} for the given {@link Class}
      */
     private static Set<IService> getServices(IReadOnlyQueryEnvironment queryEnvironment, Class<?> cls) {
-        final Set<IService> result = new LinkedHashSet<>();
+        final Set<IService> result;
+
+        if (IServiceProvider.class.isAssignableFrom(cls)) {
+            result = getServicesFromInstance(queryEnvironment, cls, newInstance(cls));
+        } else {
+            result = JAVA_SERVICES.get(cls);
+        }
+
+        return result;
+    }
 
+    /**
+     * Instantiates the given service {@link Class} with its default constructor.
+     * 
+     * @param cls
+     *            the service {@link Class}
+     * @return the new instance if any, <code>null</code> if the {@link Class} can't be instantiated
+     */
+    private static Object newInstance(Class<?> cls) {
         Object instance = null;
         try {
             Constructor<?> cstr = null;
@@ -275,9 +343,8 @@ public final class AQL4Compat {
         } catch (InvocationTargetException e) {
             // we will go without instance and register only static methods
         }
-        result.addAll(getServicesFromInstance(queryEnvironment, cls, instance));
 
-        return result;
+        return instance;
     }
 
     /**
@@ -304,21 +371,37 @@ public final class AQL4Compat {
                 throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
             }
         } else {
-            Method[] methods = cls.getMethods();
-            for (Method method : methods) {
-                if (isServiceMethod(instance, method)) {
-                    try {
-                        final IService service = JAVA_SERVICE_CONSTRUCTOR.newInstance(method, instance);
-                        result.add(service);
-                    } catch (InstantiationException e) {
-                        throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
-                    } catch (IllegalArgumentException e) {
-                        throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
-                    } catch (InvocationTargetException e) {
-                        throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
-                    }
+            result.addAll(getJavaServices(cls, instance));
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the Java {@link IService} for the given instance.
+     * 
+     * @param cls
+     *            the services {@link Class}
+     * @param instance
+     *            the instance if any, <code>null</code> otherwise
+     * @return the created {@link IService}
+     */
+    private static Set<IService> getJavaServices(Class<?> cls, Object instance) {
+        final Set<IService> result = new LinkedHashSet<>();
+
+        for (Method method : cls.getMethods()) {
+            if (isServiceMethod(instance, method)) {
+                try {
+                    final IService service = JAVA_SERVICE_CONSTRUCTOR.newInstance(method, instance);
+                    result.add(service);
+                } catch (InstantiationException e) {
+                    throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
+                } catch (InvocationTargetException e) {
+                    throw new RuntimeException(UNABLE_TO_INSTANTIATE_I_SERVICE_FOR_METHOD + method.getName(), e);
                 }
             }
         }
@@ -358,7 +441,9 @@ public final class AQL4Compat {
     }
 
     /**
-     * Registers the given {@link Class} into the given {@link IQueryEnvironment}.
+     * Registers the given {@link Class} into the given {@link IQueryEnvironment}. Nothing is done if the {@link Class} has already been
+     * registered into the {@link IQueryEnvironment}. The {@link Class} is marked as registered only once its services are registered,
+     * concurrent calls for the same {@link IQueryEnvironment} wait for each other.
      * 
      * @param env
      *            the {@link IQueryEnvironment}
@@ -366,19 +451,93 @@ public final class AQL4Compat {
      *            the {@link Class}
      */
     public static void register(IQueryEnvironment env, Class<?> cls) {
+        synchronized (env) {
+            if (!isRegistered(env, cls)) {
+                if (IS_AQL_5) {
+                    final Set<IService> iServices = getServices(env, cls);
+                    registerServices(env, iServices);
+                } else {
+                    try {
+                        REGISTER_METHOD.invoke(env, cls);
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
+                    } catch (IllegalArgumentException e) {
+                        throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
+                    } catch (InvocationTargetException e) {
+                        throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
+                    }
+                }
+                markRegistered(env, cls);
+            }
+        }
+    }
+
+    /**
+     * Registers the given {@link Class classes} into the given {@link IQueryEnvironment} at once. {@link Class classes} already
+     * registered into the {@link IQueryEnvironment} are skipped.
+     * 
+     * @param env
+     *            the {@link IQueryEnvironment}
+     * @param classes
+     *            the {@link Class classes}
+     */
+    public static void register(IQueryEnvironment env, Collection<Class<?>> classes) {
         if (IS_AQL_5) {
-            final Set<IService> iServices = getServices(env, cls);
-            registerServices(env, iServices);
+            synchronized (env) {
+                final Set<IService> iServices = new LinkedHashSet<IService>();
+                final Set<Class<?>> newClasses = new LinkedHashSet<Class<?>>();
+                for (Class<?> cls : classes) {
+                    if (!isRegistered(env, cls) && newClasses.add(cls)) {
+                        iServices.addAll(getServices(env, cls));
+                    }
+                }
+                if (!iServices.isEmpty()) {
+                    registerServices(env, iServices);
+                }
+                for (Class<?> cls : newClasses) {
+                    markRegistered(env, cls);
+                }
+            }
         } else {
-            try {
-                REGISTER_METHOD.invoke(env, cls);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
-            } catch (IllegalArgumentException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(UNABLE_TO_REGISTER_SERVICES + cls.getName(), e);
+            for (Class<?> cls : classes) {
+                register(env, cls);
+            }
+        }
+    }
+
+    /**
+     * Tells if the given {@link Class} has been registered into the given {@link IQueryEnvironment}.
+     * 
+     * @param env
+     *            the {@link IQueryEnvironment}
+     * @param cls
+     *            the {@link Class}
+     * @return <code>true</code> if the given {@link Class} has been registered into the given {@link IQueryEnvironment},
+     *         <code>false</code> otherwise
+     */
+    private static boolean isRegistered(IQueryEnvironment env, Class<?> cls) {
+        synchronized (REGISTERED_CLASSES) {
+            final Set<Class<?>> classes = REGISTERED_CLASSES.get(env);
+            return classes != null && classes.contains(cls);
+        }
+    }
+
+    /**
+     * Marks the given {@link Class} as registered into the given {@link IQueryEnvironment}.
+     * 
+     * @param env
+     *            the {@link IQueryEnvironment}
+     * @param cls
+     *            the {@link Class}
+     */
+    private static void markRegistered(IQueryEnvironment env, Class<?> cls) {
+        synchronized (REGISTERED_CLASSES) {
+            Set<Class<?>> classes = REGISTERED_CLASSES.get(env);
+            if (classes == null) {
+                classes = new HashSet<Class<?>>();
+                REGISTERED_CLASSES.put(env, classes);
             }
+            classes.add(cls);
         }
     }
 
@@ -432,7 +591,9 @@ public final class AQL4Compat {
     }
 
     /**
-     * Validates using the given {@link AstValidator} and {@link AstResult}.
+     * Validates using the given {@link AstValidator} and {@link AstResult}. Lookups in an {@link IQueryEnvironment} are not thread safe,
+     * validations against the same environment are serialized, like {@link #register(IQueryEnvironment, Class) registrations}, so
+     * parallel validations can share an environment.
      * 
      * @param astResult
      *            the {@link AstResult}
@@ -450,10 +611,12 @@ public final class AQL4Compat {
             throw new RuntimeException("null ast result passed to the validate method");
         }
         try {
-            if (AST_VALIDATOR_CONSTRUCTOR_ONLY_ENV) {
-                result = (IValidationResult) VALIDATION_METHOD.invoke(validator, variableTypes, astResult);
-            } else {
-                result = (IValidationResult) VALIDATION_METHOD.invoke(validator, astResult);
+            synchronized (environment) {
+                if (AST_VALIDATOR_CONSTRUCTOR_ONLY_ENV) {
+                    result = (IValidationResult) VALIDATION_METHOD.invoke(validator, variableTypes, astResult);
+                } else {
+                    result = (IValidationResult) VALIDATION_METHOD.invoke(validator, astResult);
+                }
             }
         } catch (IllegalAccessException e) {
             throw new RuntimeException(UNABLE_TO_INVOKE_VALIDATION_METHOD, e);
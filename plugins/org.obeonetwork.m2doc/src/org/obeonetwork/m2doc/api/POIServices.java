@@ -11,9 +11,11 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.api;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
@@ -34,6 +36,35 @@ public final class POIServices {
      */
     private static POIServices eINSTANCE = new POIServices();
 
+    /**
+     * An {@link OutputStream} flushing instead of closing its delegate.
+     * 
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        /**
+         * Constructor.
+         * 
+         * @param out
+         *            the delegate {@link OutputStream}
+         */
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+    }
+
     /**
      * Constructor.
      */
@@ -109,7 +140,7 @@ public final class POIServices {
     }
 
     /**
-     * Save the document into the file pointing at the given path.
+     * Save the document into the file pointing at the given path with the default {@link ZipCompression}.
      * 
      * @param document
      *            the validated document to save.
@@ -119,8 +150,60 @@ public final class POIServices {
      *             throws if the writing of the document on the file system fails.
      */
     public void saveFile(XWPFDocument document, URI theDestinationFileName) throws IOException {
-        try (OutputStream os = URIConverter.INSTANCE.createOutputStream(theDestinationFileName)) {
-            document.write(os);
+        saveFile(document, theDestinationFileName, new ZipCompression());
+    }
+
+    /**
+     * Save the document into the file pointing at the given path with the given {@link ZipCompression}.
+     * 
+     * @param document
+     *            the validated document to save.
+     * @param theDestinationFileName
+     *            the file were to save the content of the validated document.
+     * @param zipCompression
+     *            the {@link ZipCompression} to use
+     * @throws IOException
+     *             throws if the writing of the document on the file system fails.
+     */
+    public void saveFile(XWPFDocument document, URI theDestinationFileName, ZipCompression zipCompression)
+            throws IOException {
+        try (OutputStream os = URIConverter.INSTANCE.createOutputStream(theDestinationFileName);
+                ZipOutputStream zos = zipCompression.createZipOutputStream(os)) {
+            document.write(zos);
+        }
+    }
+
+    /**
+     * Save the document into the given {@link OutputStream} with the default {@link ZipCompression}. The given {@link OutputStream} is
+     * not closed.
+     * 
+     * @param document
+     *            the validated document to save.
+     * @param os
+     *            the {@link OutputStream} were to save the content of the validated document.
+     * @throws IOException
+     *             throws if the writing of the document fails.
+     */
+    public void saveFile(XWPFDocument document, OutputStream os) throws IOException {
+        saveFile(document, os, new ZipCompression());
+    }
+
+    /**
+     * Save the document into the given {@link OutputStream} with the given {@link ZipCompression}. The given {@link OutputStream} is not
+     * closed.
+     * 
+     * @param document
+     *            the validated document to save.
+     * @param os
+     *            the {@link OutputStream} were to save the content of the validated document.
+     * @param zipCompression
+     *            the {@link ZipCompression} to use
+     * @throws IOException
+     *             throws if the writing of the document fails.
+     */
+    public void saveFile(XWPFDocument document, OutputStream os, ZipCompression zipCompression) throws IOException {
+        try (ZipOutputStream zos = zipCompression.createZipOutputStream(new NonClosingOutputStream(os))) {
+            document.write(zos);
         }
     }
 
@@ -11,8 +11,13 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
@@ -25,6 +30,7 @@ import org.eclipse.acceleo.query.validation.type.SetType;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.obeonetwork.m2doc.services.BooleanServices;
 import org.obeonetwork.m2doc.services.ImageServices;
 import org.obeonetwork.m2doc.services.LinkServices;
@@ -42,6 +48,86 @@ public final class QueryServices {
      */
     private static QueryServices eINSTANCE = new QueryServices();
 
+    /**
+     * The available shared {@link IQueryEnvironment} per template location.
+     */
+    private final Map<URI, List<SharedEnvironment>> sharedEnvironments = new HashMap<URI, List<SharedEnvironment>>();
+
+    /**
+     * The shared {@link IQueryEnvironment} currently in use.
+     */
+    private final Map<IQueryEnvironment, SharedEnvironment> usedEnvironments = new IdentityHashMap<IQueryEnvironment, SharedEnvironment>();
+
+    /**
+     * Incremented by {@link #clearSharedEnvironments()}, environments created before are not reused.
+     */
+    private int clearCount;
+
+    /**
+     * An {@link IQueryEnvironment} reused between generations of the same template.
+     * 
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class SharedEnvironment {
+
+        /**
+         * The template {@link URI} the environment has been created for.
+         */
+        private final URI templateURI;
+
+        /**
+         * The time stamp of the template when the environment has been created.
+         */
+        private final long timeStamp;
+
+        /**
+         * The {@link QueryServices#clearCount} when the environment has been created.
+         */
+        private final int clearCount;
+
+        /**
+         * The {@link QueryServices#getServicesHash() services hash} when the environment has been created.
+         */
+        private final int servicesHash;
+
+        /**
+         * The resolved template {@link URI}.
+         */
+        private final URI templateLocation;
+
+        /**
+         * The {@link IQueryEnvironment}.
+         */
+        private final IQueryEnvironment environment;
+
+        /**
+         * Constructor.
+         * 
+         * @param templateURI
+         *            the template {@link URI} the environment has been created for
+         * @param templateLocation
+         *            the resolved template {@link URI}
+         * @param timeStamp
+         *            the time stamp of the template when the environment has been created
+         * @param clearCount
+         *            the {@link QueryServices#clearCount} when the environment has been created
+         * @param servicesHash
+         *            the {@link QueryServices#getServicesHash() services hash} when the environment has been created
+         * @param environment
+         *            the {@link IQueryEnvironment}
+         */
+        private SharedEnvironment(URI templateURI, URI templateLocation, long timeStamp, int clearCount, int servicesHash,
+                IQueryEnvironment environment) {
+            this.templateURI = templateURI;
+            this.templateLocation = templateLocation;
+            this.timeStamp = timeStamp;
+            this.clearCount = clearCount;
+            this.servicesHash = servicesHash;
+            this.environment = environment;
+        }
+
+    }
+
     /**
      * Constructor.
      */
@@ -75,13 +161,118 @@ public final class QueryServices {
             AQL4Compat.register(queryEnvironment, new ImageServices(templateURI));
         }
         List<Class<?>> services = ServiceRegistry.INSTANCE.getServicePackages(ServiceRegistry.DEFAULT_TOKEN);
-        for (Class<?> cls : services) {
-            AQL4Compat.register(queryEnvironment, cls);
-        }
+        AQL4Compat.register(queryEnvironment, services);
 
         return queryEnvironment;
     }
 
+    /**
+     * Gets an {@link IQueryEnvironment} for M2Doc reused between calls for the same template. The returned environment is reserved for
+     * the caller until it is given back with {@link #releaseSharedEnvironment(IQueryEnvironment)}, so it is never used by two
+     * generations at the same time. A released environment is reused as long as the template is not modified, the service classes
+     * registered in the {@link ServiceRegistry} are the same, and {@link #clearSharedEnvironments()} is not called. Template
+     * {@link EPackage} and services registered while parsing the template are kept in the environment, parsing the same template again
+     * doesn't register them twice.
+     * 
+     * @param templateURI
+     *            the template {@link URI}
+     * @param templateLocation
+     *            the resolved template {@link URI}, used to detect template modifications
+     * @return the reserved {@link IQueryEnvironment}, or a new one if the template time stamp can't be read
+     */
+    public IQueryEnvironment getSharedEnvironment(URI templateURI, URI templateLocation) {
+        final IQueryEnvironment res;
+
+        final long timeStamp = getTimeStamp(templateLocation);
+        if (timeStamp != URIConverter.NULL_TIME_STAMP) {
+            final int servicesHash = getServicesHash();
+            SharedEnvironment shared = null;
+            final int currentClearCount;
+            synchronized (sharedEnvironments) {
+                currentClearCount = clearCount;
+                final List<SharedEnvironment> available = sharedEnvironments.get(templateLocation);
+                while (shared == null && available != null && !available.isEmpty()) {
+                    final SharedEnvironment candidate = available.remove(available.size() - 1);
+                    if (candidate.timeStamp == timeStamp && candidate.servicesHash == servicesHash
+                        && candidate.templateURI.equals(templateURI)) {
+                        shared = candidate;
+                    }
+                }
+            }
+            if (shared == null) {
+                // created outside of the lock, other templates don't have to wait
+                shared = new SharedEnvironment(templateURI, templateLocation, timeStamp, currentClearCount, servicesHash,
+                        getEnvironment(templateURI));
+            }
+            synchronized (sharedEnvironments) {
+                usedEnvironments.put(shared.environment, shared);
+            }
+            res = shared.environment;
+        } else {
+            res = getEnvironment(templateURI);
+        }
+
+        return res;
+    }
+
+    /**
+     * Gives back an {@link IQueryEnvironment} returned by {@link #getSharedEnvironment(URI, URI)} so it can be reused. The environment
+     * must not be used after this call. Nothing is done for other environments.
+     * 
+     * @param environment
+     *            the {@link IQueryEnvironment} to release
+     */
+    public void releaseSharedEnvironment(IQueryEnvironment environment) {
+        synchronized (sharedEnvironments) {
+            final SharedEnvironment shared = usedEnvironments.remove(environment);
+            if (shared != null && shared.clearCount == clearCount) {
+                List<SharedEnvironment> available = sharedEnvironments.get(shared.templateLocation);
+                if (available == null) {
+                    available = new ArrayList<SharedEnvironment>();
+                    sharedEnvironments.put(shared.templateLocation, available);
+                }
+                available.add(shared);
+            }
+        }
+    }
+
+    /**
+     * Clears environments returned by {@link #getSharedEnvironment(URI, URI)}. Environments currently in use are not reused once
+     * released. This should be called when registered services change.
+     */
+    public void clearSharedEnvironments() {
+        synchronized (sharedEnvironments) {
+            sharedEnvironments.clear();
+            clearCount++;
+        }
+    }
+
+    /**
+     * Gets the hash of the service classes registered in the {@link ServiceRegistry} for {@link ServiceRegistry#DEFAULT_TOKEN}. A
+     * reloaded service class is a different {@link Class} and changes the hash.
+     * 
+     * @return the hash of the service classes registered in the {@link ServiceRegistry}
+     */
+    private int getServicesHash() {
+        return ServiceRegistry.INSTANCE.getServicePackages(ServiceRegistry.DEFAULT_TOKEN).hashCode();
+    }
+
+    /**
+     * Gets the time stamp of the given {@link URI}.
+     * 
+     * @param uri
+     *            the {@link URI}
+     * @return the time stamp of the given {@link URI} if any, {@link URIConverter#NULL_TIME_STAMP} otherwise
+     */
+    private long getTimeStamp(URI uri) {
+        final Map<String, ?> options = Collections.singletonMap(URIConverter.OPTION_REQUESTED_ATTRIBUTES,
+                Collections.singleton(URIConverter.ATTRIBUTE_TIME_STAMP));
+        final Object timeStamp = URIConverter.INSTANCE.getAttributes(uri, options)
+                .get(URIConverter.ATTRIBUTE_TIME_STAMP);
+
+        return timeStamp instanceof Long ? (Long) timeStamp : URIConverter.NULL_TIME_STAMP;
+    }
+
     /**
      * Register package uris.
      * 
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deflate levels used to save document parts, according to their file extension. By default already compressed media (PNG, JPEG and
+ * GIF) and embedded Office documents are not compressed again and other parts use {@link Deflater#DEFAULT_COMPRESSION}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class ZipCompression {
+
+    /**
+     * The deflate level per lower case file extension.
+     */
+    private final Map<String, Integer> levels = new HashMap<String, Integer>();
+
+    /**
+     * The deflate level of parts without specific level.
+     */
+    private int defaultLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * A {@link ZipOutputStream} setting the deflate level of each entry.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private final class CompressingZipOutputStream extends ZipOutputStream {
+
+        /**
+         * Constructor.
+         *
+         * @param out
+         *            the {@link OutputStream} to write to
+         */
+        CompressingZipOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void putNextEntry(ZipEntry entry) throws IOException {
+            setLevel(getLevel(entry.getName()));
+            super.putNextEntry(entry);
+        }
+
+    }
+
+    /**
+     * Constructor.
+     */
+    public ZipCompression() {
+        levels.put("png", Deflater.NO_COMPRESSION);
+        levels.put("jpg", Deflater.NO_COMPRESSION);
+        levels.put("jpeg", Deflater.NO_COMPRESSION);
+        levels.put("gif", Deflater.NO_COMPRESSION);
+        // embedded Office documents are zip files themselves
+        levels.put("docx", Deflater.NO_COMPRESSION);
+        levels.put("docm", Deflater.NO_COMPRESSION);
+        levels.put("xlsx", Deflater.NO_COMPRESSION);
+        levels.put("xlsm", Deflater.NO_COMPRESSION);
+        levels.put("pptx", Deflater.NO_COMPRESSION);
+        levels.put("pptm", Deflater.NO_COMPRESSION);
+    }
+
+    /**
+     * Sets the deflate level of parts with the given file extension.
+     *
+     * @param extension
+     *            the file extension without the dot, for instance <code>xml</code>
+     * @param level
+     *            the deflate level from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IllegalArgumentException
+     *             if the given level is not a valid deflate level
+     */
+    public void setLevel(String extension, int level) {
+        checkLevel(level);
+        levels.put(extension.toLowerCase(Locale.ENGLISH), level);
+    }
+
+    /**
+     * Sets the deflate level of parts without specific level.
+     *
+     * @param level
+     *            the deflate level from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IllegalArgumentException
+     *             if the given level is not a valid deflate level
+     */
+    public void setDefaultLevel(int level) {
+        checkLevel(level);
+        this.defaultLevel = level;
+    }
+
+    /**
+     * Tells if the given level is a valid deflate level.
+     *
+     * @param level
+     *            the level
+     * @return <code>true</code> if the given level is from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}, or
+     *         {@link Deflater#DEFAULT_COMPRESSION}, <code>false</code> otherwise
+     */
+    public static boolean isValidLevel(int level) {
+        return level == Deflater.DEFAULT_COMPRESSION
+            || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * Checks the given deflate level.
+     *
+     * @param level
+     *            the level
+     * @throws IllegalArgumentException
+     *             if the given level is not a valid deflate level
+     */
+    private static void checkLevel(int level) {
+        if (!isValidLevel(level)) {
+            throw new IllegalArgumentException("Invalid deflate level: " + level);
+        }
+    }
+
+    /**
+     * Gets the deflate level of the given zip entry name.
+     *
+     * @param entryName
+     *            the zip entry name
+     * @return the deflate level of the given zip entry name
+     */
+    public int getLevel(String entryName) {
+        final Integer res;
+
+        final int dotIndex = entryName.lastIndexOf('.');
+        if (dotIndex >= 0 && entryName.lastIndexOf('/') < dotIndex) {
+            res = levels.get(entryName.substring(dotIndex + 1).toLowerCase(Locale.ENGLISH));
+        } else {
+            res = null;
+        }
+
+        return res != null ? res : defaultLevel;
+    }
+
+    /**
+     * Creates a {@link ZipOutputStream} writing to the given {@link OutputStream} with this {@link ZipCompression}. The
+     * {@link org.apache.poi.openxml4j.opc.OPCPackage OPCPackage} saving code reuses a given {@link ZipOutputStream} instead of creating
+     * its own.
+     *
+     * @param out
+     *            the {@link OutputStream} to write to
+     * @return the created {@link ZipOutputStream}
+     */
+    public ZipOutputStream createZipOutputStream(OutputStream out) {
+        return new CompressingZipOutputStream(out);
+    }
+
+}
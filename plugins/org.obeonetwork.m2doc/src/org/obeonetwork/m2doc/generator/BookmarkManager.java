@@ -11,37 +11,66 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.generator;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.UUID;
 
-import org.apache.poi.xwpf.usermodel.IRunBody;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFooter;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRelation;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.impl.xb.xmlschema.SpaceAttribute.Space;
 import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
 import org.obeonetwork.m2doc.util.M2DocUtils;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBookmark;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTLongHexNumber;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTMarkupRange;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSettings;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.SettingsDocument;
 
 /**
- * Manage bookmarks.
+ * Manage bookmarks. References are recorded during the generation and resolved in a second pass by
+ * {@link #resolveReferences()}, once all bookmarks are known. When the destination {@link XWPFDocument} is known, bookmark IDs are
+ * renumbered in the second pass to skip IDs of bookmarks copied from the template or from user contents, and reference rsids skip
+ * rsids declared in the document settings, so IDs are unique per document.
  * 
  * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
  */
 public class BookmarkManager {
+
     /**
-     * The buffer size.
+     * The XPath selecting bookmark starts.
      */
-    private static final int BUFFER_SIZE = 16;
+    private static final String BOOKMARK_START_PATH = "declare namespace w='http://schemas.openxmlformats.org/wordprocessingml/2006/main' "
+        + ".//w:bookmarkStart";
+
+    /**
+     * The size of a reference ID.
+     */
+    private static final int REFERENCE_ID_SIZE = 4;
+
+    /**
+     * The byte shift.
+     */
+    private static final int BYTE_SHIFT = 8;
 
     /**
      * The reference text.
@@ -49,19 +78,29 @@ public class BookmarkManager {
     private static final String REF_TAG = " REF %s \\h ";
 
     /**
-     * Known bookmarks so far.
+     * The destination {@link XWPFDocument} if known, <code>null</code> otherwise.
+     */
+    private final XWPFDocument document;
+
+    /**
+     * Known bookmarks so far in creation order.
      */
     private final Map<String, CTBookmark> bookmarks = new LinkedHashMap<String, CTBookmark>();
 
     /**
-     * Open bookmarks.
+     * Ends of known bookmarks.
      */
-    private final Map<String, CTBookmark> startedBookmarks = new LinkedHashMap<String, CTBookmark>();
+    private final Map<String, CTMarkupRange> bookmarkEnds = new HashMap<String, CTMarkupRange>();
 
     /**
-     * Pending references for a given bookmark name.
+     * Open bookmarks with the position to insert a message for them.
      */
-    private final Map<String, Set<CTText>> pendingReferences = new HashMap<String, Set<CTText>>();
+    private final Map<String, MessagePosition> startedBookmarks = new LinkedHashMap<String, MessagePosition>();
+
+    /**
+     * References to resolve for a given bookmark name.
+     */
+    private final Map<String, List<PendingReference>> references = new LinkedHashMap<String, List<PendingReference>>();
 
     /**
      * Bookmark name to reference ID.
@@ -69,9 +108,125 @@ public class BookmarkManager {
     private final Map<String, byte[]> referenceIDs = new HashMap<String, byte[]>();
 
     /**
-     * Position to insert message for a given reference or bookmark.
+     * Reference IDs already used as rsids in the destination {@link XWPFDocument}.
+     */
+    private final Set<Integer> takenReferenceIDs;
+
+    /**
+     * The next bookmark ID.
+     */
+    private int nextBookmarkID;
+
+    /**
+     * The next reference ID.
+     */
+    private int nextReferenceID = 1;
+
+    /**
+     * Constructor without destination document, bookmark IDs start at <code>0</code> and reference IDs at <code>1</code>.
+     */
+    public BookmarkManager() {
+        this.document = null;
+        this.takenReferenceIDs = Collections.emptySet();
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param document
+     *            the destination {@link XWPFDocument}
+     * @throws IOException
+     *             if the document settings can't be read
      */
-    private final Map<Object, XWPFRun> messagePositions = new HashMap<Object, XWPFRun>();
+    public BookmarkManager(XWPFDocument document) throws IOException {
+        this.document = document;
+        this.takenReferenceIDs = getSettingsRsids(document);
+    }
+
+    /**
+     * Position in a {@link XWPFParagraph} where a message can be inserted later: right after the run that was the last one of the
+     * paragraph when the position was created. No placeholder run is created, so forgetting a position costs nothing.
+     * 
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static class MessagePosition {
+
+        /**
+         * The {@link XWPFParagraph}.
+         */
+        private final XWPFParagraph paragraph;
+
+        /**
+         * The {@link CTR} to insert after, <code>null</code> to insert at the beginning of the paragraph.
+         */
+        private final CTR anchor;
+
+        /**
+         * Constructor.
+         * 
+         * @param paragraph
+         *            the {@link XWPFParagraph}
+         */
+        MessagePosition(XWPFParagraph paragraph) {
+            this.paragraph = paragraph;
+            final List<XWPFRun> runs = paragraph.getRuns();
+            if (runs.isEmpty()) {
+                anchor = null;
+            } else {
+                anchor = runs.get(runs.size() - 1).getCTR();
+            }
+        }
+
+        /**
+         * Gets the key identifying the insertion point of this position.
+         * 
+         * @return the key identifying the insertion point of this position
+         */
+        private Object getKey() {
+            final Object res;
+
+            if (anchor != null) {
+                res = anchor;
+            } else {
+                res = paragraph;
+            }
+
+            return res;
+        }
+
+    }
+
+    /**
+     * A reference to a bookmark, resolved by {@link BookmarkManager#resolveReferences()}.
+     * 
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static class PendingReference {
+
+        /**
+         * The {@link CTText} of the reference instruction.
+         */
+        private final CTText instruction;
+
+        /**
+         * The {@link MessagePosition} for a dangling reference message.
+         */
+        private final MessagePosition position;
+
+        /**
+         * Constructor.
+         * 
+         * @param instruction
+         *            the {@link CTText} of the reference instruction
+         * @param position
+         *            the {@link MessagePosition} for a dangling reference message
+         */
+        PendingReference(CTText instruction, MessagePosition position) {
+            this.instruction = instruction;
+            this.position = position;
+        }
+
+    }
 
     /**
      * Starts a bookmark in the given {@link XWPFParagraph} with the given name.
@@ -91,27 +246,11 @@ public class BookmarkManager {
             res = ValidationMessageLevel.ERROR;
         } else {
             final CTBookmark bookmark = paragraph.getCTP().addNewBookmarkStart();
-            // we create a new run for future error messages.
-            messagePositions.put(bookmark, paragraph.createRun());
             bookmark.setName(name);
-            final BigInteger id = getRandomID();
-            bookmark.setId(id);
+            bookmark.setId(BigInteger.valueOf(nextBookmarkID++));
             bookmarks.put(name, bookmark);
-            startedBookmarks.put(name, bookmark);
-            Set<CTText> pendingRefs = pendingReferences.remove(name);
-            if (pendingRefs != null) {
-                for (CTText pendingRef : pendingRefs) {
-                    // we remove the created for error messages.
-                    final XWPFRun run = messagePositions.get(pendingRef);
-                    final IRunBody parent = run.getParent();
-                    if (parent instanceof XWPFParagraph) {
-                        ((XWPFParagraph) parent).removeRun(((XWPFParagraph) parent).getRuns().indexOf(run));
-                    } else {
-                        throw new IllegalStateException("this should not happend");
-                    }
-                    pendingRef.setStringValue(String.format(REF_TAG, bookmark.getName()));
-                }
-            }
+            // we keep the position for future error messages.
+            startedBookmarks.put(name, new MessagePosition(paragraph));
             res = ValidationMessageLevel.OK;
         }
 
@@ -130,18 +269,10 @@ public class BookmarkManager {
     public ValidationMessageLevel endBookmark(XWPFParagraph paragraph, String name) {
         final ValidationMessageLevel res;
 
-        final CTBookmark bookmark = startedBookmarks.remove(name);
-        if (bookmark != null) {
+        if (startedBookmarks.remove(name) != null) {
             final CTMarkupRange range = paragraph.getCTP().addNewBookmarkEnd();
             range.setId(bookmarks.get(name).getId());
-            // we remove the created for error messages.
-            final XWPFRun run = messagePositions.get(bookmark);
-            final IRunBody parent = run.getParent();
-            if (parent instanceof XWPFParagraph) {
-                ((XWPFParagraph) parent).removeRun(((XWPFParagraph) parent).getRuns().indexOf(run));
-            } else {
-                throw new IllegalStateException("this should not happend");
-            }
+            bookmarkEnds.put(name, range);
             res = ValidationMessageLevel.OK;
         } else if (bookmarks.containsKey(name)) {
             M2DocUtils.appendMessageRun(paragraph, ValidationMessageLevel.ERROR,
@@ -157,22 +288,8 @@ public class BookmarkManager {
     }
 
     /**
-     * Gets a random ID.
-     * 
-     * @return a random ID
-     */
-    private BigInteger getRandomID() {
-        final UUID uuid = UUID.randomUUID();
-
-        ByteBuffer buffer = ByteBuffer.wrap(new byte[BUFFER_SIZE]);
-        buffer.putLong(uuid.getMostSignificantBits());
-        buffer.putLong(uuid.getLeastSignificantBits());
-
-        return new BigInteger(buffer.array()).abs();
-    }
-
-    /**
-     * Inserts a pending reference to the given name in the given {@link XWPFParagraph}.
+     * Inserts a reference to the given name in the given {@link XWPFParagraph}. The reference instruction is only set when
+     * {@link #resolveReferences() resolving references}.
      * 
      * @param paragraph
      *            the {@link XWPFParagraph}
@@ -182,40 +299,18 @@ public class BookmarkManager {
      *            the text
      */
     public void insertReference(XWPFParagraph paragraph, String name, String text) {
-        final CTBookmark bookmark = bookmarks.get(name);
-        if (bookmark != null) {
-            insertReference(paragraph, bookmark, text);
-        } else {
-            final XWPFRun messageRun = paragraph.createRun();
-            final CTText ref = insertPendingReference(paragraph, name, text);
-            messagePositions.put(ref, messageRun);
-            Set<CTText> pendingRefs = pendingReferences.get(name);
-            if (pendingRefs == null) {
-                pendingRefs = new LinkedHashSet<CTText>();
-                pendingReferences.put(name, pendingRefs);
-            }
-            pendingRefs.add(ref);
+        final MessagePosition position = new MessagePosition(paragraph);
+        final CTText ref = insertPendingReference(paragraph, name, text);
+        List<PendingReference> refs = references.get(name);
+        if (refs == null) {
+            refs = new ArrayList<PendingReference>();
+            references.put(name, refs);
         }
+        refs.add(new PendingReference(ref, position));
     }
 
     /**
-     * Inserts a reference to the given {@link CTBookmark} with the given text in the given {@link XWPFParagraph}.
-     * 
-     * @param paragraph
-     *            the {@link XWPFParagraph}
-     * @param bookmark
-     *            the {@link CTBookmark}
-     * @param text
-     *            the text
-     */
-    private void insertReference(XWPFParagraph paragraph, CTBookmark bookmark, String text) {
-        final String name = bookmark.getName();
-        final CTText pgcttext = insertPendingReference(paragraph, name, text);
-        pgcttext.setStringValue(String.format(REF_TAG, name));
-    }
-
-    /**
-     * Inserts a reference to the given {@link CTBookmark} with the given text in the given {@link XWPFParagraph}.
+     * Inserts a reference field with an empty instruction and the given text in the given {@link XWPFParagraph}.
      * 
      * @param paragraph
      *            the {@link XWPFParagraph}
@@ -223,7 +318,7 @@ public class BookmarkManager {
      *            the bookmark name
      * @param text
      *            the text
-     * @return the {@link CTText} corresponding to the reference.
+     * @return the {@link CTText} of the reference instruction.
      */
     private CTText insertPendingReference(XWPFParagraph paragraph, String name, String text) {
         final byte[] id = getReferenceID(name);
@@ -261,14 +356,19 @@ public class BookmarkManager {
      * @return the reference ID for the given bookmark name
      */
     private byte[] getReferenceID(String name) {
-        final byte[] res;
+        byte[] res = referenceIDs.get(name);
 
-        final byte[] cachedID = referenceIDs.get(name);
-        if (cachedID == null) {
-            res = getRandomID().toByteArray();
+        if (res == null) {
+            res = new byte[REFERENCE_ID_SIZE];
+            while (takenReferenceIDs.contains(nextReferenceID)) {
+                nextReferenceID++;
+            }
+            int id = nextReferenceID++;
+            for (int i = REFERENCE_ID_SIZE - 1; i >= 0; i--) {
+                res[i] = (byte) id;
+                id = id >>> BYTE_SHIFT;
+            }
             referenceIDs.put(name, res);
-        } else {
-            res = cachedID;
         }
 
         return res;
@@ -283,34 +383,192 @@ public class BookmarkManager {
         final boolean res = !startedBookmarks.isEmpty();
 
         if (res) {
-            for (Entry<String, CTBookmark> entry : startedBookmarks.entrySet()) {
-                final XWPFRun positionRun = messagePositions.remove(entry.getValue());
-                M2DocUtils.setRunMessage(positionRun, ValidationMessageLevel.ERROR,
-                        "unclosed bookmark " + entry.getKey());
+            final Map<Object, CTR> lastMessages = new IdentityHashMap<Object, CTR>();
+            for (Entry<String, MessagePosition> entry : startedBookmarks.entrySet()) {
+                insertMessage(entry.getValue(), "unclosed bookmark " + entry.getKey(), lastMessages);
             }
+            startedBookmarks.clear();
         }
 
         return res;
     }
 
     /**
-     * Marks dangling references.
+     * Gets the rsids declared in the settings of the given {@link XWPFDocument}.
      * 
-     * @return <code>true</code> if any dangling reference was found, <code>false</code> otherwise
+     * @param destination
+     *            the {@link XWPFDocument}
+     * @return the rsids declared in the settings of the given {@link XWPFDocument}
+     * @throws IOException
+     *             if the settings can't be read
+     */
+    private static Set<Integer> getSettingsRsids(XWPFDocument destination) throws IOException {
+        final Set<Integer> res = new HashSet<Integer>();
+
+        for (PackagePart part : destination.getPackage().getPartsByContentType(XWPFRelation.SETTINGS.getContentType())) {
+            try (InputStream is = part.getInputStream()) {
+                final CTSettings settings = SettingsDocument.Factory.parse(is).getSettings();
+                if (settings.isSetRsids()) {
+                    for (CTLongHexNumber rsid : settings.getRsids().getRsidList()) {
+                        res.add(toInt(rsid.getVal()));
+                    }
+                }
+            } catch (XmlException e) {
+                // settings created in memory are not serialized yet and declare no rsid
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Converts the given big endian bytes to an int.
+     * 
+     * @param bytes
+     *            the bytes
+     * @return the int value of the given bytes
      */
-    public boolean markDanglingReferences() {
-        final boolean res = !pendingReferences.isEmpty();
+    private static int toInt(byte[] bytes) {
+        int res = 0;
 
-        if (res) {
-            for (Entry<String, Set<CTText>> entry : pendingReferences.entrySet()) {
-                for (CTText ref : entry.getValue()) {
-                    final XWPFRun refRun = messagePositions.remove(ref);
-                    M2DocUtils.insertMessageAfter(refRun, ValidationMessageLevel.ERROR,
-                            "dangling reference for bookmark " + entry.getKey());
+        for (byte b : bytes) {
+            res = (res << BYTE_SHIFT) | (b & 0xFF);
+        }
+
+        return res;
+    }
+
+    /**
+     * Renumbers known bookmarks so their IDs don't collide with other bookmarks of the destination {@link XWPFDocument}.
+     */
+    private void renumberBookmarks() {
+        final Set<CTBookmark> knownBookmarks = Collections.newSetFromMap(new IdentityHashMap<CTBookmark, Boolean>());
+        knownBookmarks.addAll(bookmarks.values());
+        final Set<BigInteger> takenIDs = new HashSet<BigInteger>();
+        final List<XmlObject> parts = new ArrayList<XmlObject>();
+        parts.add(document.getDocument());
+        for (XWPFHeader header : document.getHeaderList()) {
+            parts.add(header._getHdrFtr());
+        }
+        for (XWPFFooter footer : document.getFooterList()) {
+            parts.add(footer._getHdrFtr());
+        }
+        for (XmlObject part : parts) {
+            for (XmlObject start : part.selectPath(BOOKMARK_START_PATH)) {
+                if (start instanceof CTBookmark && !knownBookmarks.contains(start)) {
+                    takenIDs.add(((CTBookmark) start).getId());
+                }
+            }
+        }
+
+        int id = 0;
+        for (Entry<String, CTBookmark> entry : bookmarks.entrySet()) {
+            while (takenIDs.contains(BigInteger.valueOf(id))) {
+                id++;
+            }
+            final BigInteger newID = BigInteger.valueOf(id++);
+            entry.getValue().setId(newID);
+            final CTMarkupRange end = bookmarkEnds.get(entry.getKey());
+            if (end != null) {
+                end.setId(newID);
+            }
+        }
+    }
+
+    /**
+     * Resolves all inserted references: sets the reference instruction for known bookmarks and marks dangling references. Bookmark
+     * IDs are renumbered if the destination {@link XWPFDocument} is known.
+     * 
+     * @return <code>true</code> if any dangling reference was found, <code>false</code> otherwise
+     */
+    public boolean resolveReferences() {
+        if (document != null) {
+            renumberBookmarks();
+        }
+        final Map<String, List<PendingReference>> danglingReferences = new LinkedHashMap<String, List<PendingReference>>();
+        for (Entry<String, List<PendingReference>> entry : references.entrySet()) {
+            if (bookmarks.containsKey(entry.getKey())) {
+                final String instruction = String.format(REF_TAG, entry.getKey());
+                for (PendingReference ref : entry.getValue()) {
+                    ref.instruction.setStringValue(instruction);
                 }
+            } else {
+                danglingReferences.put(entry.getKey(), entry.getValue());
+            }
+        }
+        references.clear();
+
+        final Map<Object, CTR> lastMessages = new IdentityHashMap<Object, CTR>();
+        for (Entry<String, List<PendingReference>> entry : danglingReferences.entrySet()) {
+            for (PendingReference ref : entry.getValue()) {
+                insertMessage(ref.position, "dangling reference for bookmark " + entry.getKey(), lastMessages);
+            }
+        }
+
+        return !danglingReferences.isEmpty();
+    }
+
+    /**
+     * Inserts an error message at the given {@link MessagePosition}. Messages inserted at the same position keep their insertion
+     * order.
+     * 
+     * @param position
+     *            the {@link MessagePosition}
+     * @param message
+     *            the message
+     * @param lastMessages
+     *            the last message {@link CTR} inserted for each {@link MessagePosition#getKey() position key}
+     */
+    private void insertMessage(MessagePosition position, String message, Map<Object, CTR> lastMessages) {
+        final Object key = position.getKey();
+        CTR after = lastMessages.get(key);
+        if (after == null) {
+            after = position.anchor;
+        }
+        final int index = getInsertionIndex(position.paragraph, after);
+        final XWPFRun run;
+        if (index >= 0) {
+            run = position.paragraph.insertNewRun(index);
+        } else {
+            run = null;
+        }
+        if (run != null) {
+            M2DocUtils.setRunMessage(run, ValidationMessageLevel.ERROR, message);
+            lastMessages.put(key, run.getCTR());
+        } else {
+            M2DocUtils.appendMessageRun(position.paragraph, ValidationMessageLevel.ERROR, message);
+        }
+    }
+
+    /**
+     * Gets the index in {@link XWPFParagraph#getRuns()} where to insert a run after the given {@link CTR}.
+     * 
+     * @param paragraph
+     *            the {@link XWPFParagraph}
+     * @param after
+     *            the {@link CTR} to insert after, <code>null</code> to insert at the beginning of the paragraph
+     * @return the index in {@link XWPFParagraph#getRuns()} where to insert a run after the given {@link CTR} if any, <code>-1</code>
+     *         if the given {@link CTR} is not in the given {@link XWPFParagraph} anymore
+     */
+    private int getInsertionIndex(XWPFParagraph paragraph, CTR after) {
+        final int res;
+
+        if (after == null) {
+            res = 0;
+        } else {
+            final List<XWPFRun> runs = paragraph.getRuns();
+            int index = runs.size() - 1;
+            while (index >= 0 && runs.get(index).getCTR() != after) {
+                index--;
+            }
+            if (index >= 0) {
+                res = index + 1;
+            } else {
+                res = -1;
             }
         }
 
         return res;
     }
+
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator;
+
+/**
+ * Limits of a generation. When a limit is exceeded the generation is aborted, the partial document is saved and the
+ * {@link GenerationResult} is {@link GenerationResult#isAborted() aborted}. All limits are unlimited by default.
+ * Limits are only checked between the constructs of a block and between the iterations of a repetition. A construct being generated,
+ * for instance a long query or a large image, is never interrupted, so the duration and the number of generated runs can exceed their
+ * limit by the cost of a single construct. Generated tables, table rows and images, including those of table providers and of copied user
+ * content, count as generated runs.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationBudget {
+
+    /**
+     * The maximum number of iterations of a single repetition.
+     */
+    private int maxIterations = Integer.MAX_VALUE;
+
+    /**
+     * The maximum duration in milliseconds.
+     */
+    private long maxDuration = Long.MAX_VALUE;
+
+    /**
+     * The maximum number of generated runs, tables, table rows and images.
+     */
+    private int maxGeneratedRuns = Integer.MAX_VALUE;
+
+    /**
+     * Gets the maximum number of iterations of a single repetition.
+     *
+     * @return the maximum number of iterations of a single repetition
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Sets the maximum number of iterations of a single repetition.
+     *
+     * @param maxIterations
+     *            the maximum number of iterations of a single repetition
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Gets the maximum duration in milliseconds.
+     *
+     * @return the maximum duration in milliseconds
+     */
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * Sets the maximum duration in milliseconds.
+     *
+     * @param maxDuration
+     *            the maximum duration in milliseconds
+     */
+    public void setMaxDuration(long maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Gets the maximum number of generated runs, this is an approximation of the output size. Tables, table rows and images count as
+     * runs.
+     *
+     * @return the maximum number of generated runs
+     */
+    public int getMaxGeneratedRuns() {
+        return maxGeneratedRuns;
+    }
+
+    /**
+     * Sets the maximum number of generated runs, this is an approximation of the output size. Tables, table rows and images count as
+     * runs.
+     *
+     * @param maxGeneratedRuns
+     *            the maximum number of generated runs
+     */
+    public void setMaxGeneratedRuns(int maxGeneratedRuns) {
+        this.maxGeneratedRuns = maxGeneratedRuns;
+    }
+
+    /**
+     * Gets the deadline of a generation starting at the given time.
+     *
+     * @param startTime
+     *            the start time in milliseconds
+     * @return the deadline of a generation starting at the given time
+     */
+    long getDeadline(long startTime) {
+        final long res;
+
+        if (maxDuration > Long.MAX_VALUE - startTime) {
+            res = Long.MAX_VALUE;
+        } else {
+            res = startTime + maxDuration;
+        }
+
+        return res;
+    }
+
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.Monitor;
+
+/**
+ * The state of a single generation: its {@link Monitor}, its {@link GenerationBudget}, a cache, default image sizes, temporary
+ * directories, metrics and cleanup hooks. It is passed to {@link org.obeonetwork.m2doc.provider.IProvider IProvider} with the
+ * {@link org.obeonetwork.m2doc.provider.ProviderConstants#GENERATION_CONTEXT_KEY GENERATION_CONTEXT_KEY} parameter, so providers don't
+ * need to keep per generation state in their shared instance. Everything is released by {@link #dispose()} at the end of the
+ * generation.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationContext {
+
+    /**
+     * The metric counting generated runs, tables, table rows and images.
+     */
+    public static final String GENERATED_RUNS_METRIC = "generatedRuns";
+
+    /**
+     * The metric measuring the duration of the template processing in milliseconds.
+     */
+    public static final String DURATION_METRIC = "duration";
+
+    /**
+     * The {@link Monitor}.
+     */
+    private final Monitor monitor;
+
+    /**
+     * The {@link GenerationBudget}.
+     */
+    private final GenerationBudget budget;
+
+    /**
+     * The cache.
+     */
+    private final Map<Object, Object> cache = new HashMap<Object, Object>();
+
+    /**
+     * The metrics.
+     */
+    private final Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+
+    /**
+     * The default image sizes (width and height) per image path.
+     */
+    private final Map<String, int[]> imageSizes = new HashMap<String, int[]>();
+
+    /**
+     * The temporary directories to delete.
+     */
+    private final List<File> temporaryDirectories = new ArrayList<File>();
+
+    /**
+     * The cleanup hooks.
+     */
+    private final List<Runnable> cleanupHooks = new ArrayList<Runnable>();
+
+    /**
+     * Constructor.
+     */
+    public GenerationContext() {
+        this(new BasicMonitor(), new GenerationBudget());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     */
+    public GenerationContext(Monitor monitor, GenerationBudget budget) {
+        this.monitor = monitor;
+        this.budget = budget;
+    }
+
+    /**
+     * Gets the {@link Monitor}.
+     *
+     * @return the {@link Monitor}
+     */
+    public Monitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Gets the {@link GenerationBudget}.
+     *
+     * @return the {@link GenerationBudget}
+     */
+    public GenerationBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Tells if the generation has been canceled.
+     *
+     * @return <code>true</code> if the generation has been canceled, <code>false</code> otherwise
+     */
+    public boolean isCanceled() {
+        return monitor.isCanceled();
+    }
+
+    /**
+     * Gets the cached value for the given key.
+     *
+     * @param key
+     *            the key
+     * @return the cached value for the given key if any, <code>null</code> otherwise
+     */
+    public synchronized Object getCachedValue(Object key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Caches the given value for the given key until the end of the generation.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the previously cached value for the given key if any, <code>null</code> otherwise
+     */
+    public synchronized Object putCachedValue(Object key, Object value) {
+        return cache.put(key, value);
+    }
+
+    /**
+     * Sets the default size of the image at the given path. It is used when the template doesn't set the image size.
+     *
+     * @param imagePath
+     *            the image path
+     * @param width
+     *            the image width
+     * @param height
+     *            the image height
+     */
+    public synchronized void setImageSize(String imagePath, int width, int height) {
+        imageSizes.put(imagePath, new int[] {width, height});
+    }
+
+    /**
+     * Gets the default width of the image at the given path.
+     *
+     * @param imagePath
+     *            the image path
+     * @return the default width of the image at the given path if any, <code>0</code> otherwise
+     */
+    public synchronized int getImageWidth(String imagePath) {
+        final int[] size = imageSizes.get(imagePath);
+
+        return size != null ? size[0] : 0;
+    }
+
+    /**
+     * Gets the default height of the image at the given path.
+     *
+     * @param imagePath
+     *            the image path
+     * @return the default height of the image at the given path if any, <code>0</code> otherwise
+     */
+    public synchronized int getImageHeight(String imagePath) {
+        final int[] size = imageSizes.get(imagePath);
+
+        return size != null ? size[1] : 0;
+    }
+
+    /**
+     * Adds the given amount to the given metric.
+     *
+     * @param metric
+     *            the metric name
+     * @param amount
+     *            the amount to add
+     */
+    public synchronized void addToMetric(String metric, long amount) {
+        final Long value = metrics.get(metric);
+        if (value != null) {
+            metrics.put(metric, value + amount);
+        } else {
+            metrics.put(metric, amount);
+        }
+    }
+
+    /**
+     * Gets a copy of the metrics.
+     *
+     * @return a copy of the metrics
+     */
+    public synchronized Map<String, Long> getMetrics() {
+        return new LinkedHashMap<String, Long>(metrics);
+    }
+
+    /**
+     * Creates a temporary directory deleted by {@link #dispose()}.
+     *
+     * @return the created temporary directory
+     */
+    public File createTemporaryDirectory() {
+        final File res = Files.createTempDir();
+
+        synchronized (temporaryDirectories) {
+            temporaryDirectories.add(res);
+        }
+
+        return res;
+    }
+
+    /**
+     * Adds a hook run by {@link #dispose()}. Hooks are run in the reverse order of their addition.
+     *
+     * @param hook
+     *            the hook to run
+     */
+    public void addCleanupHook(Runnable hook) {
+        synchronized (cleanupHooks) {
+            cleanupHooks.add(hook);
+        }
+    }
+
+    /**
+     * Runs cleanup hooks, deletes temporary directories and clears the cache. Temporary directories are deleted even if a hook fails.
+     */
+    public void dispose() {
+        final List<Runnable> hooks;
+        synchronized (cleanupHooks) {
+            hooks = new ArrayList<Runnable>(cleanupHooks);
+            cleanupHooks.clear();
+        }
+        try {
+            for (int i = hooks.size() - 1; i >= 0; i--) {
+                hooks.get(i).run();
+            }
+        } finally {
+            final List<File> directories;
+            synchronized (temporaryDirectories) {
+                directories = new ArrayList<File>(temporaryDirectories);
+                temporaryDirectories.clear();
+            }
+            for (File directory : directories) {
+                delete(directory);
+            }
+            synchronized (this) {
+                cache.clear();
+                imageSizes.clear();
+            }
+        }
+    }
+
+    /**
+     * Recursively deletes the given {@link File}.
+     *
+     * @param file
+     *            the {@link File} to delete
+     */
+    private void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
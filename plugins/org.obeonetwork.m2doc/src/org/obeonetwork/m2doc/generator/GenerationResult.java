@@ -13,6 +13,7 @@ package org.obeonetwork.m2doc.generator;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +46,16 @@ public class GenerationResult {
      */
     private final List<String> duplicatedUserContentIDs = new ArrayList<String>();
 
+    /**
+     * The reason why the generation has been aborted if any, <code>null</code> otherwise.
+     */
+    private String abortMessage;
+
+    /**
+     * The metrics of the generation.
+     */
+    private final Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+
     /**
      * Updates the current {@link #getLevel() level} with the given {@link ValidationMessageLevel}.
      * 
@@ -85,4 +96,47 @@ public class GenerationResult {
         return duplicatedUserContentIDs;
     }
 
+    /**
+     * Aborts the generation for the given reason and sets the {@link #getLevel() level} to {@link ValidationMessageLevel#ERROR}. Only the
+     * first reason is kept.
+     * 
+     * @param message
+     *            the reason why the generation is aborted
+     */
+    public void abort(String message) {
+        if (abortMessage == null) {
+            abortMessage = message;
+            updateLevel(ValidationMessageLevel.ERROR);
+        }
+    }
+
+    /**
+     * Tells if the generation has been aborted, in that case the generated document is partial.
+     * 
+     * @return <code>true</code> if the generation has been aborted, <code>false</code> otherwise
+     */
+    public boolean isAborted() {
+        return abortMessage != null;
+    }
+
+    /**
+     * Gets the reason why the generation has been aborted.
+     * 
+     * @return the reason why the generation has been aborted if any, <code>null</code> otherwise
+     */
+    public String getAbortMessage() {
+        return abortMessage;
+    }
+
+    /**
+     * Gets the metrics of the generation, for instance {@link GenerationContext#GENERATED_RUNS_METRIC} and
+     * {@link GenerationContext#DURATION_METRIC}. Providers can add their own metrics with
+     * {@link GenerationContext#addToMetric(String, long)}.
+     * 
+     * @return the metrics of the generation
+     */
+    public Map<String, Long> getMetrics() {
+        return metrics;
+    }
+
 }
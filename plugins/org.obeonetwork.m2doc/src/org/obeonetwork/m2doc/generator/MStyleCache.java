@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.obeonetwork.m2doc.provider.AbstractTableProvider.MStyle;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
+
+/**
+ * Converts {@link MStyle} to run properties and cell shading once per distinct style and shares the result. Two {@link MStyle} with the
+ * same font size, colors and font modifiers are converted only once.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public final class MStyleCache {
+
+    /**
+     * The length of an hexadecimal color.
+     */
+    private static final int COLOR_LENGTH = 6;
+
+    /**
+     * The converted run properties.
+     */
+    private final Map<StyleKey, CTRPr> runProperties = new HashMap<StyleKey, CTRPr>();
+
+    /**
+     * The converted colors.
+     */
+    private final Map<Integer, String> colors = new HashMap<Integer, String>();
+
+    /**
+     * The value of an {@link MStyle} used as key.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class StyleKey {
+
+        /**
+         * The font size.
+         */
+        private final int fontSize;
+
+        /**
+         * The foreground color.
+         */
+        private final int foregroundColor;
+
+        /**
+         * The font modifiers.
+         */
+        private final int fontModifiers;
+
+        /**
+         * Constructor.
+         *
+         * @param style
+         *            the {@link MStyle}
+         */
+        StyleKey(MStyle style) {
+            fontSize = style.getFontSize();
+            foregroundColor = style.getForegroundColor();
+            fontModifiers = style.getFontModifiers();
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = fontSize;
+            result = prime * result + foregroundColor;
+            result = prime * result + fontModifiers;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            final boolean res;
+
+            if (obj instanceof StyleKey) {
+                final StyleKey other = (StyleKey) obj;
+                res = fontSize == other.fontSize && foregroundColor == other.foregroundColor
+                    && fontModifiers == other.fontModifiers;
+            } else {
+                res = false;
+            }
+
+            return res;
+        }
+
+    }
+
+    /**
+     * Applies the given {@link MStyle} to the given {@link XWPFRun}. Background color is not taken into account here since it does not
+     * apply to runs.
+     *
+     * @param run
+     *            the {@link XWPFRun} to style
+     * @param style
+     *            the {@link MStyle} to apply
+     */
+    public void applyStyle(XWPFRun run, MStyle style) {
+        run.getCTR().setRPr(getRunProperties(run, style));
+    }
+
+    /**
+     * Applies the background color of the given {@link MStyle} to the given {@link XWPFTableCell}.
+     *
+     * @param cell
+     *            the {@link XWPFTableCell}
+     * @param style
+     *            the {@link MStyle} to apply
+     */
+    public void applyBackground(XWPFTableCell cell, MStyle style) {
+        cell.setColor(getColor(style.getBackgroundColor()));
+    }
+
+    /**
+     * Gets the cached run properties for the given {@link MStyle}. The result is only used as a source for
+     * {@link org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR#setRPr(CTRPr) CTR.setRPr()}, which copies it into the run.
+     *
+     * @param run
+     *            the {@link XWPFRun} the properties are computed for
+     * @param style
+     *            the {@link MStyle}
+     * @return the cached run properties for the given {@link MStyle}
+     */
+    private CTRPr getRunProperties(XWPFRun run, MStyle style) {
+        final StyleKey key = new StyleKey(style);
+        CTRPr res = runProperties.get(key);
+
+        if (res == null) {
+            final XWPFRun scratchRun = new XWPFRun(CTR.Factory.newInstance(), run.getParent());
+            scratchRun.setFontSize(style.getFontSize());
+            scratchRun.setBold((style.getFontModifiers() & MStyle.FONT_BOLD) != 0);
+            scratchRun.setItalic((style.getFontModifiers() & MStyle.FONT_ITALIC) != 0);
+            if ((style.getFontModifiers() & MStyle.FONT_UNDERLINE) != 0) {
+                scratchRun.setUnderline(UnderlinePatterns.SINGLE);
+            }
+            scratchRun.setStrikeThrough((style.getFontModifiers() & MStyle.FONT_STRIKE_THROUGH) != 0);
+            scratchRun.setColor(getColor(style.getForegroundColor()));
+            res = scratchRun.getCTR().getRPr();
+            runProperties.put(key, res);
+        }
+
+        return res;
+    }
+
+    /**
+     * Translate an int color from the {@link MStyle} format to the word format.
+     *
+     * @param color
+     *            The color, as an int
+     * @return The color as a 6-digits string.
+     */
+    public String getColor(int color) {
+        String res = colors.get(color);
+
+        if (res == null) {
+            final StringBuilder builder = new StringBuilder(Integer.toHexString(color));
+            while (builder.length() < COLOR_LENGTH) {
+                builder.insert(0, '0');
+            }
+            res = builder.substring(builder.length() - COLOR_LENGTH);
+            colors.put(color, res);
+        }
+
+        return res;
+    }
+
+}
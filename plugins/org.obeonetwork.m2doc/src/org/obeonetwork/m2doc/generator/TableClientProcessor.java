@@ -11,15 +11,13 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.generator;
 
-import com.google.common.base.Predicates;
-import com.google.common.collect.Iterables;
-
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.poi.xwpf.usermodel.IBody;
 import org.apache.poi.xwpf.usermodel.IRunBody;
-import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
@@ -35,7 +33,10 @@ import org.obeonetwork.m2doc.provider.AbstractTableProvider.MStyle;
 import org.obeonetwork.m2doc.provider.AbstractTableProvider.MTable;
 import org.obeonetwork.m2doc.provider.ProviderException;
 import org.obeonetwork.m2doc.util.M2DocUtils;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRow;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTbl;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTc;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -53,6 +54,10 @@ public final class TableClientProcessor {
     private final Map<String, Object> parameters;
     /** The table provider. */
     private final AbstractTableProvider provider;
+    /** The {@link MStyleCache} shared by all generated tables. */
+    private final MStyleCache styleCache = new MStyleCache();
+    /** The number of generated tables and rows. */
+    private int generatedElements;
 
     /**
      * Constructor.
@@ -79,17 +84,28 @@ public final class TableClientProcessor {
      *             If the retrieval of the tables from the provider goes wrong.
      */
     public void generate(XWPFRun run) throws ProviderException {
-        List<MTable> tables = provider.getTables(parameters);
+        final Iterator<? extends MTable> tables = provider.getTableIterator(parameters);
         boolean first = true;
-        for (MTable mtable : tables) {
+        while (tables.hasNext()) {
+            final MTable mtable = tables.next();
             XWPFTable table = createTable(run, first, mtable);
             if (table != null) {
+                generatedElements++;
                 fillTable(table, mtable);
                 first = false;
             }
         }
     }
 
+    /**
+     * Gets the number of tables and rows generated by {@link #generate(XWPFRun)}.
+     * 
+     * @return the number of tables and rows generated by {@link #generate(XWPFRun)}
+     */
+    public int getGeneratedElements() {
+        return generatedElements;
+    }
+
     /**
      * Do we output the table title.
      * 
@@ -215,25 +231,36 @@ public final class TableClientProcessor {
      *            The MTable that describes the data and styles to insert
      */
     private void fillTable(XWPFTable table, MTable mtable) {
-        XWPFTableRow headerRow = table.getRow(0);
+        final Map<MColumn, Integer> columnIndices = new HashMap<MColumn, Integer>();
+        final XWPFTableRow headerRow = table.getRow(0);
         initializeEmptyTableCell(headerRow.getCell(0), null, null);
-        Iterable<? extends MColumn> mcolumns = mtable.getColumns();
-        for (MColumn mcol : mcolumns) {
+        // the prototype of all rows, its cells have the column style and their properties are copied to each row
+        final XWPFTableRow rowPrototype = new XWPFTableRow(CTRow.Factory.newInstance(), table);
+        initializeEmptyTableCell(rowPrototype.addNewTableCell(), null, null);
+        int index = 1;
+        for (MColumn mcol : mtable.getColumns()) {
             XWPFTableCell cell;
             cell = headerRow.addNewTableCell();
             initializeEmptyTableCell(cell, null, null);
             setCellContent(cell, mcol.getLabel(), null);
+            initializeEmptyTableCell(rowPrototype.addNewTableCell(), null, mcol);
+            if (!columnIndices.containsKey(mcol)) {
+                columnIndices.put(mcol, index);
+            }
+            index++;
         }
+        final List<XWPFTableCell> prototypeCells = rowPrototype.getTableCells();
         for (MRow mrow : mtable.getRows()) {
             XWPFTableRow row = table.createRow();
+            generatedElements++;
             List<XWPFTableCell> cells = row.getTableCells();
             for (int i = 0; i < cells.size(); i++) {
-                XWPFTableCell cell = cells.get(i);
-                // Make sure empty cells are empty and have the right style
-                if (i > 0) {
-                    initializeEmptyTableCell(cell, mrow, Iterables.get(mtable.getColumns(), i - 1));
-                } else {
-                    initializeEmptyTableCell(cell, null, null);
+                copyCellProperties(prototypeCells.get(i), cells.get(i));
+            }
+            if (mrow.getStyle() != null) {
+                for (int i = 1; i < cells.size(); i++) {
+                    // Make sure empty cells have the row style
+                    initializeEmptyTableCell(cells.get(i), mrow, null);
                 }
             }
             XWPFTableCell cell0 = row.getCell(0);
@@ -241,13 +268,34 @@ public final class TableClientProcessor {
             for (MCell mcell : mrow.getCells()) {
                 MColumn mcol = mcell.getColumn();
                 if (mcol != null) {
-                    XWPFTableCell cell = row.getCell(Iterables.indexOf(mcolumns, Predicates.equalTo(mcol)) + 1);
+                    final Integer columnIndex = columnIndices.get(mcol);
+                    XWPFTableCell cell = row.getCell(columnIndex != null ? columnIndex : 0);
                     setCellContent(cell, mcell.getLabel(), mcell.getStyle());
                 }
             }
         }
     }
 
+    /**
+     * Copies the cell and paragraph properties of the given prototype {@link XWPFTableCell} to the given {@link XWPFTableCell}. Only
+     * properties are copied so the {@link XWPFTableCell} and its {@link XWPFParagraph} keep wrapping their own XML elements.
+     * 
+     * @param prototype
+     *            the prototype {@link XWPFTableCell}
+     * @param cell
+     *            the {@link XWPFTableCell} to update
+     */
+    private void copyCellProperties(XWPFTableCell prototype, XWPFTableCell cell) {
+        final CTTc prototypeTc = prototype.getCTTc();
+        if (prototypeTc.isSetTcPr()) {
+            cell.getCTTc().setTcPr(prototypeTc.getTcPr());
+        }
+        final CTP prototypeP = prototypeTc.getPArray(0);
+        if (prototypeP.isSetPPr()) {
+            cell.getParagraphs().get(0).getCTP().setPPr(prototypeP.getPPr());
+        }
+    }
+
     /**
      * Initialize properrly a new table cell to make it easy to insert the data in this cell. Deals with the style to apply to this cell
      * depending on the row and column it belongs to.
@@ -270,7 +318,7 @@ public final class TableClientProcessor {
             style = column == null ? null : column.getStyle();
         }
         if (style != null) {
-            cell.setColor(hexColor(style.getBackgroundColor()));
+            styleCache.applyBackground(cell, style);
         }
         return cellParagraph;
     }
@@ -290,45 +338,8 @@ public final class TableClientProcessor {
         XWPFRun cellRun = cellParagraph.createRun();
         cellRun.setText(text);
         if (style != null) {
-            cell.setColor(hexColor(style.getBackgroundColor()));
-            applyTableClientStyle(cellRun, style);
-        }
-    }
-
-    /**
-     * Apply the given style to the given run. Background color is not taken into account here since it does not apply to runs.
-     * 
-     * @param run
-     *            The run to style
-     * @param style
-     *            The style to apply, can be <code>null</code>
-     */
-    private void applyTableClientStyle(XWPFRun run, MStyle style) {
-        run.setFontSize(style.getFontSize());
-        run.setBold((style.getFontModifiers() & MStyle.FONT_BOLD) != 0);
-        run.setItalic((style.getFontModifiers() & MStyle.FONT_ITALIC) != 0);
-        if ((style.getFontModifiers() & MStyle.FONT_UNDERLINE) != 0) {
-            run.setUnderline(UnderlinePatterns.SINGLE);
-        }
-        run.setStrikeThrough((style.getFontModifiers() & MStyle.FONT_STRIKE_THROUGH) != 0);
-        run.setColor(hexColor(style.getForegroundColor()));
-    }
-
-    /**
-     * Translate an int color from the {@link MStyle} format to the word format.
-     * 
-     * @param color
-     *            The color, as an int
-     * @return The color as a 6-digits string.
-     */
-    private static String hexColor(int color) {
-        String result = Integer.toHexString(color);
-        while (result.length() < 6) {
-            result = "0" + result;
-        }
-        if (result.length() > 6) {
-            result = result.substring(result.length() - 6);
+            styleCache.applyBackground(cell, style);
+            styleCache.applyStyle(cellRun, style);
         }
-        return result;
     }
 }
@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -51,8 +52,10 @@ import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
 import org.eclipse.acceleo.query.runtime.IQueryEvaluationEngine;
 import org.eclipse.acceleo.query.runtime.IReadOnlyQueryEnvironment;
 import org.eclipse.acceleo.query.runtime.impl.QueryEvaluationEngine;
+import org.eclipse.emf.common.util.BasicMonitor;
 import org.eclipse.emf.common.util.Diagnostic;
 import org.eclipse.emf.common.util.EMap;
+import org.eclipse.emf.common.util.Monitor;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.URIConverter;
 import org.obeonetwork.m2doc.api.HyperLink;
@@ -91,7 +94,6 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHdrFtr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHyperlink;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRow;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTbl;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTc;
@@ -179,6 +181,26 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
      */
     private GenerationResult result;
 
+    /**
+     * Cleaned up copies of template runs used to create text fragments, see {@link #getFragmentTemplate(XWPFRun)}.
+     */
+    private final Map<XWPFRun, CTR> fragmentTemplates = new IdentityHashMap<XWPFRun, CTR>();
+
+    /**
+     * The time after which the generation is aborted.
+     */
+    private long deadline;
+
+    /**
+     * The number of generated runs, tables, table rows and images, see {@link GenerationBudget#getMaxGeneratedRuns()}.
+     */
+    private int generatedRuns;
+
+    /**
+     * The {@link GenerationContext}.
+     */
+    private final GenerationContext context;
+
     /**
      * Create a new {@link TemplateProcessor} instance given some definitions
      * and a query environment.
@@ -192,9 +214,79 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
      */
     public TemplateProcessor(BookmarkManager bookmarkManager, UserContentManager userContentManager,
             IReadOnlyQueryEnvironment queryEnvironment) {
+        this(bookmarkManager, userContentManager, queryEnvironment, new BasicMonitor());
+    }
+
+    /**
+     * Create a new {@link TemplateProcessor} instance given some definitions, a query environment and a {@link Monitor}. The
+     * {@link Monitor} is notified of one unit of work per generated construct of a block and per repetition iteration. Once the
+     * {@link Monitor} is {@link Monitor#isCanceled() canceled} remaining constructs and iterations are skipped.
+     * 
+     * @param bookmarkManager
+     *            the {@link BookmarkManager}
+     * @param userContentManager
+     *            the {@link UserContentManager}
+     * @param queryEnvironment
+     *            the query environment used to evaluate queries in the
+     * @param monitor
+     *            the {@link Monitor}
+     */
+    public TemplateProcessor(BookmarkManager bookmarkManager, UserContentManager userContentManager,
+            IReadOnlyQueryEnvironment queryEnvironment, Monitor monitor) {
+        this(bookmarkManager, userContentManager, queryEnvironment, monitor, new GenerationBudget());
+    }
+
+    /**
+     * Create a new {@link TemplateProcessor} instance given some definitions, a query environment, a {@link Monitor} and a
+     * {@link GenerationBudget}. When the {@link GenerationBudget} is exceeded remaining constructs and iterations are skipped and the
+     * {@link GenerationResult} is {@link GenerationResult#isAborted() aborted}.
+     * 
+     * @param bookmarkManager
+     *            the {@link BookmarkManager}
+     * @param userContentManager
+     *            the {@link UserContentManager}
+     * @param queryEnvironment
+     *            the query environment used to evaluate queries in the
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     */
+    public TemplateProcessor(BookmarkManager bookmarkManager, UserContentManager userContentManager,
+            IReadOnlyQueryEnvironment queryEnvironment, Monitor monitor, GenerationBudget budget) {
+        this(bookmarkManager, userContentManager, queryEnvironment, new GenerationContext(monitor, budget));
+    }
+
+    /**
+     * Create a new {@link TemplateProcessor} instance given some definitions, a query environment and a {@link GenerationContext}. The
+     * {@link GenerationContext#getMonitor() monitor} and {@link GenerationContext#getBudget() budget} of the {@link GenerationContext}
+     * are used as in {@link #TemplateProcessor(BookmarkManager, UserContentManager, IReadOnlyQueryEnvironment, Monitor, GenerationBudget)}
+     * and the {@link GenerationContext} is passed to providers. It is {@link GenerationContext#dispose() disposed} by {@link #clear()}.
+     * 
+     * @param bookmarkManager
+     *            the {@link BookmarkManager}
+     * @param userContentManager
+     *            the {@link UserContentManager}
+     * @param queryEnvironment
+     *            the query environment used to evaluate queries in the
+     * @param context
+     *            the {@link GenerationContext}
+     */
+    public TemplateProcessor(BookmarkManager bookmarkManager, UserContentManager userContentManager,
+            IReadOnlyQueryEnvironment queryEnvironment, GenerationContext context) {
         this.bookmarkManager = bookmarkManager;
         this.userContentManager = userContentManager;
         this.evaluator = new QueryEvaluationEngine((IQueryEnvironment) queryEnvironment);
+        this.context = context;
+    }
+
+    /**
+     * Gets the {@link GenerationContext}.
+     * 
+     * @return the {@link GenerationContext}
+     */
+    public GenerationContext getContext() {
+        return context;
     }
 
     /**
@@ -206,7 +298,8 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
      *            the variables
      * @param destinationDocument
      *            the destination document.
-     * @return the {@link GenerationResult}
+     * @return the {@link GenerationResult}, its {@link GenerationResult#getMetrics() metrics} are the ones of the
+     *         {@link GenerationContext}
      */
     public GenerationResult generate(DocumentTemplate documentTemplate, Map<String, Object> variables,
             IBody destinationDocument) {
@@ -214,12 +307,39 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
         variablesStack.push(variables);
         result = new GenerationResult();
         result.getduplicatedUserContentIDs().addAll(userContentManager.getDuplicatedUserContentIDs());
+        final long startTime = System.currentTimeMillis();
+        deadline = context.getBudget().getDeadline(startTime);
+        generatedRuns = 0;
 
         doSwitch(documentTemplate);
 
+        context.addToMetric(GenerationContext.GENERATED_RUNS_METRIC, generatedRuns);
+        context.addToMetric(GenerationContext.DURATION_METRIC, System.currentTimeMillis() - startTime);
+        result.getMetrics().putAll(context.getMetrics());
+
         return result;
     }
 
+    /**
+     * Tells if the generation should stop, either because the {@link Monitor} has been canceled or because the {@link GenerationBudget}
+     * has been exceeded. In the later case the {@link GenerationResult} is {@link GenerationResult#abort(String) aborted}.
+     * 
+     * @return <code>true</code> if the generation should stop, <code>false</code> otherwise
+     */
+    private boolean isStopped() {
+        if (!result.isAborted()) {
+            final GenerationBudget budget = context.getBudget();
+            if (generatedRuns > budget.getMaxGeneratedRuns()) {
+                result.abort("The generation has been aborted after " + budget.getMaxGeneratedRuns()
+                    + " generated runs.");
+            } else if (System.currentTimeMillis() > deadline) {
+                result.abort("The generation has been aborted after " + budget.getMaxDuration() + " milliseconds.");
+            }
+        }
+
+        return result.isAborted() || context.isCanceled();
+    }
+
     @Override
     public IConstruct caseDocumentTemplate(DocumentTemplate documentTemplate) {
         doSwitch(documentTemplate.getBody());
@@ -298,6 +418,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
             newRun = currentGeneratedParagraph.createRun();
             newRun.getCTR().set(srcRun.getCTR());
         }
+        generatedRuns++;
         return newRun;
     }
 
@@ -374,12 +495,32 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
      */
     private XWPFRun insertFragment(XWPFRun srcRun, String fragment) {
         XWPFRun generatedRun = currentGeneratedParagraph.createRun();
-        generatedRun.getCTR().set(srcRun.getCTR().copy());
-        generatedRun.getCTR().getInstrTextList().clear();
+        generatedRun.getCTR().set(getFragmentTemplate(srcRun));
         generatedRun.setText(fragment);
+        generatedRuns++;
         return generatedRun;
     }
 
+    /**
+     * Gets the {@link CTR} to copy for each text fragment inserted with the style of the given template run. It is computed once per
+     * template run and must not be modified.
+     * 
+     * @param srcRun
+     *            the run to copy the style from.
+     * @return the {@link CTR} to copy for each text fragment inserted with the style of the given template run
+     */
+    private CTR getFragmentTemplate(XWPFRun srcRun) {
+        CTR res = fragmentTemplates.get(srcRun);
+
+        if (res == null) {
+            res = (CTR) srcRun.getCTR().copy();
+            res.getInstrTextList().clear();
+            fragmentTemplates.put(srcRun, res);
+        }
+
+        return res;
+    }
+
     /**
      * Creates a new paragraph and replaces the currentParagrap variable.
      * 
@@ -483,7 +624,8 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
         ctText.setStringValue(hyperLink.getText());
 
         CTR ctr = CTR.Factory.newInstance();
-        ctr.setRPr((CTRPr) run.getCTR().getRPr().copy());
+        // setRPr() copies the given properties
+        ctr.setRPr(run.getCTR().getRPr());
         ctr.setTArray(new CTText[] {ctText });
         cLink.setRArray(new CTR[] {ctr });
     }
@@ -506,6 +648,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
             try (InputStream imageStream = image.getInputStream()) {
                 run.addPicture(imageStream, getPictureType(image.getURI()), image.getURI().toString(), width, heigth);
             }
+            generatedRuns++;
         } catch (InvalidFormatException e) {
             insertMessage(currentGeneratedParagraph, ValidationMessageLevel.ERROR,
                     String.format(PICTURE_INVALID_FORMAT, image.getURI().toString()));
@@ -536,10 +679,19 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
                 final Map<String, Object> newVariables = Maps.newHashMap(variablesStack.peek());
                 variablesStack.push(newVariables);
                 try {
-                    for (Object val : iteration) {
-                        newVariables.put(repetition.getIterationVar(), val);
-                        doSwitch(repetition.getBody());
-                        closingRepretition(repetition);
+                    final Iterator<Object> it = iteration.iterator();
+                    final int maxIterations = context.getBudget().getMaxIterations();
+                    int iterations = 0;
+                    while (it.hasNext() && !isStopped()) {
+                        if (iterations++ < maxIterations) {
+                            newVariables.put(repetition.getIterationVar(), it.next());
+                            doSwitch(repetition.getBody());
+                            closingRepretition(repetition);
+                            context.getMonitor().worked(1);
+                        } else {
+                            result.abort("The generation has been aborted after " + maxIterations
+                                + " iterations over " + repetition.getIterationVar() + ".");
+                        }
                     }
                 } finally {
                     variablesStack.pop();
@@ -597,6 +749,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
             try {
                 currentGeneratedParagraph = userContentRawCopy.copy(userContent, currentGeneratedParagraph,
                         generatedDocument);
+                generatedRuns += countGeneratedRuns(userContent.getBody());
                 needNewParagraphBeforeEndTag = userContentRawCopy.needNewParagraph();
                 // Affect currentTemplateParagraph after Raw copy
                 if (userDoc.getClosingRuns().size() != 0) {
@@ -619,6 +772,26 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
         addEndUserDocField(userDoc, needNewParagraphBeforeEndTag);
     }
 
+    /**
+     * Counts the runs, tables and table rows copied from the given {@link Block} of a {@link UserContent}.
+     * 
+     * @param block
+     *            the {@link Block}
+     * @return the number of runs, tables and table rows copied from the given {@link Block}
+     */
+    private int countGeneratedRuns(Block block) {
+        int res = 0;
+
+        for (IConstruct construct : block.getStatements()) {
+            res += construct.getRuns().size();
+            if (construct instanceof Table) {
+                res += 1 + ((Table) construct).getRows().size();
+            }
+        }
+
+        return res;
+    }
+
     /**
      * Tells if the given {@link IConstruct} need new paragraph before end tag.
      * 
@@ -716,8 +889,10 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
 
     @Override
     public IConstruct caseBlock(Block block) {
-        for (IConstruct construct : block.getStatements()) {
-            doSwitch(construct);
+        final Iterator<IConstruct> it = block.getStatements().iterator();
+        while (it.hasNext() && !isStopped()) {
+            doSwitch(it.next());
+            context.getMonitor().worked(1);
         }
 
         return block;
@@ -790,6 +965,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
         } else {
             throw new UnsupportedOperationException("unknown type of IBody : " + generatedDocument.getClass());
         }
+        generatedRuns++;
         // iterate on the row
         for (Row row : table.getRows()) {
             doSwitch(row);
@@ -801,6 +977,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
     @Override
     public IConstruct caseRow(Row row) {
         currentGeneratedRow = currentGeneratedTable.createRow();
+        generatedRuns++;
         final CTRow ctRow = (CTRow) row.getTableRow().getCtRow().copy();
         ctRow.getTcList().clear();
         currentGeneratedRow.getCtRow().set(ctRow);
@@ -898,6 +1075,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
                 try (InputStream imageStream = URIConverter.INSTANCE.createInputStream(imageURI)) {
                     imageRun.addPicture(imageStream, getPictureType(imageURI), image.getFileName(), width, heigth);
                 }
+                generatedRuns++;
             } catch (InvalidFormatException e) {
                 insertMessage(currentGeneratedParagraph, ValidationMessageLevel.ERROR,
                         String.format(PICTURE_INVALID_FORMAT, imageURI.toString()));
@@ -940,19 +1118,14 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
                         imageRun.setText("");
                         imageRun.getCTR().getInstrTextList().clear();
 
-                        // get default image size if needed
-                        if (representation.getHeight() == 0) {
-                            representation.setHeight(((AbstractDiagramProvider) provider).getHeight());
-                        }
-                        if (representation.getWidth() == 0) {
-                            representation.setWidth(((AbstractDiagramProvider) provider).getWidth());
-                        }
-                        int height = Units.toEMU(representation.getHeight());
-                        int width = Units.toEMU(representation.getWidth());
+                        // get default image size if needed, the template is shared and must not be modified
+                        int height = Units.toEMU(getRepresentationHeight(representation, provider, imagePathStr));
+                        int width = Units.toEMU(getRepresentationWidth(representation, provider, imagePathStr));
 
                         try (InputStream fileInputStream = URIConverter.INSTANCE.createInputStream(imageURI)) {
                             imageRun.addPicture(fileInputStream, getPictureType(imageURI), imagePathStr, width, height);
                         }
+                        generatedRuns++;
                     } catch (InvalidFormatException e) {
                         insertMessage(currentGeneratedParagraph, ValidationMessageLevel.ERROR,
                                 String.format(PICTURE_INVALID_FORMAT, imageURI));
@@ -977,6 +1150,56 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
 
     }
 
+    /**
+     * Gets the height of the given image of the given {@link Representation}: the {@link Representation} height if set, the
+     * {@link GenerationContext#getImageHeight(String) image height} set by the provider otherwise, or the provider default height.
+     * 
+     * @param representation
+     *            the {@link Representation}
+     * @param provider
+     *            the {@link IProvider}
+     * @param imagePath
+     *            the image path returned by the provider
+     * @return the height of the given image of the given {@link Representation}
+     */
+    private int getRepresentationHeight(Representation representation, IProvider provider, String imagePath) {
+        int res = representation.getHeight();
+
+        if (res == 0) {
+            res = context.getImageHeight(imagePath);
+        }
+        if (res == 0) {
+            res = ((AbstractDiagramProvider) provider).getHeight();
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the width of the given image of the given {@link Representation}: the {@link Representation} width if set, the
+     * {@link GenerationContext#getImageWidth(String) image width} set by the provider otherwise, or the provider default width.
+     * 
+     * @param representation
+     *            the {@link Representation}
+     * @param provider
+     *            the {@link IProvider}
+     * @param imagePath
+     *            the image path returned by the provider
+     * @return the width of the given image of the given {@link Representation}
+     */
+    private int getRepresentationWidth(Representation representation, IProvider provider, String imagePath) {
+        int res = representation.getWidth();
+
+        if (res == 0) {
+            res = context.getImageWidth(imagePath);
+        }
+        if (res == 0) {
+            res = ((AbstractDiagramProvider) provider).getWidth();
+        }
+
+        return res;
+    }
+
     @Override
     public IConstruct caseTableClient(TableClient tableClient) {
         XWPFRun tableRun = insertRun(tableClient.getStyleRun());
@@ -991,6 +1214,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
                 parameters = setupParametersMap(tableClient, provider);
                 TableClientProcessor tableProcessor = new TableClientProcessor(generatedDocument, provider, parameters);
                 tableProcessor.generate(tableRun);
+                generatedRuns += tableProcessor.getGeneratedElements();
             } catch (IllegalArgumentException e) {
                 insertMessage(currentGeneratedParagraph, ValidationMessageLevel.ERROR, e.getMessage());
             } catch (ProviderException e) {
@@ -1114,6 +1338,7 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
     private Map<String, Object> setupParametersMap(AbstractProviderClient abstractProviderClient, IProvider provider)
             throws IllegalArgumentException {
         Map<String, Object> parameters = new HashMap<>();
+        parameters.put(ProviderConstants.GENERATION_CONTEXT_KEY, context);
         if (variablesStack.peek().containsKey(ProviderConstants.CONF_ROOT_OBJECT_KEY)) {
             parameters.put(ProviderConstants.CONF_ROOT_OBJECT_KEY,
                     variablesStack.peek().get(ProviderConstants.CONF_ROOT_OBJECT_KEY));
@@ -1248,12 +1473,17 @@ public class TemplateProcessor extends TemplateSwitch<IConstruct> {
 
     /**
      * Should be called when the {@link TemplateProcessor} is no longer needed so that it can cleanup temporary files used during the
-     * generation.
+     * generation. The {@link GenerationContext} is {@link GenerationContext#dispose() disposed}.
      */
     public void clear() {
-        for (AbstractDiagramProvider diagprovider : usedProviders) {
-            diagprovider.clear();
+        try {
+            for (AbstractDiagramProvider diagprovider : usedProviders) {
+                diagprovider.clear();
+            }
+        } finally {
+            context.dispose();
         }
+        fragmentTemplates.clear();
 
     }
 
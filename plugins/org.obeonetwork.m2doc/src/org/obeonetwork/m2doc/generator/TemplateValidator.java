@@ -24,6 +24,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonToken;
@@ -53,6 +56,7 @@ import org.eclipse.acceleo.query.validation.type.NothingType;
 import org.eclipse.emf.common.util.BasicDiagnostic;
 import org.eclipse.emf.common.util.Diagnostic;
 import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.obeonetwork.m2doc.api.AQL4Compat;
 import org.obeonetwork.m2doc.parser.TemplateValidationMessage;
@@ -80,7 +84,11 @@ import org.obeonetwork.m2doc.template.UserDoc;
 import org.obeonetwork.m2doc.template.util.TemplateSwitch;
 
 /**
- * Validates {@link DocumentTemplate}.
+ * Validates {@link DocumentTemplate}. When created with a {@link ForkJoinPool}, headers, top level statements of the body and footers are
+ * validated in parallel by ranges of consecutive sections. Each task gets its own copy of the variables scope and only adds messages to
+ * the constructs it validates, so messages end up in the same order as with a sequential validation. Tasks share the
+ * {@link IReadOnlyQueryEnvironment}, {@link AQL4Compat#validate(AstResult, Map, IReadOnlyQueryEnvironment) query validations} against
+ * it are serialized.
  * 
  * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
  */
@@ -106,6 +114,81 @@ public class TemplateValidator extends TemplateSwitch<ValidationMessageLevel> {
      */
     private IReadOnlyQueryEnvironment environment;
 
+    /**
+     * The {@link ForkJoinPool} used for parallel validation, <code>null</code> for sequential validation.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of parallel validation tasks per {@link ForkJoinPool} thread. More than one to balance uneven sections.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Validates consecutive {@link EObject} of the template with a given {@link TemplateValidator}.
+     * 
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class ValidationTask extends RecursiveTask<ValidationMessageLevel> {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The {@link TemplateValidator}.
+         */
+        private final transient TemplateValidator validator;
+
+        /**
+         * The {@link EObject} to validate.
+         */
+        private final transient List<? extends EObject> objects;
+
+        /**
+         * Constructor.
+         * 
+         * @param validator
+         *            the {@link TemplateValidator}
+         * @param objects
+         *            the {@link EObject} to validate
+         */
+        private ValidationTask(TemplateValidator validator, List<? extends EObject> objects) {
+            this.validator = validator;
+            this.objects = objects;
+        }
+
+        @Override
+        protected ValidationMessageLevel compute() {
+            ValidationMessageLevel res = ValidationMessageLevel.OK;
+
+            for (EObject object : objects) {
+                res = ValidationMessageLevel.updateLevel(res, validator.doSwitch(object));
+            }
+
+            return res;
+        }
+
+    }
+
+    /**
+     * Constructor for sequential validation.
+     */
+    public TemplateValidator() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param pool
+     *            the {@link ForkJoinPool} used for parallel validation, <code>null</code> for sequential validation
+     */
+    public TemplateValidator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Validates the given {@link DocumentTemplate} against the given {@link IQueryEnvironment} and variables types.
      * 
@@ -132,7 +215,11 @@ public class TemplateValidator extends TemplateSwitch<ValidationMessageLevel> {
 
         final ValidationMessageLevel result;
         try {
-            result = doSwitch(documentTemplate);
+            if (pool != null) {
+                result = pool.invoke(new ValidationTask(this, Collections.singletonList(documentTemplate)));
+            } else {
+                result = doSwitch(documentTemplate);
+            }
         } finally {
             stack.pop();
         }
@@ -220,17 +307,76 @@ public class TemplateValidator extends TemplateSwitch<ValidationMessageLevel> {
 
     @Override
     public ValidationMessageLevel caseDocumentTemplate(DocumentTemplate documentTemplate) {
-        ValidationMessageLevel headerLevel = ValidationMessageLevel.OK;
-        for (Template header : documentTemplate.getHeaders()) {
-            headerLevel = ValidationMessageLevel.updateLevel(headerLevel, doSwitch(header));
+        final ValidationMessageLevel res;
+
+        if (pool != null) {
+            res = validateInParallel(documentTemplate);
+        } else {
+            ValidationMessageLevel headerLevel = ValidationMessageLevel.OK;
+            for (Template header : documentTemplate.getHeaders()) {
+                headerLevel = ValidationMessageLevel.updateLevel(headerLevel, doSwitch(header));
+            }
+            final ValidationMessageLevel bodyLevel = doSwitch(documentTemplate.getBody());
+            ValidationMessageLevel footerLevel = ValidationMessageLevel.OK;
+            for (Template footer : documentTemplate.getFooters()) {
+                footerLevel = ValidationMessageLevel.updateLevel(footerLevel, doSwitch(footer));
+            }
+            res = ValidationMessageLevel.updateLevel(headerLevel, bodyLevel, footerLevel);
         }
-        final ValidationMessageLevel bodyLevel = doSwitch(documentTemplate.getBody());
-        ValidationMessageLevel footerLevel = ValidationMessageLevel.OK;
-        for (Template footer : documentTemplate.getFooters()) {
-            footerLevel = ValidationMessageLevel.updateLevel(footerLevel, doSwitch(footer));
+
+        return res;
+    }
+
+    /**
+     * Validates headers, top level statements of the body and footers of the given {@link DocumentTemplate} in parallel. They are split
+     * in ranges of consecutive sections, a few per thread of the {@link ForkJoinPool}, each validated sequentially by its own
+     * {@link TemplateValidator}.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @return the highest {@link ValidationMessageLevel}
+     */
+    private ValidationMessageLevel validateInParallel(DocumentTemplate documentTemplate) {
+        final Template body = documentTemplate.getBody();
+        final List<EObject> sections = new ArrayList<EObject>(documentTemplate.getHeaders());
+        sections.addAll(body.getBody().getStatements());
+        sections.addAll(documentTemplate.getFooters());
+
+        final int taskCount = Math.min(sections.size(), pool.getParallelism() * TASKS_PER_THREAD);
+        final List<ValidationTask> tasks = new ArrayList<ValidationTask>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final List<EObject> range = sections.subList(i * sections.size() / taskCount,
+                    (i + 1) * sections.size() / taskCount);
+            tasks.add(new ValidationTask(
+                    createSequentialValidator(new LinkedHashMap<String, Set<IType>>(stack.peek())), range));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        ValidationMessageLevel res = ValidationMessageLevel.updateLevel(getHighestMessageLevel(body),
+                getHighestMessageLevel(body.getBody()));
+        for (ValidationTask task : tasks) {
+            res = ValidationMessageLevel.updateLevel(res, task.join());
         }
 
-        return ValidationMessageLevel.updateLevel(headerLevel, bodyLevel, footerLevel);
+        return res;
+    }
+
+    /**
+     * Creates a sequential {@link TemplateValidator} sharing this validator environment and using the given variables types.
+     * 
+     * @param scope
+     *            the variables types, owned by the created {@link TemplateValidator}
+     * @return the created {@link TemplateValidator}
+     */
+    private TemplateValidator createSequentialValidator(Map<String, Set<IType>> scope) {
+        final TemplateValidator res = new TemplateValidator();
+
+        res.environment = environment;
+        res.booleanObjectType = booleanObjectType;
+        res.booleanType = booleanType;
+        res.stack.push(scope);
+
+        return res;
     }
 
     @Override
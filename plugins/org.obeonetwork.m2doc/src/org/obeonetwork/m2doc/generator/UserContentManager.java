@@ -12,6 +12,7 @@
 package org.obeonetwork.m2doc.generator;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -87,7 +88,7 @@ public class UserContentManager {
     private final DocumentTemplate documentTemplate;
 
     /**
-     * The destination {@link URI}.
+     * The destination {@link URI} if any, <code>null</code> otherwise.
      */
     private final URI destination;
 
@@ -114,6 +115,34 @@ public class UserContentManager {
         }
     }
 
+    /**
+     * Constructor for generations without destination {@link URI}. {@link UserContent} are read from the given previous output if any,
+     * and lost {@link UserContent} are not saved.
+     * 
+     * @param documentTemplate
+     *            the input {@link DocumentTemplate}
+     * @param previousOutput
+     *            the {@link InputStream} of the previous generated document if any, <code>null</code> otherwise. It is closed by this
+     *            constructor
+     */
+    public UserContentManager(DocumentTemplate documentTemplate, InputStream previousOutput) {
+        this.documentTemplate = documentTemplate;
+        this.destination = null;
+        this.generatedFileCopy = null;
+        if (previousOutput != null) {
+            launchParsing(previousOutput);
+        }
+    }
+
+    /**
+     * Gets the destination {@link URI}.
+     * 
+     * @return the destination {@link URI} if any, <code>null</code> otherwise
+     */
+    public URI getDestination() {
+        return destination;
+    }
+
     /**
      * Launch Parsing.
      * 
@@ -121,11 +150,21 @@ public class UserContentManager {
      *             IOException
      */
     private void launchParsing() throws IOException {
+        launchParsing(new FileInputStream(generatedFileCopy));
+    }
+
+    /**
+     * Launch Parsing of the given {@link InputStream}.
+     * 
+     * @param previousOutput
+     *            the {@link InputStream} of the previous generated document, it is closed by this method
+     */
+    private void launchParsing(InputStream previousOutput) {
         IQueryEnvironment queryEnvironment = org.eclipse.acceleo.query.runtime.Query
                 .newEnvironmentWithDefaultServices(null);
 
-        try (DocumentTemplate userDocDocument = M2DocUtils
-                .parseUserContent(URI.createURI(generatedFileCopy.toURI().toString()), queryEnvironment);) {
+        try (DocumentTemplate userDocDocument = M2DocUtils.parseUserContent(previousOutput, null,
+                queryEnvironment);) {
             final TreeIterator<EObject> iter = userDocDocument.eAllContents();
             while (iter.hasNext()) {
                 EObject eObject = iter.next();
@@ -243,7 +282,8 @@ public class UserContentManager {
     }
 
     /**
-     * Generates lost files if needed and update given {@link GenerationResult}.
+     * Generates lost files if needed and update given {@link GenerationResult}. Without {@link #getDestination() destination} lost
+     * {@link UserContent} are not saved and are reported with a <code>null</code> {@link URI}.
      * 
      * @param result
      *            the {@link GenerationResult}
@@ -253,8 +293,31 @@ public class UserContentManager {
      *             if the input {@link DocumentTemplate} can't be read
      */
     public void generateLostFiles(GenerationResult result) throws IOException, InvalidFormatException {
+        if (destination != null) {
+            generateLostFiles(result, destination);
+        } else {
+            for (String id : mapIdUserContent.keySet()) {
+                result.getLostUserContents().put(id, null);
+                result.updateLevel(ValidationMessageLevel.WARNING);
+            }
+        }
+    }
+
+    /**
+     * Generates lost files next to the given destination and update given {@link GenerationResult}.
+     * 
+     * @param result
+     *            the {@link GenerationResult}
+     * @param dest
+     *            the destination {@link URI}
+     * @throws IOException
+     *             if the lost {@link UserContent} can't be written
+     * @throws InvalidFormatException
+     *             if the input {@link DocumentTemplate} can't be read
+     */
+    private void generateLostFiles(GenerationResult result, URI dest) throws IOException, InvalidFormatException {
         for (Entry<String, List<UserContent>> entry : mapIdUserContent.entrySet()) {
-            final URI lostUserContentURI = getLostUserContentURI(destination, entry.getKey());
+            final URI lostUserContentURI = getLostUserContentURI(dest, entry.getKey());
             result.getLostUserContents().put(entry.getKey(), lostUserContentURI);
             final boolean isNewUserContentLoss;
             final URI inputURI;
@@ -42,7 +42,6 @@ import org.obeonetwork.m2doc.util.FieldUtils;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Sets.difference;
 
-import static org.obeonetwork.m2doc.util.FieldUtils.readUpInstrText;
 import static org.obeonetwork.m2doc.util.M2DocUtils.message;
 
 /**
@@ -157,30 +156,29 @@ public abstract class BodyAbstractParser {
      * @return the string present into the tag as typed by the template author.
      */
     protected String readTag(IConstruct construct, List<XWPFRun> runsToFill) {
-        XWPFRun run = this.runIterator.lookAhead(1).getRun();
-        if (run == null) {
+        if (this.runIterator.lookAheadRun(1) == null) {
             throw new IllegalStateException("readTag shouldn't be called with a table in the lookahead window.");
-        } else if (!fieldUtils.isFieldBegin(run)) {
+        } else if (!runIterator.isFieldBegin(1)) {
             throw new IllegalStateException("Shouldn't call readTag if the current run doesn't start a field");
         }
 
-        final StringBuilder result = new StringBuilder();
+        final String tag = runIterator.lookAheadTag();
 
-        runsToFill.add(runIterator.next().getRun()); // Consume begin field
+        runsToFill.add(runIterator.nextRun()); // Consume begin field
         XWPFRun styleRun = null;
         boolean columnRead = false;
         while (runIterator.hasNext()) {
-            run = runIterator.next().getRun();
+            final boolean fieldEnd = runIterator.isFieldEnd(1);
+            final String runText = runIterator.getInstrText(1);
+            final XWPFRun run = runIterator.nextRun();
             if (run == null) {
                 // XXX : treat this as a proper parsing error.
                 throw new IllegalArgumentException("table cannot be inserted into tags.");
             }
             runsToFill.add(run);
-            if (fieldUtils.isFieldEnd(run)) {
+            if (fieldEnd) {
                 break;
             }
-            final String runText = readUpInstrText(run).toString();
-            result.append(runText);
             // the style run hasn't been discovered yet.
             if (styleRun == null) {
                 if (columnRead && !runText.isEmpty()) {
@@ -197,7 +195,7 @@ public abstract class BodyAbstractParser {
             }
         }
 
-        return result.toString();
+        return tag;
     }
 
     /**
@@ -252,7 +250,7 @@ public abstract class BodyAbstractParser {
     protected StaticFragment parseStaticFragment() throws DocumentParserException {
         StaticFragment result = (StaticFragment) EcoreUtil.create(TemplatePackage.Literals.STATIC_FRAGMENT);
         while (getNextTokenType() == TokenType.STATIC) {
-            result.getRuns().add(runIterator.next().getRun());
+            result.getRuns().add(runIterator.nextRun());
         }
         return result;
     }
@@ -37,6 +37,11 @@ import static org.obeonetwork.m2doc.util.M2DocUtils.message;
  */
 public class BodyGeneratedParser extends BodyAbstractParser {
 
+    /**
+     * The {@link TokenTypeTrie} used to classify user content tags.
+     */
+    private static final TokenTypeTrie TAGS = new TokenTypeTrie(TokenType.USERCONTENT, TokenType.ENDUSERCONTENT);
+
     /**
      * User Conetnt Ids list.
      * Used for uniqueness test.
@@ -78,24 +83,15 @@ public class BodyGeneratedParser extends BodyAbstractParser {
     @Override
     protected TokenType getNextTokenType() {
         int index = 1;
-        ParsingToken token = runIterator.lookAhead(index);
         TokenType result;
-        if (token == null) {
+        if (!runIterator.hasElements(index)) {
             result = TokenType.EOF;
-        } else if (token.getKind() == ParsingTokenKind.TABLE) {
+        } else if (runIterator.lookAheadTable(index) != null) {
             result = TokenType.WTABLE;
         } else {
-            XWPFRun run = token.getRun();
             // is run a field begin run
-            if (fieldUtils.isFieldBegin(run)) {
-                String code = fieldUtils.lookAheadTag(runIterator);
-                if (code.startsWith(TokenType.ENDUSERCONTENT.getValue())) {
-                    result = TokenType.ENDUSERCONTENT;
-                } else if (code.startsWith(TokenType.USERCONTENT.getValue())) {
-                    result = TokenType.USERCONTENT;
-                } else {
-                    result = TokenType.STATIC;
-                }
+            if (runIterator.isFieldBegin(index)) {
+                result = TAGS.match(runIterator.lookAheadTag().trim(), TokenType.STATIC);
             } else {
                 result = TokenType.STATIC;
             }
@@ -117,7 +113,7 @@ public class BodyGeneratedParser extends BodyAbstractParser {
                 case ENDUSERCONTENT:
                     // report the error and ignore the problem so that parsing
                     // continues in other parts of the document.
-                    XWPFRun run = runIterator.lookAhead(1).getRun();
+                    XWPFRun run = runIterator.lookAheadRun(1);
                     if (run == null) {
                         throw new IllegalStateException(
                                 "Token of type " + type + " detected. Run shouldn't be null at this place.");
@@ -139,7 +135,7 @@ public class BodyGeneratedParser extends BodyAbstractParser {
                     res.getStatements().add(parseStaticFragment());
                     break;
                 case WTABLE:
-                    res.getStatements().add(parseTable(runIterator.next().getTable()));
+                    res.getStatements().add(parseTable(runIterator.nextTable()));
                     break;
                 default:
                     throw new UnsupportedOperationException(
@@ -162,6 +162,14 @@ public class BodyTemplateParser extends BodyAbstractParser {
      */
     private static final int OPTION_GROUP_RANK = 1;
 
+    /**
+     * The {@link TokenTypeTrie} used to classify template tags.
+     */
+    private static final TokenTypeTrie TAGS = new TokenTypeTrie(TokenType.FOR, TokenType.ENDFOR, TokenType.IF,
+            TokenType.ELSEIF, TokenType.ELSE, TokenType.ENDIF, TokenType.USERDOC, TokenType.ENDUSERDOC, TokenType.ELT,
+            TokenType.LET, TokenType.ENDLET, TokenType.IMAGE, TokenType.DIAGRAM, TokenType.TABLE, TokenType.BOOKMARK,
+            TokenType.ENDBOOKMARK, TokenType.LINK, TokenType.COMMENT, TokenType.AQL);
+
     /**
      * Creates a new {@link BodyTemplateParser} instance.
      * 
@@ -197,58 +205,15 @@ public class BodyTemplateParser extends BodyAbstractParser {
     @Override
     protected TokenType getNextTokenType() {
         int index = 1;
-        ParsingToken token = runIterator.lookAhead(index);
         TokenType result;
-        if (token == null) {
+        if (!runIterator.hasElements(index)) {
             result = TokenType.EOF;
-        } else if (token.getKind() == ParsingTokenKind.TABLE) {
+        } else if (runIterator.lookAheadTable(index) != null) {
             result = TokenType.WTABLE;
         } else {
-            XWPFRun run = token.getRun();
             // is run a field begin run
-            if (fieldUtils.isFieldBegin(run)) {
-                String code = fieldUtils.lookAheadTag(runIterator);
-                if (code.startsWith(TokenType.FOR.getValue())) {
-                    result = TokenType.FOR;
-                } else if (code.startsWith(TokenType.ENDFOR.getValue())) {
-                    result = TokenType.ENDFOR;
-                } else if (code.startsWith(TokenType.IF.getValue())) {
-                    result = TokenType.IF;
-                } else if (code.startsWith(TokenType.ELSEIF.getValue())) {
-                    result = TokenType.ELSEIF;
-                } else if (code.startsWith(TokenType.ELSE.getValue())) {
-                    result = TokenType.ELSE;
-                } else if (code.startsWith(TokenType.ENDIF.getValue())) {
-                    result = TokenType.ENDIF;
-                } else if (code.startsWith(TokenType.USERDOC.getValue())) {
-                    result = TokenType.USERDOC;
-                } else if (code.startsWith(TokenType.ENDUSERDOC.getValue())) {
-                    result = TokenType.ENDUSERDOC;
-                } else if (code.startsWith(TokenType.ELT.getValue())) {
-                    result = TokenType.ELT;
-                } else if (code.startsWith(TokenType.LET.getValue())) {
-                    result = TokenType.LET;
-                } else if (code.startsWith(TokenType.ENDLET.getValue())) {
-                    result = TokenType.ENDLET;
-                } else if (code.startsWith(TokenType.IMAGE.getValue())) {
-                    result = TokenType.IMAGE;
-                } else if (code.startsWith(TokenType.DIAGRAM.getValue())) {
-                    result = TokenType.DIAGRAM;
-                } else if (code.startsWith(TokenType.TABLE.getValue())) {
-                    result = TokenType.TABLE;
-                } else if (code.startsWith(TokenType.BOOKMARK.getValue())) {
-                    result = TokenType.BOOKMARK;
-                } else if (code.startsWith(TokenType.ENDBOOKMARK.getValue())) {
-                    result = TokenType.ENDBOOKMARK;
-                } else if (code.startsWith(TokenType.LINK.getValue())) {
-                    result = TokenType.LINK;
-                } else if (code.startsWith(TokenType.COMMENT.getValue())) {
-                    result = TokenType.COMMENT;
-                } else if (code.startsWith(TokenType.AQL.getValue())) {
-                    result = TokenType.AQL;
-                } else {
-                    result = TokenType.STATIC;
-                }
+            if (runIterator.isFieldBegin(index)) {
+                result = TAGS.match(runIterator.lookAheadTag().trim(), TokenType.STATIC);
             } else {
                 result = TokenType.STATIC;
             }
@@ -287,7 +252,7 @@ public class BodyTemplateParser extends BodyAbstractParser {
                 case ENDUSERDOC:
                     // report the error and ignore the problem so that parsing
                     // continues in other parts of the document.
-                    XWPFRun run = runIterator.lookAhead(1).getRun();
+                    XWPFRun run = runIterator.lookAheadRun(1);
                     if (run == null) {
                         throw new IllegalStateException(
                                 "Token of type " + type + " detected. Run shouldn't be null at this place.");
@@ -321,7 +286,7 @@ public class BodyTemplateParser extends BodyAbstractParser {
                     res.getStatements().add(parseLink());
                     break;
                 case WTABLE:
-                    res.getStatements().add(parseTable(runIterator.next().getTable()));
+                    res.getStatements().add(parseTable(runIterator.nextTable()));
                     break;
                 case DIAGRAM:
                     res.getStatements().add(parseRepresentation()); // XXX : change representation into diagram in the template
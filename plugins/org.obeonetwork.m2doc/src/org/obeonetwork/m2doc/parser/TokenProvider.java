@@ -12,25 +12,74 @@
 package org.obeonetwork.m2doc.parser;
 
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.apache.poi.xwpf.usermodel.BodyElementType;
 import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
 
 /**
  * Token are Iterator of {@link ParsingToken} instances that provide lookahead facilities.
  * Lookahead methods allow to look ahead the stream the tokens that will be read so as to predict the right parsing decision at any point.
+ * The whole body is read when the provider is created into flat arrays of runs and tables, the field character and instruction text of
+ * each run are kept along with them so that the parser doesn't need to read them again from the underlying XML. Parsers read the
+ * arrays through {@link #lookAheadRun(int)}, {@link #lookAheadTable(int)}, {@link #nextRun()} and {@link #nextTable()} without any
+ * allocation, {@link ParsingToken} instances are only created by the {@link Iterator} methods and {@link #lookAhead(int)}.
  * 
  * @author Romain Guider
  */
 public class TokenProvider implements Iterator<ParsingToken> {
+
+    /**
+     * The run doesn't begin or end a field.
+     */
+    private static final byte FIELD_NONE = 0;
+
+    /**
+     * The run begins a field.
+     */
+    private static final byte FIELD_BEGIN = 1;
+
+    /**
+     * The run ends a field.
+     */
+    private static final byte FIELD_END = 2;
+
+    /**
+     * The run of each token, <code>null</code> for tables.
+     */
+    private final XWPFRun[] runs;
+
+    /**
+     * The table of each token, <code>null</code> for runs.
+     */
+    private final XWPFTable[] tables;
+
+    /**
+     * The field character kind of each token, {@link #FIELD_NONE} for tables.
+     */
+    private final byte[] fieldChars;
+
     /**
-     * The underlying {@link ParsingToken} instance.
+     * The instruction text of each token, <code>null</code> for tables.
      */
-    private TokenIterator runIterator;
+    private final String[] instrTexts;
+
+    /**
+     * The text of fields started by each token, lazily computed.
+     */
+    private final String[] tags;
+
     /**
-     * The token read ahead of the cursor.
+     * The index of the next token to read.
      */
-    private LinkedList<ParsingToken> lookAhead;
+    private int cursor;
 
     /**
      * Creates a new {@link TokenProvider} instance.
@@ -39,66 +88,286 @@ public class TokenProvider implements Iterator<ParsingToken> {
      *            the parsed body
      */
     public TokenProvider(IBody body) {
-        this.runIterator = new TokenIterator(body);
-        lookAhead = new LinkedList<ParsingToken>();
+        if (body == null) {
+            throw new IllegalArgumentException("Input documnet shouldn't be null");
+        }
+        final List<IBodyElement> elements = body.getBodyElements();
+        int size = 0;
+        for (IBodyElement element : elements) {
+            if (element.getElementType().equals(BodyElementType.PARAGRAPH)) {
+                // create an empty run if there's no run in the paragraph.
+                // this eases the processing of documents. The processing is based on runs and a paragraph that has no run in it won't
+                // be seen by the generator and, as a consequence, won't be inserted as a static part in the result.
+                final XWPFParagraph paragraph = (XWPFParagraph) element;
+                if (paragraph.getRuns().size() == 0) {
+                    paragraph.createRun().setText("");
+                }
+                size += paragraph.getRuns().size();
+            } else if (element.getElementType().equals(BodyElementType.TABLE)) {
+                size++;
+            } else {
+                throw new UnsupportedOperationException("Unsupported type of body element : " + element.getElementType());
+            }
+        }
+        runs = new XWPFRun[size];
+        tables = new XWPFTable[size];
+        fieldChars = new byte[size];
+        instrTexts = new String[size];
+        tags = new String[size];
+        int index = 0;
+        for (IBodyElement element : elements) {
+            if (element.getElementType().equals(BodyElementType.PARAGRAPH)) {
+                for (XWPFRun run : ((XWPFParagraph) element).getRuns()) {
+                    final CTR ctr = run.getCTR();
+                    runs[index] = run;
+                    fieldChars[index] = getFieldChar(ctr);
+                    instrTexts[index] = getInstrText(ctr);
+                    index++;
+                }
+            } else {
+                tables[index++] = (XWPFTable) element;
+            }
+        }
+    }
+
+    /**
+     * Gets the field character kind of the given {@link CTR}.
+     * 
+     * @param ctr
+     *            the {@link CTR}
+     * @return the field character kind of the given {@link CTR}
+     */
+    private static byte getFieldChar(CTR ctr) {
+        final byte res;
+
+        if (ctr.sizeOfFldCharArray() > 0) {
+            final STFldCharType.Enum type = ctr.getFldCharArray(0).getFldCharType();
+            if (STFldCharType.BEGIN.equals(type)) {
+                res = FIELD_BEGIN;
+            } else if (STFldCharType.END.equals(type)) {
+                res = FIELD_END;
+            } else {
+                res = FIELD_NONE;
+            }
+        } else {
+            res = FIELD_NONE;
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the aggregated instruction text of the given {@link CTR}.
+     * 
+     * @param ctr
+     *            the {@link CTR}
+     * @return the aggregated instruction text of the given {@link CTR}
+     */
+    private static String getInstrText(CTR ctr) {
+        final String res;
+
+        final int size = ctr.sizeOfInstrTextArray();
+        if (size == 0) {
+            res = "";
+        } else if (size == 1) {
+            res = ctr.getInstrTextArray(0).getStringValue();
+        } else {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                builder.append(ctr.getInstrTextArray(i).getStringValue());
+            }
+            res = builder.toString();
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the index in {@link #tokens} of the ith token ahead.
+     * 
+     * @param i
+     *            the number of token to look ahead.
+     * @return the index in {@link #tokens} of the ith token ahead if any, <code>-1</code> otherwise
+     */
+    private int index(int i) {
+        final int res = cursor + i - 1;
+        return i > 0 && res < runs.length ? res : -1;
     }
 
     /**
-     * Returns the ith element or <code>null</code> if there's no such element.
+     * Returns the ith element or <code>null</code> if there's no such element. A new {@link ParsingToken} is created on each call,
+     * parsers should use {@link #lookAheadRun(int)} and {@link #lookAheadTable(int)} instead.
      * 
      * @param i
      *            the number of token to look ahead.
      * @return the ith element or <code>null</code> if there's no such element.
      */
     public ParsingToken lookAhead(int i) {
-        loadNext(i);
-        if (lookAhead.size() == 0 && i > 0) {
-            return null;
+        final int index = index(i);
+        return index >= 0 ? createToken(index) : null;
+    }
+
+    /**
+     * Creates the {@link ParsingToken} at the given index.
+     * 
+     * @param index
+     *            the index
+     * @return the created {@link ParsingToken}
+     */
+    private ParsingToken createToken(int index) {
+        final ParsingToken res;
+
+        if (runs[index] != null) {
+            res = new ParsingToken(runs[index]);
         } else {
-            return lookAhead.get(i - 1);
+            res = new ParsingToken(tables[index]);
         }
+
+        return res;
     }
 
     /**
-     * returns <code>true</code> if there's <code>i</code> elements left to
-     * read.
+     * Gets the ith element if it is a run.
      * 
      * @param i
-     *            the number of element inquired
-     * @return <code>true</code> if there's <code>i</code> elements left to read
+     *            the number of token to look ahead.
+     * @return the ith element if it is a run, <code>null</code> otherwise
      */
-    public boolean hasElements(int i) {
-        loadNext(i);
-        return lookAhead.size() >= i;
+    public XWPFRun lookAheadRun(int i) {
+        final int index = index(i);
+        return index >= 0 ? runs[index] : null;
+    }
+
+    /**
+     * Gets the ith element if it is a table.
+     * 
+     * @param i
+     *            the number of token to look ahead.
+     * @return the ith element if it is a table, <code>null</code> otherwise
+     */
+    public XWPFTable lookAheadTable(int i) {
+        final int index = index(i);
+        return index >= 0 ? tables[index] : null;
+    }
+
+    /**
+     * Tells if the ith element begins a field.
+     * 
+     * @param i
+     *            the number of token to look ahead.
+     * @return <code>true</code> if the ith element begins a field, <code>false</code> otherwise
+     */
+    public boolean isFieldBegin(int i) {
+        final int index = index(i);
+        return index >= 0 && fieldChars[index] == FIELD_BEGIN;
     }
 
     /**
-     * load the i next tokens.
+     * Tells if the ith element ends a field.
      * 
      * @param i
-     *            the number of tokens to load ahead of the cursor.
-     */
-    private void loadNext(int i) {
-        int laSize = lookAhead.size();
-        int leftToRead = i - laSize;
-        int j = 0;
-        while (runIterator.hasNext() && j < leftToRead) {
-            lookAhead.addLast(runIterator.next());
-            j++;
+     *            the number of token to look ahead.
+     * @return <code>true</code> if the ith element ends a field, <code>false</code> otherwise
+     */
+    public boolean isFieldEnd(int i) {
+        final int index = index(i);
+        return index >= 0 && fieldChars[index] == FIELD_END;
+    }
+
+    /**
+     * Gets the instruction text of the ith element.
+     * 
+     * @param i
+     *            the number of token to look ahead.
+     * @return the instruction text of the ith element if it is a run, <code>null</code> otherwise
+     */
+    public String getInstrText(int i) {
+        final int index = index(i);
+        return index >= 0 ? instrTexts[index] : null;
+    }
+
+    /**
+     * Gets the complete text of the field begun by the next element. The text is computed once per field.
+     * 
+     * @return the complete text of the field begun by the next element, or an empty string if the next element doesn't begin a field
+     */
+    public String lookAheadTag() {
+        final int index = index(1);
+        if (index < 0 || instrTexts[index] == null) {
+            throw new IllegalStateException("lookAheadTag shouldn't be called on a table.");
         }
+        String res = tags[index];
+        if (res == null) {
+            if (fieldChars[index] == FIELD_BEGIN) {
+                final StringBuilder builder = new StringBuilder();
+                int current = index + 1;
+                // stops when EOF is reached or a table is encountered.
+                while (current < runs.length && instrTexts[current] != null && fieldChars[current] != FIELD_END) {
+                    builder.append(instrTexts[current]);
+                    current++;
+                }
+                res = builder.toString();
+            } else {
+                res = "";
+            }
+            tags[index] = res;
+        }
+        return res;
+    }
+
+    /**
+     * returns <code>true</code> if there's <code>i</code> elements left to
+     * read.
+     * 
+     * @param i
+     *            the number of element inquired
+     * @return <code>true</code> if there's <code>i</code> elements left to read
+     */
+    public boolean hasElements(int i) {
+        return runs.length - cursor >= i;
     }
 
     @Override
     public boolean hasNext() {
-        return !lookAhead.isEmpty() || runIterator.hasNext();
+        return cursor < runs.length;
     }
 
+    /**
+     * {@inheritDoc} A new {@link ParsingToken} is created on each call, parsers should use {@link #nextRun()} and {@link #nextTable()}
+     * instead.
+     */
     @Override
     public ParsingToken next() {
-        if (!lookAhead.isEmpty()) {
-            return lookAhead.removeFirst();
+        if (cursor < runs.length) {
+            return createToken(cursor++);
+        } else {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * Consumes the next element.
+     * 
+     * @return the next element if it is a run, <code>null</code> if it is a table
+     */
+    public XWPFRun nextRun() {
+        if (cursor < runs.length) {
+            return runs[cursor++];
+        } else {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * Consumes the next element.
+     * 
+     * @return the next element if it is a table, <code>null</code> if it is a run
+     */
+    public XWPFTable nextTable() {
+        if (cursor < runs.length) {
+            return tables[cursor++];
         } else {
-            return runIterator.next();
+            throw new NoSuchElementException();
         }
     }
 
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.parser;
+
+/**
+ * Classifies tag texts according to the {@link TokenType#getValue() keyword} they start with. The longest matching keyword wins, so
+ * <code>m:elseif</code> is classified as {@link TokenType#ELSEIF} and not as {@link TokenType#ELSE} or {@link TokenType#AQL}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+final class TokenTypeTrie {
+
+    /**
+     * The root {@link Node}.
+     */
+    private final Node root = new Node();
+
+    /**
+     * A node of the trie.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class Node {
+
+        /**
+         * The characters leading to {@link #children}.
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * The children nodes, indexed as {@link #keys}.
+         */
+        private Node[] children = new Node[0];
+
+        /**
+         * The {@link TokenType} whose keyword ends here if any, <code>null</code> otherwise.
+         */
+        private TokenType type;
+
+        /**
+         * Gets the child for the given character.
+         *
+         * @param c
+         *            the character
+         * @return the child for the given character if any, <code>null</code> otherwise
+         */
+        private Node getChild(char c) {
+            Node res = null;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    res = children[i];
+                    break;
+                }
+            }
+
+            return res;
+        }
+
+        /**
+         * Gets or creates the child for the given character.
+         *
+         * @param c
+         *            the character
+         * @return the child for the given character
+         */
+        private Node getOrCreateChild(char c) {
+            Node res = getChild(c);
+
+            if (res == null) {
+                res = new Node();
+                final int length = keys.length;
+                final char[] newKeys = new char[length + 1];
+                final Node[] newChildren = new Node[length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, length);
+                System.arraycopy(children, 0, newChildren, 0, length);
+                newKeys[length] = c;
+                newChildren[length] = res;
+                keys = newKeys;
+                children = newChildren;
+            }
+
+            return res;
+        }
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param types
+     *            the {@link TokenType} to recognize
+     */
+    TokenTypeTrie(TokenType... types) {
+        for (TokenType type : types) {
+            final String keyword = type.getValue();
+            Node current = root;
+            for (int i = 0; i < keyword.length(); i++) {
+                current = current.getOrCreateChild(keyword.charAt(i));
+            }
+            current.type = type;
+        }
+    }
+
+    /**
+     * Gets the {@link TokenType} of the longest keyword the given text starts with.
+     *
+     * @param text
+     *            the tag text
+     * @param defaultType
+     *            the {@link TokenType} to return if no keyword matches
+     * @return the {@link TokenType} of the longest keyword the given text starts with if any, the given default {@link TokenType}
+     *         otherwise
+     */
+    TokenType match(String text, TokenType defaultType) {
+        TokenType res = defaultType;
+
+        Node current = root;
+        for (int i = 0; i < text.length() && current != null; i++) {
+            current = current.getChild(text.charAt(i));
+            if (current != null && current.type != null) {
+                res = current.type;
+            }
+        }
+
+        return res;
+    }
+
+}
@@ -13,9 +13,12 @@ package org.obeonetwork.m2doc.provider;
 import java.util.List;
 import java.util.Map;
 
+import org.obeonetwork.m2doc.generator.GenerationContext;
+
 /**
  * {@link IDiagramProvider} instances are used to provide diagram's image file from any modeling tool or technology that porvides graphical
- * representations of models.
+ * representations of models. Provider instances are shared by all generations, the default size of a generated image is set in the
+ * {@link GenerationContext} with {@link #setImageSize(Map, String, int, int)}.
  * 
  * @author pguilet<pierre.guilet@obeo.fr>
  */
@@ -88,6 +91,46 @@ public abstract class AbstractDiagramProvider implements IProvider {
         this.height = height;
     }
 
+    /**
+     * Gets the {@link GenerationContext} of the given parameters.
+     * 
+     * @param parameters
+     *            the parameters passed to the provider
+     * @return the {@link GenerationContext} of the given parameters if any, <code>null</code> otherwise
+     */
+    protected static GenerationContext getGenerationContext(Map<String, Object> parameters) {
+        final GenerationContext res;
+
+        final Object context = parameters.get(ProviderConstants.GENERATION_CONTEXT_KEY);
+        if (context instanceof GenerationContext) {
+            res = (GenerationContext) context;
+        } else {
+            res = null;
+        }
+
+        return res;
+    }
+
+    /**
+     * Sets the default size of the given image in the {@link GenerationContext} of the given parameters. Nothing is recorded if the
+     * provider is called without {@link GenerationContext}.
+     * 
+     * @param parameters
+     *            the parameters passed to the provider
+     * @param imagePath
+     *            the image path returned by {@link #getRepresentationImagePath(Map)}
+     * @param imageWidth
+     *            the image width
+     * @param imageHeight
+     *            the image height
+     */
+    protected void setImageSize(Map<String, Object> parameters, String imagePath, int imageWidth, int imageHeight) {
+        final GenerationContext context = getGenerationContext(parameters);
+        if (context != null) {
+            context.setImageSize(imagePath, imageWidth, imageHeight);
+        }
+    }
+
     /**
      * Should be called after the document generation so that the implementer can cleanup temporary files.
      */
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.provider;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -32,6 +33,21 @@ public abstract class AbstractTableProvider implements IProvider {
      */
     public abstract List<MTable> getTables(Map<String, Object> parameters) throws ProviderException;
 
+    /**
+     * Provide the tables to insert in the word document one at a time. Each table is written before the next one is requested, and its
+     * {@link MTable#getRows() rows} are written as they are produced. This default implementation iterates over
+     * {@link #getTables(Map)}, providers producing very large tables should override it.
+     * 
+     * @param parameters
+     *            Map of arguments
+     * @return The {@link Iterator} over tables to insert, never <code>null</code>.
+     * @throws ProviderException
+     *             If something goes wrong during the computation of the tables.
+     */
+    public Iterator<? extends MTable> getTableIterator(Map<String, Object> parameters) throws ProviderException {
+        return getTables(parameters).iterator();
+    }
+
     /**
      * Interface that represents a table that can be inserted in a word document.
      * 
@@ -47,7 +63,9 @@ public abstract class AbstractTableProvider implements IProvider {
         Iterable<? extends MColumn> getColumns();
 
         /**
-         * Tha table rows.
+         * Tha table rows. The returned {@link Iterable} can produce rows lazily: it is iterated once when the table is inserted and each
+         * row is written before the next one is requested, so rows don't need to be retained. Rows produced lazily may be new instances
+         * on each iteration.
          * 
          * @return All the table rows.
          */
@@ -21,6 +21,11 @@ public interface ProviderConstants {
      * The key used in the map passed to {@link IProvider} to insert and retrieve the root object of the configuration model.
      */
     String CONF_ROOT_OBJECT_KEY = "confRootObject";
+    /**
+     * The key used in the map passed to {@link IProvider} to retrieve the
+     * {@link org.obeonetwork.m2doc.generator.GenerationContext GenerationContext} of the current generation.
+     */
+    String GENERATION_CONTEXT_KEY = "generationContext";
     /**
      * The key used in the map passed to {@link IProvider} to define the height the image should have. Value associated is of type int.
      */
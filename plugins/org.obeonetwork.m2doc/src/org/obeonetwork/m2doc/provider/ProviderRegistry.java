@@ -11,17 +11,17 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.provider;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * {@link ProviderRegistry} is used to register {@link IProvider} like {@link AbstractDiagramProvider}. All providers' instances are stored
  * in a map
  * with their class qualified name as key.
+ * Registrations are synchronized and lookups are lock free, so generations can run concurrently while providers are registered.
  * 
  * @author pguilet<pierre.guilet@obeo.fr>
  */
@@ -38,15 +38,15 @@ public final class ProviderRegistry {
      * The central map holding the providers. The key is the full qualified name of the provider and the value is the corresponding
      * instance.
      */
-    private Map<String, IProvider> registry = Maps.newHashMap();
+    private final Map<String, IProvider> registry = new ConcurrentHashMap<String, IProvider>();
 
     /**
      * Diagram providers.
      */
-    private List<IProvider> diagramProviders = Lists.newArrayList();
+    private final List<IProvider> diagramProviders = new CopyOnWriteArrayList<IProvider>();
 
     /** The table providers. */
-    private List<AbstractTableProvider> tableProviders = Lists.newArrayList();
+    private final List<AbstractTableProvider> tableProviders = new CopyOnWriteArrayList<AbstractTableProvider>();
 
     /**
      * Private constructor to prevent creation of other instances.
@@ -57,7 +57,7 @@ public final class ProviderRegistry {
     /**
      * Clears the registry by removing all the registered services.
      */
-    public void clear() {
+    public synchronized void clear() {
         this.registry.clear();
         this.diagramProviders.clear();
         this.tableProviders.clear();
@@ -69,7 +69,7 @@ public final class ProviderRegistry {
      * @param provider
      *            the provider to register.
      */
-    public void registerProvider(IProvider provider) {
+    public synchronized void registerProvider(IProvider provider) {
         String classQualifiedName = provider.getClass().getName();
         if (!containsProvider(provider)) {
             registry.put(classQualifiedName, provider);
@@ -103,7 +103,7 @@ public final class ProviderRegistry {
      *            the provider to remove from the registered provider.
      * @return true if such element exists and has been removed. False otherwise.
      */
-    public boolean removeProvider(IProvider provider) {
+    public synchronized boolean removeProvider(IProvider provider) {
         String classQualifiedName = provider.getClass().getName();
         IProvider providerToRemove = registry.get(classQualifiedName);
         if (providerToRemove != null) {
@@ -11,20 +11,22 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.services;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * {@link ServiceRegistry} is used to register AQL services. When launching a
  * generation, a set of services are drawn from the registry. Registring
  * services may have a side effect on other m2doc integration. The registry is
  * thus a map from tokens to service's lists so as to avoid service conflicts
- * between two applications of the document generation.
+ * between two applications of the document generation. The registry can be
+ * used by concurrent generations.
  * 
  * @author Romain Guider
  */
@@ -40,7 +42,7 @@ public final class ServiceRegistry {
     /**
      * The central map holding the services.
      */
-    private Map<String, List<Class<?>>> registry = Maps.newLinkedHashMap();
+    private final Map<String, List<Class<?>>> registry = Maps.newLinkedHashMap();
 
     /**
      * Private constructor to prevent creation of other instances.
@@ -57,10 +59,10 @@ public final class ServiceRegistry {
      * @param token
      *            the token under which services must be stored.
      */
-    public void registerServicePackage(Class<?> servicePackage, String token) {
+    public synchronized void registerServicePackage(Class<?> servicePackage, String token) {
         List<Class<?>> services = registry.get(token);
         if (services == null) {
-            services = Lists.newArrayList();
+            services = new CopyOnWriteArrayList<Class<?>>();
             registry.put(token, services);
         }
         services.add(servicePackage);
@@ -76,7 +78,7 @@ public final class ServiceRegistry {
      * @return <code>true</code> if the service was actually present under the
      *         specified token in the registry, <code>false</code> otherwise.
      */
-    public boolean remove(Class<?> servicePackage, String token) {
+    public synchronized boolean remove(Class<?> servicePackage, String token) {
         List<Class<?>> services = registry.get(token);
         if (services == null) {
             return false;
@@ -93,7 +95,7 @@ public final class ServiceRegistry {
      * @return an unmodifiable version of the list of services registered under
      *         the specified token.
      */
-    public List<Class<?>> getServicePackages(String token) {
+    public synchronized List<Class<?>> getServicePackages(String token) {
         List<Class<?>> result = registry.get(token);
         if (result == null) {
             result = Collections.emptyList();
@@ -106,17 +108,17 @@ public final class ServiceRegistry {
     /**
      * Clears the registry by removing all the registered services.
      */
-    public void clear() {
+    public synchronized void clear() {
         this.registry.clear();
     }
 
     /**
      * Gets the {@link Set} of {@link ServiceRegistry#registerServicePackage(Class, String) registered} service tokens.
      * 
-     * @return the {@link Set} of {@link ServiceRegistry#registerServicePackage(Class, String) registered} service tokens
+     * @return a copy of the {@link Set} of {@link ServiceRegistry#registerServicePackage(Class, String) registered} service tokens
      */
-    public Set<String> getRegisteredTokens() {
-        return registry.keySet();
+    public synchronized Set<String> getRegisteredTokens() {
+        return ImmutableSet.copyOf(registry.keySet());
     }
 
 }
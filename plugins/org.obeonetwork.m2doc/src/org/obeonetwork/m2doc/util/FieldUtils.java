@@ -11,12 +11,9 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.util;
 
-import java.util.List;
-
 import org.apache.poi.xwpf.usermodel.XWPFRun;
-import org.obeonetwork.m2doc.parser.TokenProvider;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTFldChar;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
 
 /**
@@ -27,98 +24,6 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
  */
 public class FieldUtils {
 
-    /**
-     * read up a tag looking ahead the runs so that a prediction can be made
-     * over the nature of a field.
-     * <p>
-     * Using such a method is mandatory because for some reasons fields like
-     * {m:if ...} can be broken up in an unexpected number of runs thus
-     * precluding the tag nature prediction based on the first run only.
-     * </p>
-     * 
-     * @param runIterator
-     *            run iterator
-     * @return the complete text of the current field.
-     */
-    public String lookAheadTag(final TokenProvider runIterator) {
-        int i = 1;
-        // first run must begin a field.
-        XWPFRun run = runIterator.lookAhead(i).getRun();
-        if (run == null) {
-            throw new IllegalStateException("lookAheadTag shouldn't be called on a table.");
-        }
-        if (isFieldBegin(run)) {
-            StringBuilder builder = new StringBuilder();
-            i++;
-            run = runIterator.lookAhead(i).getRun();
-            // run is null when EOF is reached or a table is encountered.
-            while (run != null && !isFieldEnd(run)) {
-                builder.append(readUpInstrText(run));
-                run = runIterator.lookAhead(++i).getRun();
-            }
-            return builder.toString().trim();
-        } else {
-            return "";
-        }
-    }
-
-    /**
-     * Extract tag string (word field) from runs list.
-     * The tag must begin at the first run, return empty sting if not.
-     * 
-     * @param runs
-     *            list of run where find tag
-     * @return tag string
-     */
-    public String lookAheadTag(final List<XWPFRun> runs) {
-        int i = 0;
-        XWPFRun run = runs.get(i);
-        if (run != null) {
-            if (isFieldBegin(run)) {
-                StringBuilder builder = new StringBuilder();
-                i++;
-                run = runs.get(i);
-                // run is null when EOF is reached or a table is encountered.
-                while (run != null && !isFieldEnd(run)) {
-                    builder.append(readUpInstrText(run));
-                    run = runs.get(++i);
-                }
-                return builder.toString().trim();
-            }
-        }
-        return "";
-    }
-
-    /**
-     * Extract tag string (word field) from runs list.
-     * The tag must begin at the first run, return empty sting if not.
-     * 
-     * @param runs
-     *            list of run where find tag
-     * @param index
-     *            run index in iterator
-     * @return tag string
-     */
-    public String lookAheadTag(List<XWPFRun> runs, int index) {
-        int i = index;
-        // first run must begin a field.
-        XWPFRun run = runs.get(i);
-        if (run != null) {
-            if (isFieldBegin(run)) {
-                StringBuilder builder = new StringBuilder();
-                i++;
-                run = runs.get(i);
-                // run is null when EOF is reached or a table is encountered.
-                while (run != null && !isFieldEnd(run)) {
-                    builder.append(readUpInstrText(run));
-                    run = runs.get(++i);
-                }
-                return builder.toString().trim();
-            }
-        }
-        return "";
-    }
-
     /**
      * Returns <code>true</code> when the specified run is a field begin run and <code>false</code> otherwise.
      * 
@@ -127,8 +32,8 @@ public class FieldUtils {
      * @return <code>true</code> for field begin.
      */
     public boolean isFieldBegin(XWPFRun run) {
-        if (run.getCTR().getFldCharList().size() > 0) {
-            CTFldChar fldChar = run.getCTR().getFldCharList().get(0);
+        if (run.getCTR().sizeOfFldCharArray() > 0) {
+            CTFldChar fldChar = run.getCTR().getFldCharArray(0);
             return STFldCharType.BEGIN.equals(fldChar.getFldCharType());
         } else {
             return false;
@@ -144,8 +49,8 @@ public class FieldUtils {
      */
 
     public boolean isFieldEnd(XWPFRun run) {
-        if (run.getCTR().getFldCharList().size() > 0) {
-            CTFldChar fldChar = run.getCTR().getFldCharList().get(0);
+        if (run.getCTR().sizeOfFldCharArray() > 0) {
+            CTFldChar fldChar = run.getCTR().getFldCharArray(0);
             return STFldCharType.END.equals(fldChar.getFldCharType());
         } else {
             return false;
@@ -160,10 +65,11 @@ public class FieldUtils {
      * @return the aggregated instruction text of the run
      */
     public static StringBuilder readUpInstrText(XWPFRun run) {
-        List<CTText> texts = run.getCTR().getInstrTextList();
+        final CTR ctr = run.getCTR();
+        final int size = ctr.sizeOfInstrTextArray();
         StringBuilder runBuilder = new StringBuilder();
-        for (CTText text : texts) {
-            runBuilder.append(text.getStringValue());
+        for (int i = 0; i < size; i++) {
+            runBuilder.append(ctr.getInstrTextArray(i).getStringValue());
         }
         return runBuilder;
     }
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFooter;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.obeonetwork.m2doc.api.POIServices;
+import org.obeonetwork.m2doc.parser.ParsingToken;
+import org.obeonetwork.m2doc.parser.TokenIterator;
+import org.obeonetwork.m2doc.properties.TemplateCustomProperties;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+
+/**
+ * Content hashing tools, used to detect content changes.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public final class HashUtils {
+
+    /**
+     * The read buffer size.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Constructor.
+     */
+    private HashUtils() {
+        // nothing to do here
+    }
+
+    /**
+     * Hashes the content at the given {@link URI}.
+     *
+     * @param uri
+     *            the {@link URI}
+     * @return the hash of the content at the given {@link URI} if it exists, <code>null</code> otherwise
+     * @throws IOException
+     *             if the content can't be read
+     */
+    public static String hash(URI uri) throws IOException {
+        final String res;
+
+        if (URIConverter.INSTANCE.exists(uri, Collections.EMPTY_MAP)) {
+            try (InputStream is = URIConverter.INSTANCE.createInputStream(uri)) {
+                res = hash(is);
+            }
+        } else {
+            res = null;
+        }
+
+        return res;
+    }
+
+    /**
+     * Hashes the remaining content of the given {@link InputStream}. The {@link InputStream} is not closed.
+     *
+     * @param is
+     *            the {@link InputStream}
+     * @return the hash of the remaining content of the given {@link InputStream}
+     * @throws IOException
+     *             if the {@link InputStream} can't be read
+     */
+    public static String hash(InputStream is) throws IOException {
+        final Hasher hasher = Hashing.sha1().newHasher();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read = is.read(buffer);
+        while (read != -1) {
+            hasher.putBytes(buffer, 0, read);
+            read = is.read(buffer);
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Hashes what parsing and validating the template at the given {@link URI} depend on: its declared variables, packages and services,
+     * the field characters and instruction texts of its runs and the structure of its tables. Static text and styles are not hashed, so
+     * editing them doesn't change the hash.
+     *
+     * @param templateURI
+     *            the template {@link URI}
+     * @return the hash of the M2Doc constructs of the template at the given {@link URI}
+     * @throws IOException
+     *             if the template can't be read
+     */
+    public static String hashTemplateConstructs(URI templateURI) throws IOException {
+        final Hasher hasher = Hashing.sha1().newHasher();
+
+        try (XWPFDocument document = POIServices.getInstance().getXWPFDocument(templateURI)) {
+            final TemplateCustomProperties properties = new TemplateCustomProperties(document);
+            hasher.putString(properties.getVariables().toString(), Charsets.UTF_8);
+            hasher.putString(properties.getPackagesURIs().toString(), Charsets.UTF_8);
+            hasher.putString(properties.getServiceTokens().toString(), Charsets.UTF_8);
+            hasher.putString(properties.getServiceClasses().toString(), Charsets.UTF_8);
+            for (XWPFHeader header : document.getHeaderList()) {
+                hasher.putChar('h');
+                putConstructs(hasher, header);
+            }
+            hasher.putChar('b');
+            putConstructs(hasher, document);
+            for (XWPFFooter footer : document.getFooterList()) {
+                hasher.putChar('f');
+                putConstructs(hasher, footer);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Puts the M2Doc constructs of the given {@link IBody} in the given {@link Hasher}. Tokens are read the same way the parser reads
+     * them.
+     *
+     * @param hasher
+     *            the {@link Hasher}
+     * @param body
+     *            the {@link IBody}
+     */
+    private static void putConstructs(Hasher hasher, IBody body) {
+        final TokenIterator it = new TokenIterator(body);
+        while (it.hasNext()) {
+            final ParsingToken token = it.next();
+            if (token.getRun() != null) {
+                final CTR ctr = token.getRun().getCTR();
+                for (int i = 0; i < ctr.sizeOfFldCharArray(); i++) {
+                    hasher.putInt(ctr.getFldCharArray(i).getFldCharType().intValue());
+                }
+                for (int i = 0; i < ctr.sizeOfInstrTextArray(); i++) {
+                    hasher.putString(ctr.getInstrTextArray(i).getStringValue(), Charsets.UTF_8);
+                }
+            } else {
+                hasher.putChar('t');
+                for (XWPFTableRow row : token.getTable().getRows()) {
+                    hasher.putChar('r');
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        hasher.putChar('c');
+                        putConstructs(hasher, cell);
+                    }
+                }
+                hasher.putChar('/');
+            }
+        }
+    }
+
+}
@@ -11,16 +11,20 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.util;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.xwpf.usermodel.IRunBody;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFFooter;
@@ -29,7 +33,10 @@ import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
 import org.eclipse.acceleo.query.runtime.IReadOnlyQueryEnvironment;
+import org.eclipse.emf.common.CommonPlugin;
+import org.eclipse.emf.common.util.BasicMonitor;
 import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.common.util.Monitor;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -41,8 +48,11 @@ import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.obeonetwork.m2doc.api.AQL4Compat;
 import org.obeonetwork.m2doc.api.POIServices;
+import org.obeonetwork.m2doc.api.ZipCompression;
 import org.obeonetwork.m2doc.generator.BookmarkManager;
 import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
+import org.obeonetwork.m2doc.generator.GenerationContext;
 import org.obeonetwork.m2doc.generator.GenerationResult;
 import org.obeonetwork.m2doc.generator.TemplateProcessor;
 import org.obeonetwork.m2doc.generator.TemplateValidationGenerator;
@@ -89,6 +99,11 @@ public final class M2DocUtils {
      */
     public static final String DOCX_EXTENSION_FILE = "docx";
 
+    /**
+     * The I/O problem message.
+     */
+    private static final String IO_PROBLEM_MESSAGE = "An I/O problem occured while creating the output document.";
+
     /**
      * Constructor.
      */
@@ -289,7 +304,8 @@ public final class M2DocUtils {
 
     /**
      * Parses a template document and returns the {@link DocumentTemplate} resulting from
-     * this parsing.
+     * this parsing. Templates backed by a local file are opened with random access to the zip file, so media are not loaded on the heap
+     * until they are read.
      * 
      * @param templateURI
      *            URI for the template, used when external links (images, includes) have to be resolved
@@ -310,8 +326,7 @@ public final class M2DocUtils {
 
         try {
             // resources are closed in DocumentTemplate.close()
-            final InputStream is = URIConverter.INSTANCE.createInputStream(templateURI);
-            final OPCPackage oPackage = OPCPackage.open(is);
+            final OPCPackage oPackage = openTemplatePackage(templateURI, PackageAccess.READ);
             final XWPFDocument document = new XWPFDocument(oPackage);
             final List<TemplateValidationMessage> messages = parseTemplateInfo(queryEnvironment, classLoader, document);
             r.getContents().add(result);
@@ -321,7 +336,6 @@ public final class M2DocUtils {
                 documentBody.getValidationMessages().add(validationMessage);
             }
             result.setBody(documentBody);
-            result.setInputStream(is);
             result.setOpcPackage(oPackage);
             result.setDocument(document);
             for (XWPFFooter footer : document.getFooterList()) {
@@ -342,6 +356,58 @@ public final class M2DocUtils {
         return result;
     }
 
+    /**
+     * Opens the {@link OPCPackage} of the given template {@link URI}. A template backed by a local file is opened with the given
+     * {@link PackageAccess} and random access to the zip file. Other templates are read from their {@link URIConverter} stream. A
+     * package opened with {@link PackageAccess#READ_WRITE} must be {@link OPCPackage#revert() reverted}, closing it would save it back
+     * to the template.
+     * 
+     * @param templateURI
+     *            the template {@link URI}
+     * @param access
+     *            the {@link PackageAccess} of a template backed by a local file
+     * @return the opened {@link OPCPackage}
+     * @throws IOException
+     *             if the template can't be read
+     * @throws InvalidFormatException
+     *             if the template is not a valid package
+     */
+    private static OPCPackage openTemplatePackage(URI templateURI, PackageAccess access)
+            throws IOException, InvalidFormatException {
+        final OPCPackage res;
+
+        final File templateFile = getLocalFile(templateURI);
+        if (templateFile != null) {
+            res = OPCPackage.open(templateFile, access);
+        } else {
+            try (InputStream is = URIConverter.INSTANCE.createInputStream(templateURI)) {
+                res = OPCPackage.open(is);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Gets the local {@link File} of the given {@link URI}.
+     * 
+     * @param uri
+     *            the {@link URI}
+     * @return the local {@link File} of the given {@link URI} if any, <code>null</code> otherwise
+     */
+    private static File getLocalFile(URI uri) {
+        final File res;
+
+        final URI localURI = CommonPlugin.asLocalURI(uri);
+        if (localURI.isFile() && new File(localURI.toFileString()).isFile()) {
+            res = new File(localURI.toFileString());
+        } else {
+            res = null;
+        }
+
+        return res;
+    }
+
     /**
      * Parses {@link TemplateCustomProperties} for the given {@link XWPFDocument} and initializes the given {@link IQueryEnvironment}.
      * 
@@ -370,9 +436,7 @@ public final class M2DocUtils {
         }
         for (String token : properties.getServiceTokens()) {
             List<Class<?>> services = ServiceRegistry.INSTANCE.getServicePackages(token);
-            for (Class<?> cls : services) {
-                AQL4Compat.register(queryEnvironment, cls);
-            }
+            AQL4Compat.register(queryEnvironment, services);
         }
         for (String serviceClass : properties.getServiceClasses()) {
             try {
@@ -401,15 +465,39 @@ public final class M2DocUtils {
      * @throws DocumentParserException
      *             if a problem occurs while parsing the document.
      */
-    @SuppressWarnings("resource")
     public static DocumentTemplate parseUserContent(URI documentURI, IQueryEnvironment queryEnvironment)
             throws DocumentParserException {
+        try {
+            // resources are closed in DocumentTemplate.close()
+            return parseUserContent(URIConverter.INSTANCE.createInputStream(documentURI), documentURI, queryEnvironment);
+        } catch (IOException e) {
+            throw new DocumentParserException("Unable to open " + documentURI, e);
+        }
+    }
+
+    /**
+     * Parses a document for {@link UserContent} and returns the {@link DocumentTemplate} resulting from
+     * this parsing. The given {@link InputStream} is closed when the returned {@link DocumentTemplate} is closed.
+     * 
+     * @param is
+     *            the document {@link InputStream}
+     * @param documentURI
+     *            URI for the document if any, <code>null</code> otherwise
+     * @param queryEnvironment
+     *            the {@link IQueryEnvironment}
+     * @return the {@link DocumentTemplate} resulting from parsing the specified
+     *         document
+     * @throws DocumentParserException
+     *             if a problem occurs while parsing the document.
+     */
+    @SuppressWarnings("resource")
+    public static DocumentTemplate parseUserContent(InputStream is, URI documentURI,
+            IQueryEnvironment queryEnvironment) throws DocumentParserException {
         final DocumentTemplate result = (DocumentTemplate) EcoreUtil.create(TemplatePackage.Literals.DOCUMENT_TEMPLATE);
         final ResourceImpl r = new ResourceImpl(documentURI);
 
         try {
             // resources are closed in DocumentTemplate.close()
-            final InputStream is = URIConverter.INSTANCE.createInputStream(documentURI);
             final OPCPackage oPackage = OPCPackage.open(is);
             final XWPFDocument document = new XWPFDocument(oPackage);
             r.getContents().add(result);
@@ -451,6 +539,25 @@ public final class M2DocUtils {
         return validator.validate(documentTemplate, queryEnvironment);
     }
 
+    /**
+     * Validates the given {@link DocumentTemplate} with the given {@link IReadOnlyQueryEnvironment} and variables types. Independent parts
+     * of the template are validated in parallel using the given {@link ForkJoinPool}, the given {@link IReadOnlyQueryEnvironment} must
+     * support concurrent validations.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param pool
+     *            the {@link ForkJoinPool} to use
+     * @return the {@link ValidationMessageLevel}
+     */
+    public static ValidationMessageLevel validate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, ForkJoinPool pool) {
+        final TemplateValidator validator = new TemplateValidator(pool);
+        return validator.validate(documentTemplate, queryEnvironment);
+    }
+
     /**
      * Serializes the given {@link M2DocUtils#validate(DocumentTemplate, IReadOnlyQueryEnvironment, Map) validated} {@link DocumentTemplate}
      * to the given destination.
@@ -467,7 +574,23 @@ public final class M2DocUtils {
         TemplateValidationGenerator generator = new TemplateValidationGenerator();
 
         generator.doSwitch(documentTemplate);
-        POIServices.getInstance().saveFile(documentTemplate.getDocument(), destination);
+        final XWPFDocument document = documentTemplate.getDocument();
+        if (document.getPackage().getPackageAccess() == PackageAccess.READ) {
+            // a read only package can't be saved: copy the validated document, headers and footers into a writable package
+            try (InputStream is = URIConverter.INSTANCE.createInputStream(documentTemplate.eResource().getURI());
+                    XWPFDocument copy = new XWPFDocument(is)) {
+                copy.getDocument().set(document.getDocument());
+                for (int i = 0; i < document.getHeaderList().size(); i++) {
+                    copy.getHeaderList().get(i)._getHdrFtr().set(document.getHeaderList().get(i)._getHdrFtr());
+                }
+                for (int i = 0; i < document.getFooterList().size(); i++) {
+                    copy.getFooterList().get(i)._getHdrFtr().set(document.getFooterList().get(i)._getHdrFtr());
+                }
+                POIServices.getInstance().saveFile(copy, destination);
+            }
+        } else {
+            POIServices.getInstance().saveFile(document, destination);
+        }
     }
 
     /**
@@ -488,24 +611,299 @@ public final class M2DocUtils {
     public static GenerationResult generate(DocumentTemplate documentTemplate,
             IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, URI destination)
             throws DocumentGenerationException {
+        return generate(documentTemplate, queryEnvironment, variables, destination, new BasicMonitor());
+    }
 
-        try (InputStream is = URIConverter.INSTANCE.createInputStream(documentTemplate.eResource().getURI());
-                OPCPackage oPackage = OPCPackage.open(is);
-                XWPFDocument destinationDocument = new XWPFDocument(oPackage);) {
-            // clear the document
-            int size = destinationDocument.getBodyElements().size();
-            for (int i = 0; i < size; i++) {
-                destinationDocument.removeBodyElement(0);
-            }
+    /**
+     * Generates the given template into the given destination. The given {@link Monitor} is notified of one unit of work per generated
+     * construct and per repetition iteration, the caller is responsible for {@link Monitor#beginTask(String, int) beginning} and
+     * {@link Monitor#done() ending} the task. If the {@link Monitor} is {@link Monitor#isCanceled() canceled} the generation stops
+     * between two constructs and nothing is written to the destination.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination
+     * @param monitor
+     *            the {@link Monitor}
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, URI destination,
+            Monitor monitor) throws DocumentGenerationException {
+        return generate(documentTemplate, queryEnvironment, variables, destination, monitor, new GenerationBudget());
+    }
+
+    /**
+     * Generates the given template into the given destination within the given {@link GenerationBudget}. The given {@link Monitor} is
+     * used as in {@link #generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, URI, Monitor)}. If the {@link GenerationBudget} is
+     * exceeded the generation stops, the partial document is written to the destination with an error message at its end, and the
+     * returned {@link GenerationResult} is {@link GenerationResult#isAborted() aborted}.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, URI destination,
+            Monitor monitor, GenerationBudget budget) throws DocumentGenerationException {
+        return generate(documentTemplate, queryEnvironment, variables, destination, monitor, budget, new ZipCompression());
+    }
 
-            final BookmarkManager bookmarkManager = new BookmarkManager();
+    /**
+     * Generates the given template into the given destination within the given {@link GenerationBudget} and saves it with the given
+     * {@link ZipCompression}. The given {@link Monitor} and {@link GenerationBudget} are used as in
+     * {@link #generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, URI, Monitor, GenerationBudget)}.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @param compression
+     *            the {@link ZipCompression} of the generated document
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    // CHECKSTYLE:OFF
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, URI destination,
+            Monitor monitor, GenerationBudget budget, ZipCompression compression) throws DocumentGenerationException {
+        // CHECKSTYLE:ON
+        try {
             final UserContentManager userContentManager = new UserContentManager(documentTemplate, destination);
-            final TemplateProcessor processor = new TemplateProcessor(bookmarkManager, userContentManager,
-                    queryEnvironment);
+            return generate(documentTemplate, queryEnvironment, variables, userContentManager, null, monitor, budget,
+                    compression);
+        } catch (IOException e) {
+            throw new DocumentGenerationException(IO_PROBLEM_MESSAGE, e);
+        }
+    }
+
+    /**
+     * Generates the given template into the given {@link OutputStream}. A {@link java.nio.channels.WritableByteChannel
+     * WritableByteChannel} can be used through {@link java.nio.channels.Channels#newOutputStream(java.nio.channels.WritableByteChannel)
+     * Channels.newOutputStream()}. The given {@link OutputStream} is not closed.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination {@link OutputStream}
+     * @param previousOutput
+     *            the {@link InputStream} of the previously generated document to read {@link UserContent} from if any,
+     *            <code>null</code> otherwise. It is closed by this method. Lost {@link UserContent} are reported in the
+     *            {@link GenerationResult} but not saved
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails
+     */
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, OutputStream destination,
+            InputStream previousOutput) throws DocumentGenerationException {
+        return generate(documentTemplate, queryEnvironment, variables, destination, previousOutput, new BasicMonitor(),
+                new GenerationBudget());
+    }
+
+    /**
+     * Generates the given template into the given {@link OutputStream} within the given {@link GenerationBudget}. The given
+     * {@link Monitor} and {@link GenerationBudget} are used as in
+     * {@link #generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, URI, Monitor, GenerationBudget)}, and the given streams as in
+     * {@link #generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, OutputStream, InputStream)}.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination {@link OutputStream}
+     * @param previousOutput
+     *            the {@link InputStream} of the previously generated document if any, <code>null</code> otherwise
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    // CHECKSTYLE:OFF
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, OutputStream destination,
+            InputStream previousOutput, Monitor monitor, GenerationBudget budget) throws DocumentGenerationException {
+        // CHECKSTYLE:ON
+        return generate(documentTemplate, queryEnvironment, variables, destination, previousOutput, monitor, budget,
+                new ZipCompression());
+    }
+
+    /**
+     * Generates the given template into the given {@link OutputStream} within the given {@link GenerationBudget} and saves it with the
+     * given {@link ZipCompression}. Other parameters are used as in
+     * {@link #generate(DocumentTemplate, IReadOnlyQueryEnvironment, Map, OutputStream, InputStream, Monitor, GenerationBudget)}.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param destination
+     *            the destination {@link OutputStream}
+     * @param previousOutput
+     *            the {@link InputStream} of the previously generated document if any, <code>null</code> otherwise
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @param compression
+     *            the {@link ZipCompression} of the generated document
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    // CHECKSTYLE:OFF
+    public static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables, OutputStream destination,
+            InputStream previousOutput, Monitor monitor, GenerationBudget budget, ZipCompression compression)
+            throws DocumentGenerationException {
+        // CHECKSTYLE:ON
+        final UserContentManager userContentManager = new UserContentManager(documentTemplate, previousOutput);
+        return generate(documentTemplate, queryEnvironment, variables, userContentManager, destination, monitor, budget,
+                compression);
+    }
+
+    /**
+     * Generates the given template into the given {@link OutputStream}, or into the {@link UserContentManager#getDestination()
+     * destination} of the given {@link UserContentManager} if the {@link OutputStream} is <code>null</code>.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param userContentManager
+     *            the {@link UserContentManager}
+     * @param destination
+     *            the destination {@link OutputStream} if any, <code>null</code> otherwise
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @param compression
+     *            the {@link ZipCompression} of the generated document
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    // CHECKSTYLE:OFF
+    @SuppressWarnings("resource")
+    private static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables,
+            UserContentManager userContentManager, OutputStream destination, Monitor monitor, GenerationBudget budget,
+            ZipCompression compression) throws DocumentGenerationException {
+        // CHECKSTYLE:ON
+        try {
+            // a read only package can't be saved and closing a writable one would save it back to the template: revert it
+            final OPCPackage oPackage = openTemplatePackage(documentTemplate.eResource().getURI(), PackageAccess.READ_WRITE);
+            try {
+                return generate(documentTemplate, queryEnvironment, variables, userContentManager, destination, monitor,
+                        budget, compression, new XWPFDocument(oPackage));
+            } finally {
+                oPackage.revert();
+            }
+        } catch (IOException e) {
+            throw new DocumentGenerationException(IO_PROBLEM_MESSAGE, e);
+        } catch (InvalidFormatException e) {
+            throw new DocumentGenerationException("Input document seems to have an invalid format.", e);
+        }
+    }
 
+    /**
+     * Generates the given template into the given destination {@link XWPFDocument} and saves it.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @param queryEnvironment
+     *            the {@link IReadOnlyQueryEnvironment}
+     * @param variables
+     *            variables
+     * @param userContentManager
+     *            the {@link UserContentManager}
+     * @param destination
+     *            the destination {@link OutputStream} if any, <code>null</code> otherwise
+     * @param monitor
+     *            the {@link Monitor}
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @param compression
+     *            the {@link ZipCompression} of the generated document
+     * @param destinationDocument
+     *            the destination {@link XWPFDocument} opened from the template
+     * @return the {@link GenerationResult}
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     * @throws IOException
+     *             if the generated document can't be saved
+     */
+    // CHECKSTYLE:OFF
+    private static GenerationResult generate(DocumentTemplate documentTemplate,
+            IReadOnlyQueryEnvironment queryEnvironment, Map<String, Object> variables,
+            UserContentManager userContentManager, OutputStream destination, Monitor monitor, GenerationBudget budget,
+            ZipCompression compression, XWPFDocument destinationDocument) throws DocumentGenerationException, IOException {
+        // CHECKSTYLE:ON
+        // clear the document
+        int size = destinationDocument.getBodyElements().size();
+        for (int i = 0; i < size; i++) {
+            destinationDocument.removeBodyElement(0);
+        }
+
+        final BookmarkManager bookmarkManager = new BookmarkManager(destinationDocument);
+        final TemplateProcessor processor = new TemplateProcessor(bookmarkManager, userContentManager,
+                queryEnvironment, new GenerationContext(monitor, budget));
+        try {
             final GenerationResult result = processor.generate(documentTemplate, variables, destinationDocument);
+            if (monitor.isCanceled()) {
+                userContentManager.dispose();
+                throw new DocumentGenerationException("The generation has been canceled.");
+            }
+            if (result.isAborted()) {
+                appendMessageRun(destinationDocument.createParagraph(), ValidationMessageLevel.ERROR,
+                        result.getAbortMessage());
+            }
 
-            if (bookmarkManager.markDanglingReferences()) {
+            // second pass: resolve references now that all bookmarks are known
+            if (bookmarkManager.resolveReferences()) {
                 result.updateLevel(ValidationMessageLevel.ERROR);
             }
             if (bookmarkManager.markOpenBookmarks()) {
@@ -517,15 +915,16 @@ public final class M2DocUtils {
 
             // At this point, the document has been generated and just needs being
             // written on disk.
-            POIServices.getInstance().saveFile(destinationDocument, destination);
-
-            processor.clear();
+            if (destination != null) {
+                POIServices.getInstance().saveFile(destinationDocument, destination, compression);
+            } else {
+                POIServices.getInstance().saveFile(destinationDocument, userContentManager.getDestination(),
+                        compression);
+            }
 
             return result;
-        } catch (IOException e) {
-            throw new DocumentGenerationException("An I/O problem occured while creating the output document.", e);
-        } catch (InvalidFormatException e) {
-            throw new DocumentGenerationException("Input document seems to have an invalid format.", e);
+        } finally {
+            processor.clear();
         }
     }
 
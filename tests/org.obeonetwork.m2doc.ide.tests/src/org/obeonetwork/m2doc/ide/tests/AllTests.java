@@ -15,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.obeonetwork.m2doc.ide.tests.provider.DeclaredProviderListenerTest;
+import org.obeonetwork.m2doc.ide.tests.validation.TemplateValidationListenerTest;
 
 /**
  * Aggregates tests for the org.obeonetwork.m2doc.ide plug-in.
@@ -22,7 +23,7 @@ import org.obeonetwork.m2doc.ide.tests.provider.DeclaredProviderListenerTest;
  * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
  */
 @RunWith(Suite.class)
-@SuiteClasses(value = {DeclaredProviderListenerTest.class, BundleTests.class,})
+@SuiteClasses(value = {DeclaredProviderListenerTest.class, BundleTests.class, TemplateValidationListenerTest.class,})
 public class AllTests {
 
 }
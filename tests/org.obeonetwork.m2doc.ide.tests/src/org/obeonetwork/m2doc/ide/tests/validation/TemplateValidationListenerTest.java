@@ -0,0 +1,162 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.ide.tests.validation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.genconf.GenconfFactory;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.ide.M2DocPlugin;
+import org.obeonetwork.m2doc.ide.validation.TemplateValidationListener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TemplateValidationListener}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class TemplateValidationListenerTest {
+
+    /**
+     * A template with validation messages.
+     */
+    private static final String INVALID_TEMPLATE = "resources/conditional/conditionNotBoolean/conditionNotBoolean-template.docx";
+
+    /**
+     * The test project.
+     */
+    private IProject project;
+
+    @Before
+    public void setUp() throws CoreException {
+        // Make sure the plug-in is loaded
+        M2DocPlugin.getPlugin();
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("templateValidation");
+        project.create(null);
+        project.open(null);
+    }
+
+    @After
+    public void tearDown() throws CoreException {
+        project.delete(true, null);
+    }
+
+    @Test
+    public void templateMarkers() throws Exception {
+        final IFile template = copyTemplate("template.docx");
+        joinValidation();
+
+        assertTrue(getMarkerCount(template) > 0);
+    }
+
+    @Test
+    public void savedWithoutModification() throws Exception {
+        final IFile template = copyTemplate("template.docx");
+        joinValidation();
+        final int markerCount = getMarkerCount(template);
+
+        try (InputStream is = template.getContents()) {
+            template.setContents(is, true, false, null);
+        }
+        joinValidation();
+
+        assertEquals(markerCount, getMarkerCount(template));
+    }
+
+    @Test
+    public void generatedDocumentsNotValidated() throws Exception {
+        final Generation generation = GenconfFactory.eINSTANCE.createGeneration();
+        generation.setTemplateFileName("template.docx");
+        generation.setResultFileName("result.docx");
+        final Resource resource = new ResourceSetImpl().createResource(URI.createPlatformResourceURI(
+                project.getFile("test.genconf").getFullPath().toString(), true));
+        resource.getContents().add(generation);
+        resource.save(Collections.EMPTY_MAP);
+        joinValidation();
+
+        final IFile template = copyTemplate("template.docx");
+        final IFile result = copyTemplate("result.docx");
+        final IFile resultLog = copyTemplate("result-error.docx");
+        final IFile templateLog = copyTemplate("template-error.docx");
+        joinValidation();
+
+        assertTrue(getMarkerCount(template) > 0);
+        assertEquals(0, getMarkerCount(result));
+        assertEquals(0, getMarkerCount(resultLog));
+        assertEquals(0, getMarkerCount(templateLog));
+    }
+
+    /**
+     * Copies {@link #INVALID_TEMPLATE} to the given file of the test project.
+     *
+     * @param name
+     *            the file name
+     * @return the created {@link IFile}
+     * @throws IOException
+     *             if the template can't be read
+     * @throws CoreException
+     *             if the file can't be created
+     */
+    private IFile copyTemplate(String name) throws IOException, CoreException {
+        final IFile res = project.getFile(name);
+
+        try (InputStream is = FileLocator.openStream(Platform.getBundle("org.obeonetwork.m2doc.tests"),
+                new Path(INVALID_TEMPLATE), false)) {
+            res.create(is, true, null);
+        }
+
+        return res;
+    }
+
+    /**
+     * Waits for the end of the template validation.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private void joinValidation() throws InterruptedException {
+        Job.getJobManager().join(TemplateValidationListener.VALIDATION_JOB_FAMILY, null);
+    }
+
+    /**
+     * Gets the number of {@link TemplateValidationListener#MARKER_TYPE template markers} of the given {@link IFile}.
+     *
+     * @param file
+     *            the {@link IFile}
+     * @return the number of {@link TemplateValidationListener#MARKER_TYPE template markers} of the given {@link IFile}
+     * @throws CoreException
+     *             if markers can't be read
+     */
+    private int getMarkerCount(IFile file) throws CoreException {
+        return file.findMarkers(TemplateValidationListener.MARKER_TYPE, false, IResource.DEPTH_ZERO).length;
+    }
+
+}
@@ -22,7 +22,9 @@ import org.obeonetwork.m2doc.provider.AbstractTableProvider.MStyle;
 import org.obeonetwork.m2doc.sirius.providers.tables.DMTable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
@@ -96,6 +98,32 @@ public class DMTableTest {
         assertEquals(0, style.getFontModifiers() & MStyle.FONT_UNDERLINE);
     }
 
+    @Test
+    public void testRowIterator() {
+        Iterator<? extends MRow> rowIt = table.getRows().iterator();
+        assertEquals("Row One", rowIt.next().getLabel());
+        assertEquals("Row Two", rowIt.next().getLabel());
+        assertFalse(rowIt.hasNext());
+    }
+
+    @Test
+    public void testRowIteratorHiddenLine() {
+        dtable.getLines().get(0).setVisible(false);
+
+        Iterator<? extends MRow> rowIt = table.getRows().iterator();
+        assertEquals("Row Two", rowIt.next().getLabel());
+        assertFalse(rowIt.hasNext());
+    }
+
+    @Test
+    public void testRowsWrappedOnEachIteration() {
+        final MRow first = table.getRows().iterator().next();
+        final MRow second = table.getRows().iterator().next();
+
+        assertNotSame(first, second);
+        assertEquals(first.getLabel(), second.getLabel());
+    }
+
     @Before
     public void setUp() {
         dtable = TableFactory.eINSTANCE.createDTable();
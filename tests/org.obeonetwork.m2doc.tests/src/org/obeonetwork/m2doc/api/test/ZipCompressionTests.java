@@ -0,0 +1,192 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.api.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.api.POIServices;
+import org.obeonetwork.m2doc.api.ZipCompression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ZipCompression}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class ZipCompressionTests {
+
+    /**
+     * A document containing a GIF image.
+     */
+    private static final File IMAGE_DOCUMENT = new File("resources/static/image/image-template.docx");
+
+    /**
+     * The destination.
+     */
+    private File destination;
+
+    @Before
+    public void before() throws IOException {
+        destination = File.createTempFile("saved", ".docx");
+    }
+
+    @After
+    public void after() {
+        destination.delete();
+    }
+
+    @Test
+    public void defaultLevels() {
+        final ZipCompression compression = new ZipCompression();
+
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image1.png"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image1.PNG"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image2.jpg"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image3.jpeg"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image4.gif"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Document1.docx"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Document2.docm"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Sheet1.xlsx"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Sheet2.xlsm"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Slides1.pptx"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/embeddings/Slides2.pptm"));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, compression.getLevel("word/document.xml"));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, compression.getLevel("word/embeddings/oleObject1.bin"));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, compression.getLevel("_rels/.rels"));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, compression.getLevel("media.png/image"));
+    }
+
+    @Test
+    public void customLevels() {
+        final ZipCompression compression = new ZipCompression();
+        compression.setLevel("XML", Deflater.BEST_SPEED);
+        compression.setDefaultLevel(Deflater.BEST_COMPRESSION);
+
+        assertEquals(Deflater.BEST_SPEED, compression.getLevel("word/document.xml"));
+        assertEquals(Deflater.BEST_COMPRESSION, compression.getLevel("_rels/.rels"));
+        assertEquals(Deflater.NO_COMPRESSION, compression.getLevel("word/media/image1.png"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLevelInvalid() {
+        new ZipCompression().setLevel("xml", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setDefaultLevelInvalid() {
+        new ZipCompression().setDefaultLevel(-2);
+    }
+
+    @Test
+    public void isValidLevel() {
+        assertTrue(ZipCompression.isValidLevel(Deflater.DEFAULT_COMPRESSION));
+        assertTrue(ZipCompression.isValidLevel(Deflater.NO_COMPRESSION));
+        assertTrue(ZipCompression.isValidLevel(Deflater.BEST_COMPRESSION));
+        assertFalse(ZipCompression.isValidLevel(-2));
+        assertFalse(ZipCompression.isValidLevel(10));
+    }
+
+    @Test
+    public void saveFileImageNotCompressed() throws IOException {
+        final List<String> expectedTexts;
+        try (FileInputStream is = new FileInputStream(IMAGE_DOCUMENT); XWPFDocument document = new XWPFDocument(is)) {
+            expectedTexts = getTexts(document);
+            POIServices.getInstance().saveFile(document, URI.createFileURI(destination.getAbsolutePath()));
+        }
+
+        try (ZipFile zip = new ZipFile(destination)) {
+            final ZipEntry image = zip.getEntry("word/media/image1.gif");
+            assertTrue(image.getCompressedSize() >= image.getSize());
+            final ZipEntry body = zip.getEntry("word/document.xml");
+            assertTrue(body.getCompressedSize() < body.getSize());
+        }
+
+        // the saved document can be read back
+        try (FileInputStream is = new FileInputStream(destination); XWPFDocument document = new XWPFDocument(is)) {
+            assertEquals(expectedTexts, getTexts(document));
+            assertEquals(1, document.getAllPictures().size());
+        }
+    }
+
+    @Test
+    public void saveFileCustomCompression() throws IOException {
+        final ZipCompression compression = new ZipCompression();
+        compression.setDefaultLevel(Deflater.NO_COMPRESSION);
+        try (FileInputStream is = new FileInputStream(IMAGE_DOCUMENT); XWPFDocument document = new XWPFDocument(is)) {
+            POIServices.getInstance().saveFile(document, URI.createFileURI(destination.getAbsolutePath()), compression);
+        }
+
+        try (ZipFile zip = new ZipFile(destination)) {
+            final ZipEntry body = zip.getEntry("word/document.xml");
+            assertTrue(body.getCompressedSize() >= body.getSize());
+        }
+    }
+
+    @Test
+    public void saveFileEmbeddedDocumentNotCompressed() throws IOException, InvalidFormatException {
+        final byte[] embedded = Files.readAllBytes(IMAGE_DOCUMENT.toPath());
+        try (FileInputStream is = new FileInputStream(IMAGE_DOCUMENT); XWPFDocument document = new XWPFDocument(is)) {
+            final PackagePart part = document.getPackage().createPart(
+                    PackagingURIHelper.createPartName("/word/embeddings/Document1.docx"),
+                    "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+            try (OutputStream os = part.getOutputStream()) {
+                os.write(embedded);
+            }
+            POIServices.getInstance().saveFile(document, URI.createFileURI(destination.getAbsolutePath()));
+        }
+
+        try (ZipFile zip = new ZipFile(destination)) {
+            final ZipEntry entry = zip.getEntry("word/embeddings/Document1.docx");
+            assertEquals(embedded.length, entry.getSize());
+            assertTrue(entry.getCompressedSize() >= entry.getSize());
+        }
+    }
+
+    /**
+     * Gets the texts of the paragraphs of the given {@link XWPFDocument}.
+     *
+     * @param document
+     *            the {@link XWPFDocument}
+     * @return the texts of the paragraphs of the given {@link XWPFDocument}
+     */
+    private List<String> getTexts(XWPFDocument document) {
+        final List<String> res = new ArrayList<String>();
+
+        for (XWPFParagraph paragraph : document.getParagraphs()) {
+            res.add(paragraph.getText());
+        }
+
+        return res;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.genconf.test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.genconf.GenconfFactory;
+import org.obeonetwork.m2doc.genconf.GenconfToDocumentGenerator;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.genconf.util.GenerationManifest;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GenconfToDocumentGenerator} generations skipped when unchanged.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenconfToDocumentGeneratorTest {
+
+    /**
+     * The template.
+     */
+    private static final File TEMPLATE = new File("resources/static/table/table-template.docx");
+
+    /**
+     * The folder containing the genconf, the template and the generated document.
+     */
+    private File folder;
+
+    /**
+     * The {@link Generation}.
+     */
+    private Generation generation;
+
+    /**
+     * Creates the genconf model and copies the template.
+     *
+     * @throws IOException
+     *             if the genconf can't be saved or the template can't be copied
+     */
+    @Before
+    public void before() throws IOException {
+        folder = Files.createTempDir();
+        Files.copy(TEMPLATE, new File(folder, "template.docx"));
+
+        final ResourceSet rs = new ResourceSetImpl();
+        rs.getResourceFactoryRegistry().getExtensionToFactoryMap().put("genconf", new XMIResourceFactoryImpl());
+        final Resource genconf = rs
+                .createResource(URI.createFileURI(new File(folder, "test.genconf").getAbsolutePath()));
+        generation = GenconfFactory.eINSTANCE.createGeneration();
+        generation.setTemplateFileName("template.docx");
+        generation.setResultFileName("result.docx");
+        genconf.getContents().add(generation);
+        genconf.save(Collections.EMPTY_MAP);
+    }
+
+    /**
+     * Deletes the folder.
+     */
+    @After
+    public void after() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void unchangedGenerationSkipped()
+            throws DocumentGenerationException, IOException, DocumentParserException {
+        final GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
+
+        assertFalse(generator.generate(generation, true).isEmpty());
+        assertTrue(getManifestFile().exists());
+        assertEquals(Collections.emptyList(), generator.generate(generation, true));
+    }
+
+    @Test
+    public void abortedGenerationWithoutManifest()
+            throws DocumentGenerationException, IOException, DocumentParserException {
+        final GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
+        final GenerationBudget budget = new GenerationBudget();
+        budget.setMaxGeneratedRuns(0);
+        generator.setBudget(budget);
+
+        assertFalse(generator.generate(generation, true).isEmpty());
+        assertTrue(new File(folder, "result.docx").exists());
+        assertFalse(getManifestFile().exists());
+        // the partial document is generated again
+        assertFalse(generator.generate(generation, true).isEmpty());
+    }
+
+    @Test
+    public void abortedGenerationDeletesManifest()
+            throws DocumentGenerationException, IOException, DocumentParserException {
+        final GenconfToDocumentGenerator generator = new GenconfToDocumentGenerator();
+        assertFalse(generator.generate(generation, true).isEmpty());
+        assertTrue(getManifestFile().exists());
+
+        // force a new generation
+        assertTrue(new File(folder, "result.docx").delete());
+        final GenerationBudget budget = new GenerationBudget();
+        budget.setMaxGeneratedRuns(0);
+        generator.setBudget(budget);
+
+        assertFalse(generator.generate(generation, true).isEmpty());
+        assertFalse(getManifestFile().exists());
+    }
+
+    /**
+     * Gets the {@link GenerationManifest} file of the generated document.
+     *
+     * @return the {@link GenerationManifest} file of the generated document
+     */
+    private File getManifestFile() {
+        return new File(folder, "result.docx." + GenerationManifest.MANIFEST_EXTENSION_FILE);
+    }
+
+}
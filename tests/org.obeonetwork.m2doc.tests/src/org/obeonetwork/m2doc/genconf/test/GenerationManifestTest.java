@@ -0,0 +1,281 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.genconf.test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.genconf.GenconfFactory;
+import org.obeonetwork.m2doc.genconf.GenconfPackage;
+import org.obeonetwork.m2doc.genconf.Generation;
+import org.obeonetwork.m2doc.genconf.ModelDefinition;
+import org.obeonetwork.m2doc.genconf.provider.ConfigurationProviderService;
+import org.obeonetwork.m2doc.genconf.provider.IConfigurationProvider;
+import org.obeonetwork.m2doc.genconf.util.GenerationManifest;
+import org.obeonetwork.m2doc.properties.TemplateCustomProperties;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GenerationManifest}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationManifestTest {
+
+    /**
+     * An {@link IConfigurationProvider} contributing the resource referencing the root model as input, like Sirius sessions.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private final class ReferencingInputProvider implements IConfigurationProvider {
+
+        @Override
+        public void postCreateConfigurationModel(TemplateCustomProperties templateProperties, URI templateURI,
+                Generation generation) {
+            // nothing to do here
+        }
+
+        @Override
+        public void preCreateConfigurationModel(TemplateCustomProperties templateProperties, URI templateURI) {
+            // nothing to do here
+        }
+
+        @Override
+        public boolean postValidateTemplate(URI templateURI, DocumentTemplate template, Generation generation) {
+            return true;
+        }
+
+        @Override
+        public void preValidateTemplate(URI templateURI, DocumentTemplate template, Generation generation) {
+            // nothing to do here
+        }
+
+        @Override
+        public void preGenerate(Generation generation, URI templateURI, URI generatedURI) {
+            // nothing to do here
+        }
+
+        @Override
+        public List<URI> postGenerate(Generation generation, URI templateURI, URI generatedURI,
+                DocumentTemplate template) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<URI> getInputURIs(Generation generation) {
+            return Collections.singletonList(getURI("referencing.ecore"));
+        }
+
+    }
+
+    /**
+     * The template {@link URI}.
+     */
+    private static final URI TEMPLATE_URI = URI
+            .createFileURI(new File("resources/document/properties/noProperties.docx").getAbsolutePath());
+
+    /**
+     * The folder containing the models.
+     */
+    private File folder;
+
+    /**
+     * Creates the genconf model and the models it references.
+     *
+     * @throws IOException
+     *             if models can't be saved
+     */
+    @Before
+    public void before() throws IOException {
+        folder = Files.createTempDir();
+        final ResourceSet rs = createResourceSet();
+
+        final EPackage referenced = createPackage(rs, "referenced");
+        final EPackage root = createPackage(rs, "root");
+        ((EClass) root.getEClassifiers().get(0)).getESuperTypes().add((EClass) referenced.getEClassifiers().get(0));
+        createPackage(rs, "unrelated");
+        // references the root model but isn't referenced by it
+        final EPackage referencing = createPackage(rs, "referencing");
+        ((EClass) referencing.getEClassifiers().get(0)).getESuperTypes().add((EClass) root.getEClassifiers().get(0));
+
+        final Resource genconf = rs.createResource(getURI("test.genconf"));
+        final Generation generation = GenconfFactory.eINSTANCE.createGeneration();
+        final ModelDefinition definition = GenconfFactory.eINSTANCE.createModelDefinition();
+        definition.setKey("self");
+        definition.setValue(root);
+        generation.getDefinitions().add(definition);
+        genconf.getContents().add(generation);
+
+        for (Resource resource : rs.getResources()) {
+            resource.save(Collections.EMPTY_MAP);
+        }
+    }
+
+    /**
+     * Deletes the models.
+     */
+    @After
+    public void after() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void sameManifestWithOtherLoadedResources() throws IOException {
+        final GenerationManifest freshManifest = computeManifest(createResourceSet());
+
+        final ResourceSet rs = createResourceSet();
+        rs.getResource(getURI("unrelated.ecore"), true);
+        final GenerationManifest manifest = computeManifest(rs);
+
+        assertEquals(freshManifest, manifest);
+    }
+
+    @Test
+    public void sameManifestAcrossRuns() throws IOException {
+        assertEquals(computeManifest(createResourceSet()), computeManifest(createResourceSet()));
+    }
+
+    @Test
+    public void differentManifestWhenCrossReferencedResourceChanges() throws IOException {
+        final GenerationManifest manifest = computeManifest(createResourceSet());
+
+        final Resource referenced = createResourceSet().getResource(getURI("referenced.ecore"), true);
+        ((EPackage) referenced.getContents().get(0)).getEClassifiers().get(0).setName("Renamed");
+        referenced.save(Collections.EMPTY_MAP);
+
+        assertFalse(manifest.equals(computeManifest(createResourceSet())));
+    }
+
+    @Test
+    public void sameManifestWhenUnrelatedResourceChanges() throws IOException {
+        final GenerationManifest manifest = computeManifest(createResourceSet());
+
+        final Resource unrelated = createResourceSet().getResource(getURI("unrelated.ecore"), true);
+        ((EPackage) unrelated.getContents().get(0)).getEClassifiers().get(0).setName("Renamed");
+        unrelated.save(Collections.EMPTY_MAP);
+
+        assertEquals(manifest, computeManifest(createResourceSet()));
+    }
+
+    @Test
+    public void differentManifestWhenContributedReferencingResourceChanges() throws IOException {
+        final IConfigurationProvider provider = new ReferencingInputProvider();
+        ConfigurationProviderService.getInstance().register(provider);
+        try {
+            final GenerationManifest manifest = computeManifest(createResourceSet());
+
+            final Resource referencing = createResourceSet().getResource(getURI("referencing.ecore"), true);
+            ((EPackage) referencing.getContents().get(0)).getEClassifiers().get(0).setName("Renamed");
+            referencing.save(Collections.EMPTY_MAP);
+
+            assertFalse(manifest.equals(computeManifest(createResourceSet())));
+        } finally {
+            assertTrue(ConfigurationProviderService.getInstance().unregister(provider));
+        }
+    }
+
+    @Test
+    public void sameManifestWhenNotContributedReferencingResourceChanges() throws IOException {
+        final GenerationManifest manifest = computeManifest(createResourceSet());
+
+        final Resource referencing = createResourceSet().getResource(getURI("referencing.ecore"), true);
+        ((EPackage) referencing.getContents().get(0)).getEClassifiers().get(0).setName("Renamed");
+        referencing.save(Collections.EMPTY_MAP);
+
+        assertEquals(manifest, computeManifest(createResourceSet()));
+    }
+
+    /**
+     * Computes the {@link GenerationManifest} of the test genconf loaded in the given {@link ResourceSet}.
+     *
+     * @param rs
+     *            the {@link ResourceSet}
+     * @return the computed {@link GenerationManifest}
+     * @throws IOException
+     *             if an input can't be read
+     */
+    private GenerationManifest computeManifest(ResourceSet rs) throws IOException {
+        final Generation generation = (Generation) rs.getResource(getURI("test.genconf"), true).getContents().get(0);
+
+        return GenerationManifest.compute(generation, TEMPLATE_URI, getURI("result.docx"), getClass().getClassLoader());
+    }
+
+    /**
+     * Creates an {@link EPackage} containing a single {@link EClass} in its own {@link Resource}.
+     *
+     * @param rs
+     *            the {@link ResourceSet}
+     * @param name
+     *            the {@link EPackage} name
+     * @return the created {@link EPackage}
+     */
+    private EPackage createPackage(ResourceSet rs, String name) {
+        final EPackage res = EcoreFactory.eINSTANCE.createEPackage();
+        res.setName(name);
+        res.setNsURI(name);
+        res.setNsPrefix(name);
+        final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+        eClass.setName(name.toUpperCase());
+        res.getEClassifiers().add(eClass);
+        rs.createResource(getURI(name + ".ecore")).getContents().add(res);
+
+        return res;
+    }
+
+    /**
+     * Gets the {@link URI} of the given file name in the test folder.
+     *
+     * @param fileName
+     *            the file name
+     * @return the {@link URI} of the given file name in the test folder
+     */
+    private URI getURI(String fileName) {
+        return URI.createFileURI(new File(folder, fileName).getAbsolutePath());
+    }
+
+    /**
+     * Creates a {@link ResourceSet}.
+     *
+     * @return the created {@link ResourceSet}
+     */
+    private ResourceSet createResourceSet() {
+        final ResourceSetImpl res = new ResourceSetImpl();
+
+        res.getPackageRegistry().put(GenconfPackage.eNS_URI, GenconfPackage.eINSTANCE);
+        res.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+
+        return res;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.genconf.test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.genconf.util.ValidationCache;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link ValidationCache}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class ValidationCacheTest {
+
+    /**
+     * A valid template.
+     */
+    private static final File VALID_TEMPLATE = new File("resources/document/notEmpty/notEmpty-template.docx");
+
+    /**
+     * An invalid template.
+     */
+    private static final File INVALID_TEMPLATE = new File(
+            "resources/query/invalidExpression/invalidExpression-template.docx");
+
+    /**
+     * The {@link IQueryEnvironment}.
+     */
+    private IQueryEnvironment queryEnvironment;
+
+    /**
+     * A copy of a template.
+     */
+    private File template;
+
+    @Before
+    public void before() throws IOException {
+        queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        template = File.createTempFile("template", ".docx");
+    }
+
+    @After
+    public void after() {
+        template.delete();
+    }
+
+    @Test
+    public void validTemplate() throws IOException, DocumentParserException {
+        Files.copy(VALID_TEMPLATE, template);
+
+        assertEquals(ValidationMessageLevel.OK, validate());
+        assertEquals(ValidationMessageLevel.OK, validate());
+    }
+
+    @Test
+    public void invalidTemplateIsNotCached() throws IOException, DocumentParserException {
+        Files.copy(INVALID_TEMPLATE, template);
+
+        assertEquals(ValidationMessageLevel.ERROR, validate());
+        assertEquals(ValidationMessageLevel.ERROR, validate());
+    }
+
+    @Test
+    public void changedTemplateIsValidatedAgain() throws IOException, DocumentParserException {
+        Files.copy(VALID_TEMPLATE, template);
+        final long lastModified = template.lastModified();
+        assertEquals(ValidationMessageLevel.OK, validate());
+
+        Files.copy(INVALID_TEMPLATE, template);
+        // make sure the time stamp changes even on file systems with a coarse time stamp resolution
+        template.setLastModified(lastModified + 2000);
+
+        assertEquals(ValidationMessageLevel.ERROR, validate());
+    }
+
+    @Test
+    public void changedTemplateWithSameTimeStampIsValidatedAgain() throws IOException, DocumentParserException {
+        Files.copy(VALID_TEMPLATE, template);
+        final long lastModified = template.lastModified();
+        assertEquals(ValidationMessageLevel.OK, validate());
+
+        Files.copy(INVALID_TEMPLATE, template);
+        template.setLastModified(lastModified);
+
+        assertEquals(ValidationMessageLevel.ERROR, validate());
+    }
+
+    /**
+     * Parses the template and validates it using the {@link ValidationCache}.
+     *
+     * @return the {@link ValidationMessageLevel}
+     * @throws IOException
+     *             if the template can't be read
+     * @throws DocumentParserException
+     *             if the template can't be parsed
+     */
+    private ValidationMessageLevel validate() throws IOException, DocumentParserException {
+        try (DocumentTemplate documentTemplate = M2DocUtils.parse(URI.createFileURI(template.getAbsolutePath()),
+                queryEnvironment, getClass().getClassLoader())) {
+            return ValidationCache.getInstance().validate(documentTemplate, queryEnvironment);
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator.test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.BookmarkManager;
+import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link BookmarkManager}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+// CHECKSTYLE:OFF
+public class BookmarkManagerTest {
+
+    private XWPFDocument document;
+
+    private XWPFParagraph paragraph;
+
+    private BookmarkManager manager;
+
+    @Before
+    public void before() {
+        document = new XWPFDocument();
+        paragraph = document.createParagraph();
+        manager = new BookmarkManager();
+    }
+
+    @After
+    public void after() throws IOException {
+        document.close();
+    }
+
+    @Test
+    public void sequentialBookmarkIDs() {
+        assertEquals(ValidationMessageLevel.OK, manager.startBookmark(paragraph, "first"));
+        assertEquals(ValidationMessageLevel.OK, manager.endBookmark(paragraph, "first"));
+        assertEquals(ValidationMessageLevel.OK, manager.startBookmark(paragraph, "second"));
+        assertEquals(ValidationMessageLevel.OK, manager.endBookmark(paragraph, "second"));
+
+        final CTP ctp = paragraph.getCTP();
+        assertEquals(2, ctp.sizeOfBookmarkStartArray());
+        assertEquals(2, ctp.sizeOfBookmarkEndArray());
+        assertEquals(ctp.getBookmarkStartArray(0).getId().add(BigInteger.ONE), ctp.getBookmarkStartArray(1).getId());
+        assertEquals(ctp.getBookmarkStartArray(0).getId(), ctp.getBookmarkEndArray(0).getId());
+        assertEquals(ctp.getBookmarkStartArray(1).getId(), ctp.getBookmarkEndArray(1).getId());
+    }
+
+    @Test
+    public void duplicatedBookmark() {
+        assertEquals(ValidationMessageLevel.OK, manager.startBookmark(paragraph, "bookmark"));
+        assertEquals(ValidationMessageLevel.ERROR, manager.startBookmark(paragraph, "bookmark"));
+
+        assertEquals(1, paragraph.getCTP().sizeOfBookmarkStartArray());
+        assertEquals("Can't start duplicated bookmark bookmark", paragraph.getRuns().get(0).text());
+    }
+
+    @Test
+    public void endNotExistingBookmark() {
+        assertEquals(ValidationMessageLevel.ERROR, manager.endBookmark(paragraph, "bookmark"));
+
+        assertEquals(0, paragraph.getCTP().sizeOfBookmarkEndArray());
+        assertEquals("Can't end not existing bookmark bookmark", paragraph.getRuns().get(0).text());
+    }
+
+    @Test
+    public void endAlreadyClosedBookmark() {
+        manager.startBookmark(paragraph, "bookmark");
+        manager.endBookmark(paragraph, "bookmark");
+        assertEquals(ValidationMessageLevel.ERROR, manager.endBookmark(paragraph, "bookmark"));
+
+        assertEquals(1, paragraph.getCTP().sizeOfBookmarkEndArray());
+        assertEquals("Can't end already closed bookmark bookmark", paragraph.getRuns().get(0).text());
+    }
+
+    @Test
+    public void markOpenBookmarksAtStartPosition() {
+        paragraph.createRun().setText("before");
+        manager.startBookmark(paragraph, "first");
+        paragraph.createRun().setText("middle");
+        manager.startBookmark(paragraph, "second");
+        paragraph.createRun().setText("after");
+
+        assertTrue(manager.markOpenBookmarks());
+        assertFalse(manager.markOpenBookmarks());
+
+        assertEquals(5, paragraph.getRuns().size());
+        assertEquals("before", paragraph.getRuns().get(0).text());
+        assertEquals("unclosed bookmark first", paragraph.getRuns().get(1).text());
+        assertEquals("middle", paragraph.getRuns().get(2).text());
+        assertEquals("unclosed bookmark second", paragraph.getRuns().get(3).text());
+        assertEquals("after", paragraph.getRuns().get(4).text());
+    }
+
+    @Test
+    public void markOpenBookmarksSamePosition() {
+        manager.startBookmark(paragraph, "first");
+        manager.startBookmark(paragraph, "second");
+        paragraph.createRun().setText("after");
+
+        assertTrue(manager.markOpenBookmarks());
+
+        assertEquals(3, paragraph.getRuns().size());
+        assertEquals("unclosed bookmark first", paragraph.getRuns().get(0).text());
+        assertEquals("unclosed bookmark second", paragraph.getRuns().get(1).text());
+        assertEquals("after", paragraph.getRuns().get(2).text());
+    }
+
+    @Test
+    public void markOpenBookmarksNoOpenBookmark() {
+        manager.startBookmark(paragraph, "bookmark");
+        manager.endBookmark(paragraph, "bookmark");
+
+        assertFalse(manager.markOpenBookmarks());
+        assertEquals(0, paragraph.getRuns().size());
+    }
+
+    @Test
+    public void resolveForwardReference() {
+        manager.insertReference(paragraph, "bookmark", "text");
+        manager.startBookmark(paragraph, "bookmark");
+        manager.endBookmark(paragraph, "bookmark");
+
+        assertEquals("", getInstruction(1));
+        assertFalse(manager.resolveReferences());
+        assertEquals(" REF bookmark \\h ", getInstruction(1));
+        assertEquals("text", paragraph.getRuns().get(3).text());
+    }
+
+    @Test
+    public void resolveBackwardReference() {
+        manager.startBookmark(paragraph, "bookmark");
+        manager.endBookmark(paragraph, "bookmark");
+        manager.insertReference(paragraph, "bookmark", "text");
+
+        assertFalse(manager.resolveReferences());
+        assertEquals(" REF bookmark \\h ", getInstruction(1));
+    }
+
+    @Test
+    public void resolveReferencesSameID() {
+        manager.insertReference(paragraph, "bookmark", "first");
+        manager.insertReference(paragraph, "bookmark", "second");
+        manager.insertReference(paragraph, "other", "third");
+
+        assertEquals(15, paragraph.getRuns().size());
+        assertEquals(Arrays.toString(paragraph.getRuns().get(0).getCTR().getRsidR()),
+                Arrays.toString(paragraph.getRuns().get(5).getCTR().getRsidR()));
+        assertFalse(Arrays.toString(paragraph.getRuns().get(0).getCTR().getRsidR())
+                .equals(Arrays.toString(paragraph.getRuns().get(10).getCTR().getRsidR())));
+    }
+
+    @Test
+    public void resolveDanglingReference() {
+        paragraph.createRun().setText("before");
+        manager.insertReference(paragraph, "bookmark", "text");
+
+        assertTrue(manager.resolveReferences());
+        assertFalse(manager.resolveReferences());
+
+        assertEquals(7, paragraph.getRuns().size());
+        assertEquals("before", paragraph.getRuns().get(0).text());
+        assertEquals("dangling reference for bookmark bookmark", paragraph.getRuns().get(1).text());
+        assertEquals("", getInstruction(3));
+        assertEquals("text", paragraph.getRuns().get(5).text());
+    }
+
+    @Test
+    public void resolveDanglingReferenceAndMarkOpenBookmark() {
+        manager.startBookmark(paragraph, "open");
+        manager.insertReference(paragraph, "dangling", "text");
+
+        assertTrue(manager.resolveReferences());
+        assertTrue(manager.markOpenBookmarks());
+
+        assertEquals(7, paragraph.getRuns().size());
+        assertEquals("unclosed bookmark open", paragraph.getRuns().get(0).text());
+        assertEquals("dangling reference for bookmark dangling", paragraph.getRuns().get(1).text());
+        assertEquals("text", paragraph.getRuns().get(5).text());
+    }
+
+    @Test
+    public void bookmarkIDsSkipDocumentBookmarks() throws IOException {
+        final XWPFParagraph copied = document.createParagraph();
+        copied.getCTP().addNewBookmarkStart().setId(BigInteger.ZERO);
+        copied.getCTP().addNewBookmarkStart().setId(BigInteger.valueOf(2));
+        final BookmarkManager documentManager = new BookmarkManager(document);
+
+        documentManager.startBookmark(paragraph, "first");
+        documentManager.endBookmark(paragraph, "first");
+        documentManager.startBookmark(paragraph, "second");
+        documentManager.endBookmark(paragraph, "second");
+        documentManager.startBookmark(paragraph, "third");
+        assertFalse(documentManager.resolveReferences());
+
+        final CTP ctp = paragraph.getCTP();
+        assertEquals(BigInteger.ONE, ctp.getBookmarkStartArray(0).getId());
+        assertEquals(BigInteger.ONE, ctp.getBookmarkEndArray(0).getId());
+        assertEquals(BigInteger.valueOf(3), ctp.getBookmarkStartArray(1).getId());
+        assertEquals(BigInteger.valueOf(3), ctp.getBookmarkEndArray(1).getId());
+        assertEquals(BigInteger.valueOf(4), ctp.getBookmarkStartArray(2).getId());
+        assertEquals(BigInteger.ZERO, copied.getCTP().getBookmarkStartArray(0).getId());
+        assertEquals(BigInteger.valueOf(2), copied.getCTP().getBookmarkStartArray(1).getId());
+    }
+
+    /**
+     * Gets the reference instruction of the run at the given index.
+     * 
+     * @param index
+     *            the run index
+     * @return the reference instruction of the run at the given index
+     */
+    private String getInstruction(int index) {
+        return paragraph.getRuns().get(index).getCTR().getInstrTextArray(0).getStringValue();
+    }
+
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
+import org.obeonetwork.m2doc.generator.GenerationContext;
+import org.obeonetwork.m2doc.generator.GenerationResult;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GenerationBudget}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationBudgetTests {
+
+    /**
+     * The template.
+     */
+    private static final File TEMPLATE = new File("resources/static/table/table-template.docx");
+
+    /**
+     * The {@link IQueryEnvironment}.
+     */
+    private IQueryEnvironment queryEnvironment;
+
+    /**
+     * The destination.
+     */
+    private File destination;
+
+    @Before
+    public void before() throws IOException {
+        queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        destination = File.createTempFile("generated", ".docx");
+        destination.delete();
+    }
+
+    @After
+    public void after() {
+        destination.delete();
+    }
+
+    @Test
+    public void unlimited() throws DocumentParserException, DocumentGenerationException {
+        final GenerationResult result = generate(new GenerationBudget());
+
+        assertFalse(result.isAborted());
+        assertNull(result.getAbortMessage());
+        assertTrue(destination.exists());
+        assertTrue(result.getMetrics().get(GenerationContext.GENERATED_RUNS_METRIC) > 0);
+        assertTrue(result.getMetrics().get(GenerationContext.DURATION_METRIC) >= 0);
+    }
+
+    @Test
+    public void maxGeneratedRunsExceeded() throws DocumentParserException, DocumentGenerationException, IOException {
+        final GenerationBudget budget = new GenerationBudget();
+        budget.setMaxGeneratedRuns(0);
+        final GenerationResult result = generate(budget);
+
+        assertTrue(result.isAborted());
+        assertEquals("The generation has been aborted after 0 generated runs.", result.getAbortMessage());
+        assertEquals(ValidationMessageLevel.ERROR, result.getLevel());
+        // the partial document is saved with the abort message at its end
+        assertTrue(destination.exists());
+        try (FileInputStream is = new FileInputStream(destination); XWPFDocument document = new XWPFDocument(is)) {
+            final List<XWPFParagraph> paragraphs = document.getParagraphs();
+            assertEquals(result.getAbortMessage(), paragraphs.get(paragraphs.size() - 1).getText());
+        }
+    }
+
+    @Test
+    public void maxDurationExceeded() throws DocumentParserException, DocumentGenerationException {
+        final GenerationBudget budget = new GenerationBudget();
+        budget.setMaxDuration(-1);
+        final GenerationResult result = generate(budget);
+
+        assertTrue(result.isAborted());
+        assertEquals("The generation has been aborted after -1 milliseconds.", result.getAbortMessage());
+        assertTrue(destination.exists());
+    }
+
+    /**
+     * Generates {@link #TEMPLATE} to {@link #destination} within the given {@link GenerationBudget}.
+     *
+     * @param budget
+     *            the {@link GenerationBudget}
+     * @return the {@link GenerationResult}
+     * @throws DocumentParserException
+     *             if the template can't be parsed
+     * @throws DocumentGenerationException
+     *             if the generation fails
+     */
+    private GenerationResult generate(GenerationBudget budget)
+            throws DocumentParserException, DocumentGenerationException {
+        try (DocumentTemplate documentTemplate = M2DocUtils.parse(URI.createFileURI(TEMPLATE.getAbsolutePath()),
+                queryEnvironment, getClass().getClassLoader())) {
+            return M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(),
+                    URI.createFileURI(destination.getAbsolutePath()), new BasicMonitor(), budget);
+        } catch (IOException e) {
+            throw new DocumentGenerationException("Unable to close the template", e);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.BookmarkManager;
+import org.obeonetwork.m2doc.generator.GenerationBudget;
+import org.obeonetwork.m2doc.generator.GenerationContext;
+import org.obeonetwork.m2doc.generator.TemplateProcessor;
+import org.obeonetwork.m2doc.generator.UserContentManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link GenerationContext}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationContextTests {
+
+    /**
+     * A hook recording its index when run.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class RecordingHook implements Runnable {
+
+        /**
+         * The indexes of run hooks.
+         */
+        private final List<Integer> runs;
+
+        /**
+         * The index of this hook.
+         */
+        private final int index;
+
+        /**
+         * Constructor.
+         *
+         * @param runs
+         *            the indexes of run hooks
+         * @param index
+         *            the index of this hook
+         */
+        private RecordingHook(List<Integer> runs, int index) {
+            this.runs = runs;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            runs.add(index);
+        }
+
+    }
+
+    @Test
+    public void cleanupHooksReverseOrder() {
+        final GenerationContext context = new GenerationContext();
+        final List<Integer> runs = new ArrayList<Integer>();
+        context.addCleanupHook(new RecordingHook(runs, 1));
+        context.addCleanupHook(new RecordingHook(runs, 2));
+        context.addCleanupHook(new RecordingHook(runs, 3));
+
+        context.dispose();
+
+        assertEquals(Arrays.asList(3, 2, 1), runs);
+    }
+
+    @Test
+    public void cleanupHooksRunOnce() {
+        final GenerationContext context = new GenerationContext();
+        final List<Integer> runs = new ArrayList<Integer>();
+        context.addCleanupHook(new RecordingHook(runs, 1));
+
+        context.dispose();
+        context.dispose();
+
+        assertEquals(Arrays.asList(1), runs);
+    }
+
+    @Test
+    public void cacheClearedOnDispose() {
+        final GenerationContext context = new GenerationContext();
+        final Object key = new Object();
+
+        assertNull(context.putCachedValue(key, "value"));
+        assertEquals("value", context.getCachedValue(key));
+
+        context.dispose();
+
+        assertNull(context.getCachedValue(key));
+    }
+
+    @Test
+    public void metrics() {
+        final GenerationContext context = new GenerationContext();
+        context.addToMetric(GenerationContext.GENERATED_RUNS_METRIC, 2);
+        context.addToMetric(GenerationContext.GENERATED_RUNS_METRIC, 3);
+        context.addToMetric(GenerationContext.DURATION_METRIC, 10);
+
+        final Map<String, Long> metrics = context.getMetrics();
+        assertEquals(Long.valueOf(5), metrics.get(GenerationContext.GENERATED_RUNS_METRIC));
+        assertEquals(Long.valueOf(10), metrics.get(GenerationContext.DURATION_METRIC));
+        // the returned metrics are a copy
+        metrics.clear();
+        assertEquals(2, context.getMetrics().size());
+    }
+
+    @Test
+    public void temporaryDirectoryDeleted() throws IOException {
+        final GenerationContext context = new GenerationContext();
+        final File directory = context.createTemporaryDirectory();
+        assertTrue(new File(directory, "image.jpg").createNewFile());
+        assertTrue(new File(directory, "images").mkdir());
+        assertTrue(new File(directory, "images/image.png").createNewFile());
+
+        context.dispose();
+
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void temporaryDirectoryDeletedWhenHookFails() {
+        final GenerationContext context = new GenerationContext();
+        final File directory = context.createTemporaryDirectory();
+        context.setImageSize("image.jpg", 10, 20);
+        context.addCleanupHook(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("hook failure");
+            }
+
+        });
+
+        try {
+            context.dispose();
+            fail("the hook failure should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("hook failure", e.getMessage());
+        }
+
+        assertFalse(directory.exists());
+        assertEquals(0, context.getImageWidth("image.jpg"));
+        assertEquals(0, context.getImageHeight("image.jpg"));
+    }
+
+    @Test
+    public void canceledMonitor() {
+        final BasicMonitor monitor = new BasicMonitor();
+        final GenerationBudget budget = new GenerationBudget();
+        final GenerationContext context = new GenerationContext(monitor, budget);
+
+        assertEquals(monitor, context.getMonitor());
+        assertEquals(budget, context.getBudget());
+        assertFalse(context.isCanceled());
+        monitor.setCanceled(true);
+        assertTrue(context.isCanceled());
+    }
+
+    @Test
+    public void processorClearDisposesContext() {
+        final GenerationContext context = new GenerationContext();
+        final File directory = context.createTemporaryDirectory();
+        final List<Integer> runs = new ArrayList<Integer>();
+        context.addCleanupHook(new RecordingHook(runs, 1));
+        final TemplateProcessor processor = new TemplateProcessor(new BookmarkManager(),
+                new UserContentManager(null, (InputStream) null), Query.newEnvironmentWithDefaultServices(null),
+                context);
+
+        processor.clear();
+
+        assertEquals(Arrays.asList(1), runs);
+        assertFalse(directory.exists());
+    }
+
+}
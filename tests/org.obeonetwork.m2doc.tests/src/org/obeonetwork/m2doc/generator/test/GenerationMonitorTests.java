@@ -0,0 +1,162 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.Monitor;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link Monitor} of {@link M2DocUtils#generate(DocumentTemplate, org.eclipse.acceleo.query.runtime.IReadOnlyQueryEnvironment,
+ * java.util.Map, URI, Monitor) generations}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class GenerationMonitorTests {
+
+    /**
+     * The template.
+     */
+    private static final File TEMPLATE = new File("resources/document/notEmpty/notEmpty-template.docx");
+
+    /**
+     * A {@link Monitor} canceling the generation after a given amount of work.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class CancelingMonitor extends BasicMonitor {
+
+        /**
+         * The amount of work before cancellation.
+         */
+        private final int workBeforeCancel;
+
+        /**
+         * The amount of work done.
+         */
+        private int workDone;
+
+        /**
+         * Constructor.
+         *
+         * @param workBeforeCancel
+         *            the amount of work before cancellation
+         */
+        private CancelingMonitor(int workBeforeCancel) {
+            this.workBeforeCancel = workBeforeCancel;
+            setCanceled(workBeforeCancel <= 0);
+        }
+
+        @Override
+        public void worked(int work) {
+            workDone += work;
+            if (workDone >= workBeforeCancel) {
+                setCanceled(true);
+            }
+        }
+
+    }
+
+    /**
+     * The {@link IQueryEnvironment}.
+     */
+    private IQueryEnvironment queryEnvironment;
+
+    /**
+     * The destination.
+     */
+    private File destination;
+
+    @Before
+    public void before() throws IOException {
+        queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        destination = File.createTempFile("generated", ".docx");
+        destination.delete();
+    }
+
+    @After
+    public void after() {
+        destination.delete();
+    }
+
+    @Test
+    public void workReported() throws DocumentParserException, DocumentGenerationException {
+        final CancelingMonitor monitor = new CancelingMonitor(Integer.MAX_VALUE);
+        generate(monitor);
+
+        assertFalse(monitor.workDone == 0);
+        assertFalse(monitor.isCanceled());
+    }
+
+    @Test
+    public void canceledBeforeGeneration() throws DocumentParserException {
+        try {
+            generate(new CancelingMonitor(0));
+            fail("DocumentGenerationException expected");
+        } catch (DocumentGenerationException e) {
+            assertEquals("The generation has been canceled.", e.getMessage());
+        }
+
+        assertFalse(destination.exists());
+    }
+
+    @Test
+    public void canceledDuringGeneration() throws DocumentParserException {
+        final CancelingMonitor monitor = new CancelingMonitor(1);
+        try {
+            generate(monitor);
+            fail("DocumentGenerationException expected");
+        } catch (DocumentGenerationException e) {
+            assertEquals("The generation has been canceled.", e.getMessage());
+        }
+
+        assertFalse(destination.exists());
+    }
+
+    /**
+     * Generates {@link #TEMPLATE} to {@link #destination} with the given {@link Monitor}.
+     *
+     * @param monitor
+     *            the {@link Monitor}
+     * @throws DocumentParserException
+     *             if the template can't be parsed
+     * @throws DocumentGenerationException
+     *             if the generation fails or is canceled
+     */
+    private void generate(Monitor monitor) throws DocumentParserException, DocumentGenerationException {
+        try (DocumentTemplate documentTemplate = M2DocUtils.parse(URI.createFileURI(TEMPLATE.getAbsolutePath()),
+                queryEnvironment, getClass().getClassLoader())) {
+            M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(),
+                    URI.createFileURI(destination.getAbsolutePath()), monitor);
+        } catch (IOException e) {
+            throw new DocumentGenerationException("Unable to close the template", e);
+        }
+    }
+
+}
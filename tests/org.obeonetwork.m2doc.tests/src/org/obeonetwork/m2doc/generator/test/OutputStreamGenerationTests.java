@@ -0,0 +1,208 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.generator.test;
+
+import com.google.common.io.Files;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.generator.GenerationResult;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests generations to an {@link java.io.OutputStream OutputStream}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class OutputStreamGenerationTests {
+
+    /**
+     * A template without user content.
+     */
+    private static final File TEMPLATE = new File("resources/static/table/table-template.docx");
+
+    /**
+     * A template with user content.
+     */
+    private static final File USER_CONTENT_TEMPLATE = new File(
+            "resources/userDoc/userContentWithImage/userContentWithImage-template.docx");
+
+    /**
+     * A previously generated document of {@link #USER_CONTENT_TEMPLATE} with modified user content.
+     */
+    private static final File USER_CONTENT = new File(
+            "resources/userDoc/userContentWithImage/userContentWithImage-userContent.docx");
+
+    /**
+     * The expected generation of {@link #USER_CONTENT_TEMPLATE} with {@link #USER_CONTENT}.
+     */
+    private static final File USER_CONTENT_EXPECTED = new File(
+            "resources/userDoc/userContentWithImage/userContentWithImage-expected-generation.docx");
+
+    /**
+     * A {@link ByteArrayOutputStream} recording if it has been closed.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class RecordingOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * Tells if the stream has been closed.
+         */
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+
+    }
+
+    /**
+     * An {@link InputStream} recording if it has been closed.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class RecordingInputStream extends FilterInputStream {
+
+        /**
+         * Tells if the stream has been closed.
+         */
+        private boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param in
+         *            the delegate {@link InputStream}
+         */
+        private RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+
+    }
+
+    /**
+     * The {@link IQueryEnvironment}.
+     */
+    private IQueryEnvironment queryEnvironment;
+
+    /**
+     * The destination of generations to an {@link URI}.
+     */
+    private File destination;
+
+    @Before
+    public void before() throws IOException {
+        queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        destination = File.createTempFile("generated", ".docx");
+        destination.delete();
+    }
+
+    @After
+    public void after() {
+        destination.delete();
+    }
+
+    @Test
+    public void sameContentAsURI() throws DocumentParserException, DocumentGenerationException, IOException {
+        final RecordingOutputStream os = new RecordingOutputStream();
+        try (DocumentTemplate documentTemplate = parse(TEMPLATE)) {
+            M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(),
+                    URI.createFileURI(destination.getAbsolutePath()));
+            M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(), os, null);
+        }
+
+        assertFalse(os.closed);
+        assertEquals(getText(new FileInputStream(destination)), getText(new ByteArrayInputStream(os.toByteArray())));
+    }
+
+    @Test
+    public void previousOutputUserContent() throws DocumentParserException, DocumentGenerationException, IOException {
+        Files.copy(USER_CONTENT, destination);
+        final RecordingOutputStream os = new RecordingOutputStream();
+        final RecordingInputStream previousOutput = new RecordingInputStream(new FileInputStream(USER_CONTENT));
+        final GenerationResult result;
+        try (DocumentTemplate documentTemplate = parse(USER_CONTENT_TEMPLATE)) {
+            M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(),
+                    URI.createFileURI(destination.getAbsolutePath()));
+            result = M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(), os,
+                    previousOutput);
+        }
+
+        assertFalse(os.closed);
+        assertTrue(previousOutput.closed);
+        assertTrue(result.getLostUserContents().isEmpty());
+        final String text = getText(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(getText(new FileInputStream(destination)), text);
+        assertEquals(getText(new FileInputStream(USER_CONTENT_EXPECTED)), text);
+    }
+
+    /**
+     * Parses the given template.
+     *
+     * @param template
+     *            the template {@link File}
+     * @return the parsed {@link DocumentTemplate}
+     * @throws DocumentParserException
+     *             if the template can't be parsed
+     */
+    private DocumentTemplate parse(File template) throws DocumentParserException {
+        return M2DocUtils.parse(URI.createFileURI(template.getAbsolutePath()), queryEnvironment,
+                getClass().getClassLoader());
+    }
+
+    /**
+     * Gets the text of the document read from the given {@link InputStream} and closes it.
+     *
+     * @param is
+     *            the document {@link InputStream}
+     * @return the text of the document read from the given {@link InputStream}
+     * @throws IOException
+     *             if the document can't be read
+     */
+    private String getText(InputStream is) throws IOException {
+        try (InputStream input = is; XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(input))) {
+            return extractor.getText();
+        }
+    }
+
+}
@@ -36,6 +36,7 @@ import org.obeonetwork.m2doc.provider.ProviderException;
 import org.obeonetwork.m2doc.provider.ProviderValidationMessage;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests of {@link TableClientProcessor}.
@@ -94,6 +95,21 @@ public class TableClientProcessorTest {
         checkTable(table);
     }
 
+    @Test
+    public void testRowsAreAttached() throws ProviderException {
+        Map<String, Object> arguments = new HashMap<String, Object>();
+        processor = new TableClientProcessor(doc, provider, arguments);
+        processor.generate(run);
+        XWPFTable table = doc.getTables().get(0);
+        List<XWPFTableRow> rows = table.getRows();
+        assertEquals(table.getCTTbl().sizeOfTrArray(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertSame(table.getCTTbl().getTrArray(i), rows.get(i).getCtRow());
+        }
+        rows.get(1).getCell(2).setText("Changed");
+        assertEquals("Changed", new XWPFTable(table.getCTTbl(), doc).getRow(1).getCell(2).getText());
+    }
+
     protected void checkParagraph(XWPFParagraph paragraph, String expectedTitle) {
         assertEquals(expectedTitle, paragraph.getText());
         assertEquals(0, paragraph.getSpacingAfter());
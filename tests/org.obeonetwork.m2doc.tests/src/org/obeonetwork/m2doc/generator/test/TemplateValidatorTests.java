@@ -19,6 +19,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.eclipse.acceleo.query.runtime.IQueryBuilderEngine;
 import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
@@ -27,6 +28,8 @@ import org.eclipse.acceleo.query.runtime.QueryParsing;
 import org.eclipse.acceleo.query.validation.type.ClassType;
 import org.eclipse.acceleo.query.validation.type.EClassifierType;
 import org.eclipse.acceleo.query.validation.type.IType;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -34,12 +37,15 @@ import org.obeonetwork.m2doc.generator.TemplateValidator;
 import org.obeonetwork.m2doc.parser.ValidationMessageLevel;
 import org.obeonetwork.m2doc.provider.IProvider;
 import org.obeonetwork.m2doc.provider.OptionType;
+import org.obeonetwork.m2doc.parser.TemplateValidationMessage;
 import org.obeonetwork.m2doc.provider.ProviderValidationMessage;
 import org.obeonetwork.m2doc.template.Block;
 import org.obeonetwork.m2doc.template.Cell;
 import org.obeonetwork.m2doc.template.Conditional;
 import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.template.IConstruct;
 import org.obeonetwork.m2doc.template.Image;
+import org.obeonetwork.m2doc.template.Repetition;
 import org.obeonetwork.m2doc.template.Row;
 import org.obeonetwork.m2doc.template.Table;
 import org.obeonetwork.m2doc.template.TableMerge;
@@ -213,6 +219,175 @@ public class TemplateValidatorTests {
                 "Couldn't find the 'self' variable", query.getStyleRun());
     }
 
+    @Test
+    public void tableRowCellTemplateParallel() {
+        IQueryEnvironment queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        final IQueryBuilderEngine engine = QueryParsing.newBuilder(queryEnvironment);
+        final org.obeonetwork.m2doc.template.Query query1 = TemplatePackage.eINSTANCE.getTemplateFactory()
+                .createQuery();
+        query1.setQuery(engine.build("self"));
+        final org.obeonetwork.m2doc.template.Query query2 = TemplatePackage.eINSTANCE.getTemplateFactory()
+                .createQuery();
+        query2.setQuery(engine.build("other"));
+        final Template template = TemplatePackage.eINSTANCE.getTemplateFactory().createTemplate();
+        template.setBody(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+        final Table table = TemplatePackage.eINSTANCE.getTemplateFactory().createTable();
+        template.getBody().getStatements().add(table);
+        final Row row = TemplatePackage.eINSTANCE.getTemplateFactory().createRow();
+        table.getRows().add(row);
+        for (org.obeonetwork.m2doc.template.Query query : new org.obeonetwork.m2doc.template.Query[] {query1,
+            query2 }) {
+            final Cell cell = TemplatePackage.eINSTANCE.getTemplateFactory().createCell();
+            row.getCells().add(cell);
+            final Template cellTemplate = TemplatePackage.eINSTANCE.getTemplateFactory().createTemplate();
+            cellTemplate.setBody(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+            cellTemplate.getBody().getStatements().add(query);
+            cell.setTemplate(cellTemplate);
+        }
+        @SuppressWarnings("resource")
+        final DocumentTemplate documentTemplate = M2DocTestUtils.createDocumentTemplate(template);
+
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final TemplateValidator validator = new TemplateValidator(pool);
+            assertEquals(ValidationMessageLevel.ERROR, validator.validate(documentTemplate, queryEnvironment));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, query1.getValidationMessages().size());
+        assertTemplateValidationMessage(query1.getValidationMessages().get(0), ValidationMessageLevel.ERROR,
+                "Couldn't find the 'self' variable", query1.getStyleRun());
+        assertEquals(1, query2.getValidationMessages().size());
+        assertTemplateValidationMessage(query2.getValidationMessages().get(0), ValidationMessageLevel.ERROR,
+                "Couldn't find the 'other' variable", query2.getStyleRun());
+    }
+
+    @Test
+    public void topLevelStatementsParallel() {
+        IQueryEnvironment queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        final IQueryBuilderEngine engine = QueryParsing.newBuilder(queryEnvironment);
+        final Template template = TemplatePackage.eINSTANCE.getTemplateFactory().createTemplate();
+        template.setBody(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+        final List<org.obeonetwork.m2doc.template.Query> queries = new ArrayList<org.obeonetwork.m2doc.template.Query>();
+        for (int i = 0; i < 20; i++) {
+            final org.obeonetwork.m2doc.template.Query query = TemplatePackage.eINSTANCE.getTemplateFactory()
+                    .createQuery();
+            query.setQuery(engine.build("v" + i));
+            template.getBody().getStatements().add(query);
+            queries.add(query);
+        }
+        @SuppressWarnings("resource")
+        final DocumentTemplate documentTemplate = M2DocTestUtils.createDocumentTemplate(template);
+
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final TemplateValidator validator = new TemplateValidator(pool);
+            assertEquals(ValidationMessageLevel.ERROR, validator.validate(documentTemplate, queryEnvironment));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < queries.size(); i++) {
+            final org.obeonetwork.m2doc.template.Query query = queries.get(i);
+            assertEquals(1, query.getValidationMessages().size());
+            assertTemplateValidationMessage(query.getValidationMessages().get(0), ValidationMessageLevel.ERROR,
+                    "Couldn't find the 'v" + i + "' variable", query.getStyleRun());
+        }
+    }
+
+    @Test
+    public void parallelSameMessagesAsSequential() {
+        final IQueryEnvironment queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        final List<String> expected;
+        try (DocumentTemplate documentTemplate = createMultiSectionTemplate(queryEnvironment)) {
+            new TemplateValidator().validate(documentTemplate, queryEnvironment);
+            expected = getMessages(documentTemplate);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 50; i++) {
+                try (DocumentTemplate documentTemplate = createMultiSectionTemplate(queryEnvironment)) {
+                    new TemplateValidator(pool).validate(documentTemplate, queryEnvironment);
+                    assertEquals("run " + i, expected, getMessages(documentTemplate));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates a {@link DocumentTemplate} with many top level sections: unknown variables, repetitions declaring a variable and
+     * conditionals.
+     * 
+     * @param queryEnvironment
+     *            the {@link IQueryEnvironment}
+     * @return the created {@link DocumentTemplate}
+     */
+    private DocumentTemplate createMultiSectionTemplate(IQueryEnvironment queryEnvironment) {
+        final IQueryBuilderEngine engine = QueryParsing.newBuilder(queryEnvironment);
+        final Template template = TemplatePackage.eINSTANCE.getTemplateFactory().createTemplate();
+        template.setBody(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+        for (int i = 0; i < 40; i++) {
+            final org.obeonetwork.m2doc.template.Query query = TemplatePackage.eINSTANCE.getTemplateFactory()
+                    .createQuery();
+            switch (i % 3) {
+                case 0:
+                    query.setQuery(engine.build("v" + i));
+                    template.getBody().getStatements().add(query);
+                    break;
+                case 1:
+                    final Repetition repetition = TemplatePackage.eINSTANCE.getTemplateFactory().createRepetition();
+                    repetition.setIterationVar("x");
+                    repetition.setQuery(engine.build("Sequence{'a', 'b'}"));
+                    repetition.setBody(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+                    query.setQuery(engine.build("x.size() + v" + i));
+                    repetition.getBody().getStatements().add(query);
+                    template.getBody().getStatements().add(repetition);
+                    break;
+                default:
+                    final Conditional conditional = TemplatePackage.eINSTANCE.getTemplateFactory().createConditional();
+                    conditional.setCondition(engine.build("'a' = 'b'"));
+                    conditional.setThen(TemplatePackage.eINSTANCE.getTemplateFactory().createBlock());
+                    query.setQuery(engine.build("x"));
+                    conditional.getThen().getStatements().add(query);
+                    template.getBody().getStatements().add(conditional);
+                    break;
+            }
+        }
+
+        return M2DocTestUtils.createDocumentTemplate(template);
+    }
+
+    /**
+     * Gets the {@link TemplateValidationMessage} of the given {@link DocumentTemplate} in document order.
+     * 
+     * @param documentTemplate
+     *            the {@link DocumentTemplate}
+     * @return the {@link TemplateValidationMessage} of the given {@link DocumentTemplate} in document order
+     */
+    private List<String> getMessages(DocumentTemplate documentTemplate) {
+        final List<String> res = new ArrayList<String>();
+
+        final TreeIterator<EObject> it = documentTemplate.eAllContents();
+        while (it.hasNext()) {
+            final EObject eObject = it.next();
+            if (eObject instanceof IConstruct) {
+                for (TemplateValidationMessage message : ((IConstruct) eObject).getValidationMessages()) {
+                    res.add(message.getLevel() + " " + message.getMessage());
+                }
+            }
+        }
+
+        return res;
+    }
+
     @Test
     public void abstractProviderClient() {
         IQueryEnvironment queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.provider.test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.GenerationContext;
+import org.obeonetwork.m2doc.provider.AbstractDiagramProvider;
+import org.obeonetwork.m2doc.provider.OptionType;
+import org.obeonetwork.m2doc.provider.ProviderConstants;
+import org.obeonetwork.m2doc.provider.ProviderException;
+import org.obeonetwork.m2doc.provider.ProviderValidationMessage;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests default image sizes set by {@link AbstractDiagramProvider}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class AbstractDiagramProviderTest {
+
+    /**
+     * The image path returned by {@link SizedProvider}.
+     */
+    private static final String IMAGE_PATH = "image.jpg";
+
+    /**
+     * The parameter giving the image width and height set by {@link SizedProvider}.
+     */
+    private static final String SIZE_KEY = "size";
+
+    /**
+     * A provider setting the size of its image.
+     *
+     * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+     */
+    private static final class SizedProvider extends AbstractDiagramProvider {
+
+        @Override
+        public Map<String, OptionType> getOptionTypes() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public List<String> getRepresentationImagePath(Map<String, Object> parameters) throws ProviderException {
+            final int size = (Integer) parameters.get(SIZE_KEY);
+            setImageSize(parameters, IMAGE_PATH, size, size * 2);
+
+            return Collections.singletonList(IMAGE_PATH);
+        }
+
+        @Override
+        public boolean isDefault() {
+            return false;
+        }
+
+        @Override
+        public List<ProviderValidationMessage> validate(Map<String, Object> options) {
+            return Collections.emptyList();
+        }
+
+    }
+
+    /**
+     * The provider shared by generations.
+     */
+    private final SizedProvider provider = new SizedProvider();
+
+    @Test
+    public void imageSizePerGeneration() throws ProviderException {
+        final GenerationContext first = new GenerationContext();
+        final GenerationContext second = new GenerationContext();
+
+        provider.getRepresentationImagePath(parameters(first, 10));
+        provider.getRepresentationImagePath(parameters(second, 20));
+
+        assertEquals(10, first.getImageWidth(IMAGE_PATH));
+        assertEquals(20, first.getImageHeight(IMAGE_PATH));
+        assertEquals(20, second.getImageWidth(IMAGE_PATH));
+        assertEquals(40, second.getImageHeight(IMAGE_PATH));
+        assertEquals(0, provider.getWidth());
+        assertEquals(0, provider.getHeight());
+    }
+
+    @Test
+    public void imageSizeFromAnotherThread() throws InterruptedException {
+        final GenerationContext context = new GenerationContext();
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    provider.getRepresentationImagePath(parameters(context, 10));
+                } catch (ProviderException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(10, context.getImageWidth(IMAGE_PATH));
+        assertEquals(20, context.getImageHeight(IMAGE_PATH));
+    }
+
+    @Test
+    public void imageSizeDisposed() throws ProviderException {
+        final GenerationContext context = new GenerationContext();
+        provider.getRepresentationImagePath(parameters(context, 10));
+
+        context.dispose();
+
+        assertEquals(0, context.getImageWidth(IMAGE_PATH));
+        assertEquals(0, context.getImageHeight(IMAGE_PATH));
+    }
+
+    @Test
+    public void imageSizeWithoutContext() throws ProviderException {
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put(SIZE_KEY, 10);
+
+        assertEquals(Collections.singletonList(IMAGE_PATH), provider.getRepresentationImagePath(parameters));
+        assertEquals(0, provider.getWidth());
+        assertEquals(0, provider.getHeight());
+    }
+
+    /**
+     * Creates the provider parameters.
+     *
+     * @param context
+     *            the {@link GenerationContext}
+     * @param size
+     *            the image width, the image height is twice the width
+     * @return the provider parameters
+     */
+    private Map<String, Object> parameters(GenerationContext context, int size) {
+        final Map<String, Object> res = new HashMap<String, Object>();
+
+        res.put(ProviderConstants.GENERATION_CONTEXT_KEY, context);
+        res.put(SIZE_KEY, size);
+
+        return res;
+    }
+
+}
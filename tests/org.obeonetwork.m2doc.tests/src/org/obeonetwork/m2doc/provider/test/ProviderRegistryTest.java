@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.provider.test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -18,11 +19,13 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.obeonetwork.m2doc.provider.AbstractDiagramProvider;
+import org.obeonetwork.m2doc.provider.IProvider;
 import org.obeonetwork.m2doc.provider.OptionType;
 import org.obeonetwork.m2doc.provider.ProviderException;
 import org.obeonetwork.m2doc.provider.ProviderRegistry;
 import org.obeonetwork.m2doc.provider.ProviderValidationMessage;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -43,6 +46,16 @@ public class ProviderRegistryTest {
         registry.clear();
     }
 
+    /**
+     * The number of threads of concurrent tests.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The number of operations per thread of concurrent tests.
+     */
+    private static final int OPERATIONS = 1000;
+
     /**
      * Provider for testing registration
      * 
@@ -113,4 +126,54 @@ public class ProviderRegistryTest {
         assertFalse(registry.removeProvider(new ProviderTest()));
     }
 
+    /**
+     * Tests concurrent registrations and lookups.
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void concurrentRegisterAndLookupTest() throws InterruptedException {
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final boolean register = i % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < OPERATIONS; j++) {
+                            if (register) {
+                                registry.registerProvider(new ProviderTest());
+                                registry.removeProvider(new ProviderTest());
+                            } else {
+                                registry.getProvider(
+                                        "org.obeonetwork.m2doc.provider.test.ProviderRegistryTest$ProviderTest");
+                                for (IProvider provider : registry.getDiagramProviders()) {
+                                    provider.getClass();
+                                }
+                            }
+                        }
+                        // CHECKSTYLE:OFF
+                    } catch (Throwable e) {
+                        // CHECKSTYLE:ON
+                        failures.add(e);
+                    }
+                }
+
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), failures);
+        registry.registerProvider(new ProviderTest());
+        assertEquals(1, registry.getDiagramProviders().size());
+    }
+
 }
@@ -11,6 +11,10 @@
  *******************************************************************************/
 package org.obeonetwork.m2doc.services.test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.obeonetwork.m2doc.services.ServiceRegistry;
@@ -26,6 +30,16 @@ import static org.junit.Assert.assertTrue;
  * @author Romain Guider
  */
 public class ServiceRegistryTest {
+    /**
+     * The number of threads of concurrent tests.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The number of operations per thread of concurrent tests.
+     */
+    private static final int OPERATIONS = 1000;
+
     /**
      * {@link ServiceRegistry} instance used during testing.
      */
@@ -102,4 +116,53 @@ public class ServiceRegistryTest {
     public void testServicePackageEmptyListsAreUnmodifiable() {
         registry.getServicePackages("token1").add(ServicePackage3.class);
     }
+
+    /**
+     * Tests concurrent registrations and lookups.
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void concurrentRegisterAndLookup() throws InterruptedException {
+        registry.registerServicePackage(ServicePackage1.class, "token1");
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final boolean register = i % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < OPERATIONS; j++) {
+                            if (register) {
+                                registry.registerServicePackage(ServicePackage2.class, "token1");
+                                registry.remove(ServicePackage2.class, "token1");
+                            } else {
+                                for (String token : registry.getRegisteredTokens()) {
+                                    for (Class<?> servicePackage : registry.getServicePackages(token)) {
+                                        servicePackage.getName();
+                                    }
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(1, registry.getServicePackages("token1").size());
+        assertEquals(ServicePackage1.class, registry.getServicePackages("token1").get(0));
+    }
 }
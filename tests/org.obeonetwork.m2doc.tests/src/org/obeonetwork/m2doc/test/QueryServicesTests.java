@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.api.QueryServices;
+import org.obeonetwork.m2doc.services.BooleanServices;
+import org.obeonetwork.m2doc.services.ServiceRegistry;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link QueryServices#getSharedEnvironment(URI, URI)}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class QueryServicesTests {
+
+    /**
+     * A copy of a template.
+     */
+    private File template;
+
+    /**
+     * The template {@link URI}.
+     */
+    private URI templateURI;
+
+    @Before
+    public void before() throws IOException {
+        template = File.createTempFile("template", ".docx");
+        Files.copy(new File("resources/document/properties/noProperties.docx"), template);
+        templateURI = URI.createFileURI(template.getAbsolutePath());
+        QueryServices.getInstance().clearSharedEnvironments();
+    }
+
+    @After
+    public void after() {
+        QueryServices.getInstance().clearSharedEnvironments();
+        template.delete();
+    }
+
+    @Test
+    public void environmentInUseIsNotShared() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+
+        assertNotSame(first, second);
+
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        QueryServices.getInstance().releaseSharedEnvironment(second);
+    }
+
+    @Test
+    public void releasedEnvironmentIsReused() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+
+        assertSame(first, second);
+
+        QueryServices.getInstance().releaseSharedEnvironment(second);
+    }
+
+    @Test
+    public void releasedEnvironmentIsNotReusedAfterClear() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        QueryServices.getInstance().clearSharedEnvironments();
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+
+        assertNotSame(first, second);
+
+        QueryServices.getInstance().releaseSharedEnvironment(second);
+    }
+
+    @Test
+    public void releasedEnvironmentIsNotReusedAfterTemplateChange() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        assertTrue(template.setLastModified(template.lastModified() - 10000));
+        final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+
+        assertNotSame(first, second);
+
+        QueryServices.getInstance().releaseSharedEnvironment(second);
+    }
+
+    @Test
+    public void releasedEnvironmentIsNotReusedForAnotherTemplateURI() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        final URI otherTemplateURI = URI.createFileURI(template.getName());
+        final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(otherTemplateURI, templateURI);
+
+        assertNotSame(first, second);
+
+        QueryServices.getInstance().releaseSharedEnvironment(second);
+    }
+
+    @Test
+    public void releasedEnvironmentIsNotReusedAfterServicesChange() {
+        final IQueryEnvironment first = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+        QueryServices.getInstance().releaseSharedEnvironment(first);
+        ServiceRegistry.INSTANCE.registerServicePackage(BooleanServices.class, ServiceRegistry.DEFAULT_TOKEN);
+        try {
+            final IQueryEnvironment second = QueryServices.getInstance().getSharedEnvironment(templateURI, templateURI);
+
+            assertNotSame(first, second);
+
+            QueryServices.getInstance().releaseSharedEnvironment(second);
+        } finally {
+            ServiceRegistry.INSTANCE.remove(BooleanServices.class, ServiceRegistry.DEFAULT_TOKEN);
+        }
+    }
+
+}
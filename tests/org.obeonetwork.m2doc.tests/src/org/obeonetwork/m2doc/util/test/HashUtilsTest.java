@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.util.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.util.HashUtils;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link HashUtils}.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class HashUtilsTest {
+
+    /**
+     * The template.
+     */
+    private static final File TEMPLATE = new File(
+            "resources/conditional/conditionNotBoolean/conditionNotBoolean-template.docx");
+
+    /**
+     * A modified copy of the template.
+     */
+    private File copy;
+
+    @Before
+    public void before() throws IOException {
+        copy = File.createTempFile("template", ".docx");
+    }
+
+    @After
+    public void after() {
+        copy.delete();
+    }
+
+    @Test
+    public void hashMissing() throws IOException {
+        assertNull(HashUtils.hash(URI.createFileURI(new File("missing.docx").getAbsolutePath())));
+    }
+
+    @Test
+    public void hashChangesWithContent() throws IOException {
+        addParagraph(false);
+
+        assertFalse(HashUtils.hash(uri(TEMPLATE)).equals(HashUtils.hash(uri(copy))));
+    }
+
+    @Test
+    public void constructsHashIgnoresStaticText() throws IOException {
+        addParagraph(false);
+
+        assertEquals(HashUtils.hashTemplateConstructs(uri(TEMPLATE)), HashUtils.hashTemplateConstructs(uri(copy)));
+    }
+
+    @Test
+    public void constructsHashChangesWithFields() throws IOException {
+        addParagraph(true);
+
+        assertFalse(HashUtils.hashTemplateConstructs(uri(TEMPLATE)).equals(HashUtils.hashTemplateConstructs(uri(copy))));
+    }
+
+    /**
+     * Copies {@link #TEMPLATE} to {@link #copy} with a new paragraph.
+     *
+     * @param field
+     *            <code>true</code> to add a M2Doc field, <code>false</code> to add static text
+     * @throws IOException
+     *             if the template can't be copied
+     */
+    private void addParagraph(boolean field) throws IOException {
+        try (FileInputStream is = new FileInputStream(TEMPLATE); XWPFDocument document = new XWPFDocument(is)) {
+            final XWPFParagraph paragraph = document.createParagraph();
+            if (field) {
+                paragraph.createRun().getCTR().addNewFldChar().setFldCharType(STFldCharType.BEGIN);
+                paragraph.createRun().getCTR().addNewInstrText().setStringValue("m:self.name");
+                paragraph.createRun().getCTR().addNewFldChar().setFldCharType(STFldCharType.END);
+            } else {
+                paragraph.createRun().setText("some static text");
+            }
+            try (FileOutputStream os = new FileOutputStream(copy)) {
+                document.write(os);
+            }
+        }
+    }
+
+    /**
+     * Gets the {@link URI} of the given {@link File}.
+     *
+     * @param file
+     *            the {@link File}
+     * @return the {@link URI} of the given {@link File}
+     */
+    private URI uri(File file) {
+        return URI.createFileURI(file.getAbsolutePath());
+    }
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ *  Copyright (c) 2017 Obeo.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *   Contributors:
+ *       Obeo - initial API and implementation
+ *
+ *******************************************************************************/
+package org.obeonetwork.m2doc.util.test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.eclipse.acceleo.query.runtime.IQueryEnvironment;
+import org.eclipse.acceleo.query.runtime.Query;
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obeonetwork.m2doc.generator.DocumentGenerationException;
+import org.obeonetwork.m2doc.parser.DocumentParserException;
+import org.obeonetwork.m2doc.template.DocumentTemplate;
+import org.obeonetwork.m2doc.util.M2DocUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests templates opened from a local file are never written.
+ *
+ * @author <a href="mailto:yvan.lussaud@obeo.fr">Yvan Lussaud</a>
+ */
+public class TemplatePackageTests {
+
+    /**
+     * A template without validation messages.
+     */
+    private static final File TEMPLATE = new File("resources/static/table/table-template.docx");
+
+    /**
+     * A template with validation messages.
+     */
+    private static final File INVALID_TEMPLATE = new File(
+            "resources/conditional/conditionNotBoolean/conditionNotBoolean-template.docx");
+
+    /**
+     * The {@link IQueryEnvironment}.
+     */
+    private IQueryEnvironment queryEnvironment;
+
+    /**
+     * The copy of the template.
+     */
+    private File template;
+
+    /**
+     * The destination.
+     */
+    private File destination;
+
+    @Before
+    public void before() throws IOException {
+        queryEnvironment = Query.newEnvironmentWithDefaultServices(null);
+        template = File.createTempFile("template", ".docx");
+        destination = File.createTempFile("generated", ".docx");
+        destination.delete();
+    }
+
+    @After
+    public void after() {
+        template.delete();
+        destination.delete();
+    }
+
+    @Test
+    public void templateUnchangedAfterGeneration()
+            throws IOException, DocumentParserException, DocumentGenerationException {
+        Files.copy(TEMPLATE, template);
+        final byte[] expected = Files.toByteArray(template);
+        final long lastModified = template.lastModified();
+
+        try (DocumentTemplate documentTemplate = parse()) {
+            M2DocUtils.generate(documentTemplate, queryEnvironment, new HashMap<String, Object>(),
+                    URI.createFileURI(destination.getAbsolutePath()));
+        }
+
+        assertTrue(destination.exists());
+        assertTrue(Arrays.equals(expected, Files.toByteArray(template)));
+        assertEquals(lastModified, template.lastModified());
+    }
+
+    @Test
+    public void templateUnchangedAfterValidation() throws IOException, DocumentParserException {
+        Files.copy(INVALID_TEMPLATE, template);
+        final byte[] expected = Files.toByteArray(template);
+        final long lastModified = template.lastModified();
+
+        try (DocumentTemplate documentTemplate = parse()) {
+            M2DocUtils.validate(documentTemplate, queryEnvironment);
+            M2DocUtils.serializeValidatedDocumentTemplate(documentTemplate,
+                    URI.createFileURI(destination.getAbsolutePath()));
+        }
+
+        assertTrue(Arrays.equals(expected, Files.toByteArray(template)));
+        assertEquals(lastModified, template.lastModified());
+        // the validation messages are in the serialized copy
+        try (FileInputStream is = new FileInputStream(destination);
+                XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(is))) {
+            assertTrue(extractor.getText().contains("<---"));
+        }
+    }
+
+    /**
+     * Parses {@link #template}.
+     *
+     * @return the parsed {@link DocumentTemplate}
+     * @throws DocumentParserException
+     *             if the template can't be parsed
+     */
+    private DocumentTemplate parse() throws DocumentParserException {
+        return M2DocUtils.parse(URI.createFileURI(template.getAbsolutePath()), queryEnvironment,
+                getClass().getClassLoader());
+    }
+
+}